@@ -0,0 +1,54 @@
+package com.example.geminispringboot.benchmark;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把整月的考勤更新写入考勤表并重算公式。每次调用前重新加载一份未修改的考勤表，加载时间不计入结果。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AttendanceUpdateBenchmark {
+
+    private Workbook workbook;
+
+    @Setup(Level.Invocation)
+    public void loadWorkbook(PipelineState state) throws IOException {
+        workbook = WorkbookFactory.create(new ByteArrayInputStream(state.attendanceBytes));
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeWorkbook() throws IOException {
+        workbook.close();
+    }
+
+    @Benchmark
+    public boolean batchUpdateAttendance(PipelineState state) throws IOException {
+        return state.attendanceService.batchUpdateAttendance(workbook, state.standardUpdates, state.ifEmptyUpdates);
+    }
+
+    @Benchmark
+    public boolean applyAttendanceMatrix(PipelineState state) throws IOException {
+        return state.attendanceService.applyAttendanceMatrix(workbook, state.attendanceService.buildIndex(workbook), state.matrix);
+    }
+}
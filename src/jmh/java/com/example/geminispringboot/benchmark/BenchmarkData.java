@@ -0,0 +1,143 @@
+package com.example.geminispringboot.benchmark;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试用的合成数据：与真实文件版式一致的考勤表和值班表。
+ * <p>
+ * 考勤表第1行为标题，第2行为"姓名"/"日     期"表头，第3行为日期，其下每个员工一行，
+ * 每行末尾有按班次计数的汇总公式，备注行下方是按日合计的跨行公式。
+ * 值班表每行以班次关键字开头，后面是若干单元格的"、"分隔姓名，并混有不含姓名的说明文字。
+ * 同样的参数总是生成同样的内容。
+ */
+public final class BenchmarkData {
+
+    public static final int FIRST_DAY_COLUMN = 3;
+
+    private static final String[] SURNAMES = {"王", "李", "张", "刘", "陈", "杨", "黄", "赵", "吴", "周", "徐", "孙", "马", "朱", "胡", "郭"};
+    private static final String[] GIVEN_NAMES = {"伟", "芳", "娜", "敏", "静", "丽", "强", "磊", "军", "洋", "勇", "艳", "杰", "涛", "明", "超",
+            "秀英", "桂英", "建华", "志强", "鹏飞", "晓东", "海燕", "玉兰"};
+    /** 默认班次映射表中的关键字 */
+    private static final String[] SHIFT_KEYWORDS = {"白班", "小夜", "大夜", "夜班", "42054", "42051"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return {@code count} 个互不相同的员工姓名
+     */
+    public static List<String> employeeNames(int count) {
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; names.size() < count; i++) {
+            String name = SURNAMES[i % SURNAMES.length] + GIVEN_NAMES[(i / SURNAMES.length) % GIVEN_NAMES.length];
+            int round = i / (SURNAMES.length * GIVEN_NAMES.length);
+            names.add(round == 0 ? name : name + round);
+        }
+        return names;
+    }
+
+    public static byte[] attendanceWorkbook(List<String> names, int lastDay) {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("考勤");
+            sheet.createRow(0).createCell(0).setCellValue("考勤记工表");
+            Row header = sheet.createRow(1);
+            header.createCell(1).setCellValue("姓名");
+            header.createCell(FIRST_DAY_COLUMN).setCellValue("日     期");
+            Row dayRow = sheet.createRow(2);
+            for (int day = 1; day <= lastDay; day++) {
+                dayRow.createCell(FIRST_DAY_COLUMN + day - 1).setCellValue(day);
+            }
+            int summaryColumn = FIRST_DAY_COLUMN + lastDay;
+            String lastDayColumn = CellReference.convertNumToColString(summaryColumn - 1);
+            for (int i = 0; i < names.size(); i++) {
+                int rowIndex = 3 + i;
+                Row row = sheet.createRow(rowIndex);
+                row.createCell(0).setCellValue(i + 1);
+                row.createCell(1).setCellValue(names.get(i));
+                String range = "D" + (rowIndex + 1) + ":" + lastDayColumn + (rowIndex + 1);
+                row.createCell(summaryColumn).setCellFormula("COUNTIF(" + range + ",\"白\")");
+                row.createCell(summaryColumn + 1).setCellFormula("COUNTIF(" + range + ",\"夜\")+COUNTIF(" + range + ",\"下\")");
+                row.createCell(summaryColumn + 2).setCellFormula("COUNTIF(" + range + ",\"休\")");
+            }
+            int remarkRowIndex = 3 + names.size();
+            sheet.createRow(remarkRowIndex).createCell(1).setCellValue("备注");
+            Row totalRow = sheet.createRow(remarkRowIndex + 1);
+            for (int day = 1; day <= lastDay; day++) {
+                String column = CellReference.convertNumToColString(FIRST_DAY_COLUMN + day - 1);
+                totalRow.createCell(FIRST_DAY_COLUMN + day - 1).setCellFormula("COUNTIF(" + column + "4:" + column + remarkRowIndex + ",\"休\")");
+            }
+            for (int offset = 0; offset < 3; offset++) {
+                String column = CellReference.convertNumToColString(summaryColumn + offset);
+                totalRow.createCell(summaryColumn + offset).setCellFormula("SUM(" + column + "4:" + column + remarkRowIndex + ")");
+            }
+            workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            return toBytes(workbook);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 生成某一天的值班表：约三分之一的员工当天有班，每个班次一行，姓名分散在多个单元格中。
+     */
+    public static byte[] dutyRoster(List<String> names, int day) {
+        Random random = new Random(day);
+        List<String> onDuty = new ArrayList<>(names);
+        Collections.shuffle(onDuty, random);
+        onDuty = onDuty.subList(0, Math.max(1, names.size() / 3));
+
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("值班表");
+            sheet.createRow(0).createCell(0).setCellValue(day + "日值班安排");
+            int rowIndex = 1;
+            int perShift = Math.max(1, onDuty.size() / SHIFT_KEYWORDS.length);
+            for (int shift = 0; shift < SHIFT_KEYWORDS.length; shift++) {
+                int from = shift * perShift;
+                int to = shift == SHIFT_KEYWORDS.length - 1 ? onDuty.size() : Math.min(onDuty.size(), from + perShift);
+                if (from >= to) {
+                    break;
+                }
+                // 每行最多 10 个单元格，每个单元格 1~4 个姓名
+                List<String> shiftNames = onDuty.subList(from, to);
+                for (int start = 0; start < shiftNames.size(); ) {
+                    Row row = sheet.createRow(rowIndex++);
+                    row.createCell(0).setCellValue(SHIFT_KEYWORDS[shift]);
+                    row.createCell(1).setCellValue("地点:" + (shift + 1) + "号站");
+                    for (int column = 2; column < 12 && start < shiftNames.size(); column++) {
+                        int end = Math.min(shiftNames.size(), start + 1 + random.nextInt(4));
+                        row.createCell(column).setCellValue(String.join("、", shiftNames.subList(start, end)));
+                        start = end;
+                    }
+                }
+            }
+            sheet.createRow(rowIndex).createCell(0).setCellValue("备注：如有调班请提前报备");
+            return toBytes(workbook);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static MultipartFile multipartFile(String name, String originalFilename, byte[] content) {
+        return new MockMultipartFile(name, originalFilename, null, content);
+    }
+
+    private static byte[] toBytes(Workbook workbook) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workbook.write(out);
+        return out.toByteArray();
+    }
+}
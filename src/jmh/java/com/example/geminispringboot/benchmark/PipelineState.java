@@ -0,0 +1,138 @@
+package com.example.geminispringboot.benchmark;
+
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.AttendanceMatrix;
+import com.example.geminispringboot.model.ShiftDescriptor;
+import com.example.geminispringboot.model.UpdateAttendanceRequest;
+import com.example.geminispringboot.service.AttendanceService;
+import com.example.geminispringboot.service.ExcelService;
+import com.example.geminispringboot.service.MemoryAdmissionService;
+import com.example.geminispringboot.service.OrchestrationService;
+import com.example.geminispringboot.service.ProcessingResultStore;
+import com.example.geminispringboot.service.RosterParseCache;
+import com.example.geminispringboot.service.ScheduleParsingService;
+import com.example.geminispringboot.service.ShiftDictionary;
+import com.example.geminispringboot.util.AhoCorasickMatcher;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 各基准测试共用的输入数据和服务。服务按 Spring 容器中的方式手动装配，不启动应用上下文。
+ * 一个月 31 天，每天一个值班表。
+ */
+@State(Scope.Benchmark)
+public class PipelineState {
+
+    public static final int DAYS = 31;
+
+    @Param({"50", "300", "2000"})
+    public int employees;
+
+    public final AppProperties appProperties = new AppProperties();
+    public final ExcelService excelService = new ExcelService();
+    public final ScheduleParsingService scheduleParsingService = new ScheduleParsingService();
+    public final AttendanceService attendanceService = new AttendanceService();
+    public final RosterParseCache rosterParseCache = new RosterParseCache();
+    public final ProcessingResultStore resultStore = new ProcessingResultStore();
+    public final OrchestrationService orchestrationService = new OrchestrationService();
+
+    public List<String> names;
+    public byte[] attendanceBytes;
+    public MultipartFile attendanceFile;
+    public List<MultipartFile> rosterFiles;
+    public List<Integer> days;
+
+    /** 第 1 天值班表读出的单元格文本 */
+    public List<List<String>> rosterData;
+    public AhoCorasickMatcher nameMatcher;
+    public ShiftDictionary shiftDictionary;
+
+    /** 整月的考勤更新，两种形式内容相同 */
+    public List<UpdateAttendanceRequest> standardUpdates;
+    public List<UpdateAttendanceRequest> ifEmptyUpdates;
+    public AttendanceMatrix matrix;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ReflectionTestUtils.setField(attendanceService, "appProperties", appProperties);
+        ReflectionTestUtils.setField(rosterParseCache, "appProperties", appProperties);
+        ReflectionTestUtils.setField(resultStore, "appProperties", appProperties);
+        ReflectionTestUtils.setField(orchestrationService, "excelService", excelService);
+        ReflectionTestUtils.setField(orchestrationService, "scheduleParsingService", scheduleParsingService);
+        ReflectionTestUtils.setField(orchestrationService, "attendanceService", attendanceService);
+        ReflectionTestUtils.setField(orchestrationService, "appProperties", appProperties);
+        ReflectionTestUtils.setField(orchestrationService, "resultStore", resultStore);
+        MemoryAdmissionService memoryAdmissionService = new MemoryAdmissionService();
+        ReflectionTestUtils.setField(memoryAdmissionService, "appProperties", appProperties);
+        ReflectionTestUtils.invokeMethod(memoryAdmissionService, "init");
+        ReflectionTestUtils.setField(orchestrationService, "rosterParseCache", rosterParseCache);
+        ReflectionTestUtils.setField(orchestrationService, "memoryAdmissionService", memoryAdmissionService);
+        ReflectionTestUtils.invokeMethod(orchestrationService, "initRosterParsingExecutor");
+
+        names = BenchmarkData.employeeNames(employees);
+        attendanceBytes = BenchmarkData.attendanceWorkbook(names, DAYS);
+        attendanceFile = BenchmarkData.multipartFile("attendanceFile", "考勤.xlsx", attendanceBytes);
+        rosterFiles = new ArrayList<>(DAYS);
+        days = new ArrayList<>(DAYS);
+        for (int day = 1; day <= DAYS; day++) {
+            rosterFiles.add(BenchmarkData.multipartFile("dutyRosterFiles", day + "日.xlsx", BenchmarkData.dutyRoster(names, day)));
+            days.add(day);
+        }
+
+        rosterData = excelService.readExcelData(rosterFiles.get(0));
+        nameMatcher = scheduleParsingService.compileNameMatcher(names);
+        shiftDictionary = scheduleParsingService.compileShiftDictionary(appProperties.getMappings());
+        collectUpdates();
+    }
+
+    /**
+     * 每天按值班表解析结果记录标准更新，当天未排班的员工记录"休"。
+     */
+    private void collectUpdates() throws IOException {
+        standardUpdates = new ArrayList<>();
+        ifEmptyUpdates = new ArrayList<>();
+        matrix = new AttendanceMatrix(names, DAYS);
+        for (int day = 1; day <= DAYS; day++) {
+            Map<ShiftDescriptor, List<String>> parsed = scheduleParsingService.parseStructured(
+                    excelService.readExcelData(rosterFiles.get(day - 1)), nameMatcher, shiftDictionary);
+            BitSet rostered = matrix.markRosterDay(day);
+            for (Map.Entry<ShiftDescriptor, List<String>> entry : parsed.entrySet()) {
+                for (String name : entry.getValue()) {
+                    int employeeId = matrix.idOf(name);
+                    rostered.set(employeeId);
+                    matrix.setShift(employeeId, day, entry.getKey().getAlias());
+                    standardUpdates.add(request(name, day, entry.getKey().getAlias()));
+                }
+            }
+            for (int employeeId = rostered.nextClearBit(0); employeeId < names.size(); employeeId = rostered.nextClearBit(employeeId + 1)) {
+                ifEmptyUpdates.add(request(names.get(employeeId), day, "休"));
+            }
+        }
+        matrix.fillRest("休");
+    }
+
+    private static UpdateAttendanceRequest request(String name, int day, String shift) {
+        UpdateAttendanceRequest request = new UpdateAttendanceRequest();
+        request.setName(name);
+        request.setDay(day);
+        request.setShift(shift);
+        return request;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(orchestrationService, "shutdownRosterParsingExecutor");
+    }
+}
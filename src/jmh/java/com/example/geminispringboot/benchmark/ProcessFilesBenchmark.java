@@ -0,0 +1,47 @@
+package com.example.geminispringboot.benchmark;
+
+import com.example.geminispringboot.model.ProcessingResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整的 processFiles 流程：一个考勤表加 31 个值班表，包括生成结果文件。
+ * {@code rosterCache=false} 时每次都重新解析全部值班表，{@code true} 时除第一次外都命中解析缓存。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessFilesBenchmark {
+
+    @Param({"false", "true"})
+    public boolean rosterCache;
+
+    @Setup(Level.Trial)
+    public void configureCache(PipelineState state) {
+        state.appProperties.getRoster().setCacheMaxEntries(rosterCache ? 512 : 0);
+    }
+
+    @Benchmark
+    public ProcessingResult processFiles(PipelineState state) throws IOException {
+        ProcessingResult result = state.orchestrationService.processFiles(state.rosterFiles, state.attendanceFile, state.days);
+        Files.deleteIfExists(result.getFile());
+        return result;
+    }
+}
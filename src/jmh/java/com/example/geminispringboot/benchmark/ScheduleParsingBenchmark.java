@@ -0,0 +1,36 @@
+package com.example.geminispringboot.benchmark;
+
+import com.example.geminispringboot.model.ShiftDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析一个值班表的单元格文本。{@code parse} 每次编译姓名匹配器，{@code parseStructured} 复用预编译的匹配器和字典，
+ * 与一次请求中处理多个值班表时的用法一致。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScheduleParsingBenchmark {
+
+    @Benchmark
+    public Map<String, List<String>> parse(PipelineState state) {
+        return state.scheduleParsingService.parse(state.rosterData, state.names, state.appProperties.getMappings());
+    }
+
+    @Benchmark
+    public Map<ShiftDescriptor, List<String>> parseStructured(PipelineState state) {
+        return state.scheduleParsingService.parseStructured(state.rosterData, state.nameMatcher, state.shiftDictionary);
+    }
+}
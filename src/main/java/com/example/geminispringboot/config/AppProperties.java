@@ -16,6 +16,16 @@ public class AppProperties {
     private List<String> allowedNames = new ArrayList<>();
     private final Map<String, String> mappings;
     private String testProperty;
+    private final Attendance attendance = new Attendance();
+    private final Roster roster = new Roster();
+    private final Jobs jobs = new Jobs();
+    private final Results results = new Results();
+    private final Logs logs = new Logs();
+    private final Incremental incremental = new Incremental();
+    private final Batch batch = new Batch();
+    private final Memory memory = new Memory();
+    private final Upload upload = new Upload();
+    private final Users users = new Users();
 
     public AppProperties() {
         Map<String, String> tempMap = new HashMap<>();
@@ -49,4 +59,744 @@ public class AppProperties {
     public void setTestProperty(String testProperty) {
         this.testProperty = testProperty;
     }
+
+    public Attendance getAttendance() {
+        return attendance;
+    }
+
+    public Roster getRoster() {
+        return roster;
+    }
+
+    public Jobs getJobs() {
+        return jobs;
+    }
+
+    public Results getResults() {
+        return results;
+    }
+
+    public Logs getLogs() {
+        return logs;
+    }
+
+    public Incremental getIncremental() {
+        return incremental;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public Memory getMemory() {
+        return memory;
+    }
+
+    public Upload getUpload() {
+        return upload;
+    }
+
+    public Users getUsers() {
+        return users;
+    }
+
+    /**
+     * 考勤表处理相关配置 (app.attendance.*)
+     */
+    public static class Attendance {
+
+        /** 批量更新后的公式重算方式，默认只重算受影响的公式 */
+        private RecalculationMode recalculationMode = RecalculationMode.INCREMENTAL;
+
+        public RecalculationMode getRecalculationMode() {
+            return recalculationMode;
+        }
+
+        public void setRecalculationMode(RecalculationMode recalculationMode) {
+            this.recalculationMode = recalculationMode;
+        }
+    }
+
+    /**
+     * 值班表解析相关配置 (app.roster.*)
+     */
+    public static class Roster {
+
+        /** 并行解析值班表的线程数，小于等于0时使用CPU核数 */
+        private int parseThreads = 0;
+
+        /** 等待解析的值班表队列长度，队列满时由提交线程自行解析 */
+        private int parseQueueCapacity = 256;
+
+        /** 内存中缓存的值班表解析结果数量 */
+        private int cacheMaxEntries = 512;
+
+        /** 值班表解析结果的磁盘缓存目录，为空时不启用磁盘缓存 */
+        private String cacheDiskDir;
+
+        /** 磁盘缓存最多保留的解析结果数量 */
+        private int cacheDiskMaxEntries = 5000;
+
+        /** 从压缩包内(以及批处理目录中)的值班表文件名识别日期的正则，取第一个捕获组 */
+        private String zipDayPattern = "(\\d{1,2})日";
+
+        /** 压缩包内文件名的编码，Windows 自带压缩使用系统代码页；标记为 UTF-8 的条目总是按 UTF-8 解码 */
+        private String zipFilenameCharset = "GBK";
+
+        /** 压缩包内单个值班表解压后的最大字节数 */
+        private long zipMaxEntryBytes = 20 * 1024 * 1024;
+
+        /** 压缩包内的最大文件数(含被跳过的非值班表文件) */
+        private int zipMaxEntries = 500;
+
+        /** 压缩包内全部值班表解压后的最大总字节数 */
+        private long zipMaxTotalBytes = 200L * 1024 * 1024;
+
+        public int getParseThreads() {
+            return parseThreads;
+        }
+
+        public void setParseThreads(int parseThreads) {
+            this.parseThreads = parseThreads;
+        }
+
+        public int getParseQueueCapacity() {
+            return parseQueueCapacity;
+        }
+
+        public void setParseQueueCapacity(int parseQueueCapacity) {
+            this.parseQueueCapacity = parseQueueCapacity;
+        }
+
+        public int getCacheMaxEntries() {
+            return cacheMaxEntries;
+        }
+
+        public void setCacheMaxEntries(int cacheMaxEntries) {
+            this.cacheMaxEntries = cacheMaxEntries;
+        }
+
+        public String getCacheDiskDir() {
+            return cacheDiskDir;
+        }
+
+        public void setCacheDiskDir(String cacheDiskDir) {
+            this.cacheDiskDir = cacheDiskDir;
+        }
+
+        public int getCacheDiskMaxEntries() {
+            return cacheDiskMaxEntries;
+        }
+
+        public void setCacheDiskMaxEntries(int cacheDiskMaxEntries) {
+            this.cacheDiskMaxEntries = cacheDiskMaxEntries;
+        }
+
+        public String getZipDayPattern() {
+            return zipDayPattern;
+        }
+
+        public void setZipDayPattern(String zipDayPattern) {
+            this.zipDayPattern = zipDayPattern;
+        }
+
+        public String getZipFilenameCharset() {
+            return zipFilenameCharset;
+        }
+
+        public void setZipFilenameCharset(String zipFilenameCharset) {
+            this.zipFilenameCharset = zipFilenameCharset;
+        }
+
+        public long getZipMaxEntryBytes() {
+            return zipMaxEntryBytes;
+        }
+
+        public void setZipMaxEntryBytes(long zipMaxEntryBytes) {
+            this.zipMaxEntryBytes = zipMaxEntryBytes;
+        }
+
+        public int getZipMaxEntries() {
+            return zipMaxEntries;
+        }
+
+        public void setZipMaxEntries(int zipMaxEntries) {
+            this.zipMaxEntries = zipMaxEntries;
+        }
+
+        public long getZipMaxTotalBytes() {
+            return zipMaxTotalBytes;
+        }
+
+        public void setZipMaxTotalBytes(long zipMaxTotalBytes) {
+            this.zipMaxTotalBytes = zipMaxTotalBytes;
+        }
+    }
+
+    /**
+     * 异步处理任务相关配置 (app.jobs.*)
+     */
+    public static class Jobs {
+
+        /** 同时执行的处理任务数 */
+        private int concurrency = 2;
+
+        /** 等待执行的任务队列长度，队列满时拒绝提交 */
+        private int queueCapacity = 8;
+
+        /** 已结束任务及其未下载结果的保留时间(分钟) */
+        private long retentionMinutes = 60;
+
+        /** 进度事件(SSE)连接的超时时间(分钟) */
+        private long eventTimeoutMinutes = 30;
+
+        /** 定期清理过期任务的间隔(秒)，没有新任务提交时也会执行 */
+        private long evictIntervalSeconds = 60;
+
+        /** 向订阅者推送进度事件的线程数，推送不占用处理任务的线程 */
+        private int eventThreads = 2;
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getRetentionMinutes() {
+            return retentionMinutes;
+        }
+
+        public void setRetentionMinutes(long retentionMinutes) {
+            this.retentionMinutes = retentionMinutes;
+        }
+
+        public long getEventTimeoutMinutes() {
+            return eventTimeoutMinutes;
+        }
+
+        public void setEventTimeoutMinutes(long eventTimeoutMinutes) {
+            this.eventTimeoutMinutes = eventTimeoutMinutes;
+        }
+
+        public long getEvictIntervalSeconds() {
+            return evictIntervalSeconds;
+        }
+
+        public void setEvictIntervalSeconds(long evictIntervalSeconds) {
+            this.evictIntervalSeconds = evictIntervalSeconds;
+        }
+
+        public int getEventThreads() {
+            return eventThreads;
+        }
+
+        public void setEventThreads(int eventThreads) {
+            this.eventThreads = eventThreads;
+        }
+    }
+
+    /**
+     * 待下载处理结果的存储配置 (app.results.*)
+     */
+    public static class Results {
+
+        /** 内存中保存的结果总字节数上限 */
+        private long maxMemoryBytes = 256L * 1024 * 1024;
+
+        /** 写入临时文件的结果总字节数上限 */
+        private long maxDiskBytes = 2048L * 1024 * 1024;
+
+        /** 文件内容达到该大小时写入临时文件，不占用内存 */
+        private long spillThresholdBytes = 8L * 1024 * 1024;
+
+        /** 临时文件目录，为空时使用系统临时目录 */
+        private String spillDir;
+
+        /** 结果未被下载时的保留时间(分钟) */
+        private long ttlMinutes = 60;
+
+        /** 定期清理过期结果的间隔(秒)，没有请求时过期结果和临时文件也会按时删除 */
+        private long sweepIntervalSeconds = 60;
+
+        public long getMaxMemoryBytes() {
+            return maxMemoryBytes;
+        }
+
+        public void setMaxMemoryBytes(long maxMemoryBytes) {
+            this.maxMemoryBytes = maxMemoryBytes;
+        }
+
+        public long getMaxDiskBytes() {
+            return maxDiskBytes;
+        }
+
+        public void setMaxDiskBytes(long maxDiskBytes) {
+            this.maxDiskBytes = maxDiskBytes;
+        }
+
+        public long getSpillThresholdBytes() {
+            return spillThresholdBytes;
+        }
+
+        public void setSpillThresholdBytes(long spillThresholdBytes) {
+            this.spillThresholdBytes = spillThresholdBytes;
+        }
+
+        public String getSpillDir() {
+            return spillDir;
+        }
+
+        public void setSpillDir(String spillDir) {
+            this.spillDir = spillDir;
+        }
+
+        public long getTtlMinutes() {
+            return ttlMinutes;
+        }
+
+        public void setTtlMinutes(long ttlMinutes) {
+            this.ttlMinutes = ttlMinutes;
+        }
+
+        public long getSweepIntervalSeconds() {
+            return sweepIntervalSeconds;
+        }
+
+        public void setSweepIntervalSeconds(long sweepIntervalSeconds) {
+            this.sweepIntervalSeconds = sweepIntervalSeconds;
+        }
+    }
+
+    /**
+     * 处理日志相关配置 (app.logs.*)
+     */
+    public static class Logs {
+
+        /** 开启明细日志时最多保留的明细条数，超出时丢弃最早的明细 */
+        private int detailCapacity = 5000;
+
+        public int getDetailCapacity() {
+            return detailCapacity;
+        }
+
+        public void setDetailCapacity(int detailCapacity) {
+            this.detailCapacity = detailCapacity;
+        }
+    }
+
+    /**
+     * 按月增量处理相关配置 (app.incremental.*)
+     */
+    public static class Incremental {
+
+        /** 增量处理状态和上次生成的考勤表的保存目录，为空时使用系统临时目录下的 attendance-incremental */
+        private String stateDir;
+
+        public String getStateDir() {
+            return stateDir;
+        }
+
+        public void setStateDir(String stateDir) {
+            this.stateDir = stateDir;
+        }
+    }
+
+    /**
+     * 命令行批处理相关配置 (app.batch.*)，仅在 batch profile 下使用
+     */
+    public static class Batch {
+
+        /** 输入目录，其下每个同时包含考勤表和值班表的目录作为一个任务(一个部门的一个月) */
+        private String inputDir;
+
+        /** 输出目录，按输入目录的相对路径存放结果；未开启 in-place 时必须配置 */
+        private String outputDir;
+
+        /**
+         * 未配置输出目录时直接替换原考勤表。首次替换前把原考勤表另存为同目录下的 *.orig，
+         * 之后每次都从 *.orig 重新处理，已删除的排班不会残留在结果中
+         */
+        private boolean inPlace = false;
+
+        /** 同时处理的任务数 */
+        private int workers = 2;
+
+        /** 文件名包含此关键字的 Excel 文件视为考勤表，其余按日期识别为值班表 */
+        private String attendanceFileKeyword = "考勤";
+
+        /** 是否更新考勤表中所有符合考勤表版式的 sheet 页 */
+        private boolean allSheets = false;
+
+        public String getInputDir() {
+            return inputDir;
+        }
+
+        public void setInputDir(String inputDir) {
+            this.inputDir = inputDir;
+        }
+
+        public String getOutputDir() {
+            return outputDir;
+        }
+
+        public void setOutputDir(String outputDir) {
+            this.outputDir = outputDir;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        public String getAttendanceFileKeyword() {
+            return attendanceFileKeyword;
+        }
+
+        public void setAttendanceFileKeyword(String attendanceFileKeyword) {
+            this.attendanceFileKeyword = attendanceFileKeyword;
+        }
+
+        public boolean isInPlace() {
+            return inPlace;
+        }
+
+        public void setInPlace(boolean inPlace) {
+            this.inPlace = inPlace;
+        }
+
+        public boolean isAllSheets() {
+            return allSheets;
+        }
+
+        public void setAllSheets(boolean allSheets) {
+            this.allSheets = allSheets;
+        }
+    }
+
+    /**
+     * 工作簿加载的内存准入控制 (app.memory.*)
+     */
+    public static class Memory {
+
+        /** 同时加载的工作簿可占用的内存预算，0 表示最大堆内存的 60% */
+        private long budgetBytes = 0;
+
+        /** .xlsx 中 XML 部件解压后每字节在 POI 对象模型中约占用的内存字节数 */
+        private int xmlExpansionFactor = 8;
+
+        /** .xls 文件每字节在 POI 对象模型中约占用的内存字节数 */
+        private int xlsExpansionFactor = 6;
+
+        /** 预算不足时排队等待的最长时间，超时后拒绝请求 */
+        private long maxWaitMillis = 30000;
+
+        public long getBudgetBytes() {
+            return budgetBytes;
+        }
+
+        public void setBudgetBytes(long budgetBytes) {
+            this.budgetBytes = budgetBytes;
+        }
+
+        public int getXmlExpansionFactor() {
+            return xmlExpansionFactor;
+        }
+
+        public void setXmlExpansionFactor(int xmlExpansionFactor) {
+            this.xmlExpansionFactor = xmlExpansionFactor;
+        }
+
+        public int getXlsExpansionFactor() {
+            return xlsExpansionFactor;
+        }
+
+        public void setXlsExpansionFactor(int xlsExpansionFactor) {
+            this.xlsExpansionFactor = xlsExpansionFactor;
+        }
+
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        public void setMaxWaitMillis(long maxWaitMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+        }
+    }
+
+    /**
+     * 文件转发上传相关配置 (app.upload.*)
+     */
+    public static class Upload {
+
+        /** 连接池总连接数上限 */
+        private int maxConnections = 50;
+
+        /** 每个目标地址 (host:port) 的连接数上限 */
+        private int maxConnectionsPerRoute = 10;
+
+        private int connectTimeoutMillis = 10000;
+
+        /** 等待响应数据的超时时间 */
+        private int socketTimeoutMillis = 60000;
+
+        /** 从连接池获取连接的超时时间 */
+        private int connectionRequestTimeoutMillis = 10000;
+
+        /** 服务端未通过 Keep-Alive 响应头指定时，空闲连接保留的时间 */
+        private long keepAliveMillis = 30000;
+
+        /** 转发的文件以 chunked 方式发送；为 false 时按文件大小发送 Content-Length */
+        private boolean chunked = true;
+
+        /** 批量上传时同时进行的上传数 */
+        private int concurrency = 4;
+
+        /** 批量上传的排队长度，排满后由提交请求的线程自己上传 */
+        private int queueCapacity = 64;
+
+        /** 分片上传的分片大小 */
+        private int chunkSizeBytes = 4 * 1024 * 1024;
+
+        /** 每个文件同时在传的分片数 */
+        private int chunkParallelism = 3;
+
+        /** 每个分片最多尝试的次数 */
+        private int chunkMaxAttempts = 5;
+
+        /** 分片重试的初始等待时间，之后每次翻倍 */
+        private long chunkRetryBaseDelayMillis = 500;
+
+        /** 分片重试的最长等待时间 */
+        private long chunkRetryMaxDelayMillis = 10000;
+
+        /** 是否启用本地的分片接收端 (/upload/chunked-receiver/**)，用于离线联调 */
+        private boolean receiverEnabled = false;
+
+        /** 本地分片接收端的存放目录，为空时使用系统临时目录下的 chunked-upload-receiver */
+        private String receiverDir;
+
+        /** 本地分片接收端单个文件的最大字节数 */
+        private long receiverMaxFileBytes = 2L * 1024 * 1024 * 1024;
+
+        /** 本地分片接收端同时进行的上传数 */
+        private int receiverMaxSessions = 16;
+
+        /** 超过该时间没有收到请求的未完成上传被删除 */
+        private long receiverSessionIdleMinutes = 60;
+
+        /** 清理空闲上传的间隔 */
+        private long receiverSweepIntervalSeconds = 60;
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getMaxConnectionsPerRoute() {
+            return maxConnectionsPerRoute;
+        }
+
+        public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        }
+
+        public int getConnectTimeoutMillis() {
+            return connectTimeoutMillis;
+        }
+
+        public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+        }
+
+        public int getSocketTimeoutMillis() {
+            return socketTimeoutMillis;
+        }
+
+        public void setSocketTimeoutMillis(int socketTimeoutMillis) {
+            this.socketTimeoutMillis = socketTimeoutMillis;
+        }
+
+        public int getConnectionRequestTimeoutMillis() {
+            return connectionRequestTimeoutMillis;
+        }
+
+        public void setConnectionRequestTimeoutMillis(int connectionRequestTimeoutMillis) {
+            this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+        }
+
+        public long getKeepAliveMillis() {
+            return keepAliveMillis;
+        }
+
+        public void setKeepAliveMillis(long keepAliveMillis) {
+            this.keepAliveMillis = keepAliveMillis;
+        }
+
+        public boolean isChunked() {
+            return chunked;
+        }
+
+        public void setChunked(boolean chunked) {
+            this.chunked = chunked;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getChunkSizeBytes() {
+            return chunkSizeBytes;
+        }
+
+        public void setChunkSizeBytes(int chunkSizeBytes) {
+            this.chunkSizeBytes = chunkSizeBytes;
+        }
+
+        public int getChunkParallelism() {
+            return chunkParallelism;
+        }
+
+        public void setChunkParallelism(int chunkParallelism) {
+            this.chunkParallelism = chunkParallelism;
+        }
+
+        public int getChunkMaxAttempts() {
+            return chunkMaxAttempts;
+        }
+
+        public void setChunkMaxAttempts(int chunkMaxAttempts) {
+            this.chunkMaxAttempts = chunkMaxAttempts;
+        }
+
+        public long getChunkRetryBaseDelayMillis() {
+            return chunkRetryBaseDelayMillis;
+        }
+
+        public void setChunkRetryBaseDelayMillis(long chunkRetryBaseDelayMillis) {
+            this.chunkRetryBaseDelayMillis = chunkRetryBaseDelayMillis;
+        }
+
+        public long getChunkRetryMaxDelayMillis() {
+            return chunkRetryMaxDelayMillis;
+        }
+
+        public void setChunkRetryMaxDelayMillis(long chunkRetryMaxDelayMillis) {
+            this.chunkRetryMaxDelayMillis = chunkRetryMaxDelayMillis;
+        }
+
+        public boolean isReceiverEnabled() {
+            return receiverEnabled;
+        }
+
+        public void setReceiverEnabled(boolean receiverEnabled) {
+            this.receiverEnabled = receiverEnabled;
+        }
+
+        public String getReceiverDir() {
+            return receiverDir;
+        }
+
+        public void setReceiverDir(String receiverDir) {
+            this.receiverDir = receiverDir;
+        }
+
+        public long getReceiverMaxFileBytes() {
+            return receiverMaxFileBytes;
+        }
+
+        public void setReceiverMaxFileBytes(long receiverMaxFileBytes) {
+            this.receiverMaxFileBytes = receiverMaxFileBytes;
+        }
+
+        public int getReceiverMaxSessions() {
+            return receiverMaxSessions;
+        }
+
+        public void setReceiverMaxSessions(int receiverMaxSessions) {
+            this.receiverMaxSessions = receiverMaxSessions;
+        }
+
+        public long getReceiverSessionIdleMinutes() {
+            return receiverSessionIdleMinutes;
+        }
+
+        public void setReceiverSessionIdleMinutes(long receiverSessionIdleMinutes) {
+            this.receiverSessionIdleMinutes = receiverSessionIdleMinutes;
+        }
+
+        public long getReceiverSweepIntervalSeconds() {
+            return receiverSweepIntervalSeconds;
+        }
+
+        public void setReceiverSweepIntervalSeconds(long receiverSweepIntervalSeconds) {
+            this.receiverSweepIntervalSeconds = receiverSweepIntervalSeconds;
+        }
+    }
+
+    /**
+     * 登录用户缓存相关配置 (app.users.*)
+     */
+    public static class Users {
+
+        /** 已存在用户的缓存时间(秒)，0 表示不缓存 */
+        private long cacheTtlSeconds = 300;
+
+        /** 不存在的用户名的缓存时间(秒)，0 表示不缓存 */
+        private long cacheNegativeTtlSeconds = 30;
+
+        /** 缓存的用户名数量上限，超出时淘汰最久未使用的 */
+        private int cacheMaxEntries = 10000;
+
+        public long getCacheTtlSeconds() {
+            return cacheTtlSeconds;
+        }
+
+        public void setCacheTtlSeconds(long cacheTtlSeconds) {
+            this.cacheTtlSeconds = cacheTtlSeconds;
+        }
+
+        public long getCacheNegativeTtlSeconds() {
+            return cacheNegativeTtlSeconds;
+        }
+
+        public void setCacheNegativeTtlSeconds(long cacheNegativeTtlSeconds) {
+            this.cacheNegativeTtlSeconds = cacheNegativeTtlSeconds;
+        }
+
+        public int getCacheMaxEntries() {
+            return cacheMaxEntries;
+        }
+
+        public void setCacheMaxEntries(int cacheMaxEntries) {
+            this.cacheMaxEntries = cacheMaxEntries;
+        }
+    }
 }
@@ -0,0 +1,34 @@
+package com.example.geminispringboot.config;
+
+import com.example.geminispringboot.service.BatchProcessingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * batch profile 的入口：启动后处理 app.batch.input-dir 下的全部任务，处理完即退出。
+ * <p>
+ * 用法: {@code java -jar gemini-springboot.jar --spring.profiles.active=batch --app.batch.input-dir=/data/rosters}
+ * <br>
+ * 有任务失败时启动以异常结束，进程退出码非 0，便于 cron 发现。
+ */
+@Component
+@Profile("batch")
+public class BatchRunner implements ApplicationRunner {
+
+    @Autowired
+    private BatchProcessingService batchProcessingService;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<BatchProcessingService.JobResult> results = batchProcessingService.run(System.out);
+        long failed = results.stream().filter(result -> !result.isSucceeded()).count();
+        if (failed > 0) {
+            throw new IllegalStateException("批处理结束，" + failed + " 个任务失败");
+        }
+    }
+}
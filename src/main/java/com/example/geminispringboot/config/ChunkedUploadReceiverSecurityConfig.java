@@ -0,0 +1,28 @@
+package com.example.geminispringboot.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.web.SecurityFilterChain;
+
+/**
+ * 本地分片接收端模拟外部系统，不需要登录和 CSRF 令牌。
+ * 与 ChunkedUploadReceiverController 使用同一个开关，未启用接收端时这些路径仍按 {@link SecurityConfig} 要求登录。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.upload", name = "receiver-enabled", havingValue = "true")
+public class ChunkedUploadReceiverSecurityConfig {
+
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public SecurityFilterChain chunkedUploadReceiverFilterChain(HttpSecurity http) throws Exception {
+        http
+            .antMatcher("/upload/chunked-receiver/**")
+            .authorizeRequests(authorizeRequests -> authorizeRequests.anyRequest().permitAll())
+            .csrf(csrf -> csrf.disable());
+        return http.build();
+    }
+}
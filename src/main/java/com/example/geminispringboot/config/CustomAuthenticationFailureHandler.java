@@ -1,8 +1,7 @@
 package com.example.geminispringboot.config;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
-import com.example.geminispringboot.dao.service.UserDaoService;
 import com.example.geminispringboot.model.User;
+import com.example.geminispringboot.service.UserCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.authentication.AuthenticationFailureHandler;
@@ -21,8 +20,9 @@ public class CustomAuthenticationFailureHandler implements AuthenticationFailure
 
     private static final Logger logger = LoggerFactory.getLogger(CustomAuthenticationFailureHandler.class);
 
+    // 登录时 UserDetailsServiceImpl 刚查询过该用户名，这里通常直接命中缓存
     @Autowired
-    private UserDaoService userDaoService;
+    private UserCache userCache;
 
     @Override
     public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response,
@@ -32,7 +32,7 @@ public class CustomAuthenticationFailureHandler implements AuthenticationFailure
 
         User user = null;
         if (username != null) {
-             user = userDaoService.getOne(new QueryWrapper<User>().eq("username", username));
+             user = userCache.get(username);
         }
        
         String specificErrorMessage;
@@ -0,0 +1,52 @@
+package com.example.geminispringboot.config;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件转发上传共用的 HTTP 客户端。
+ * <p>
+ * 连接池按目标地址复用连接 (包括 TLS 会话)，连接数、超时和空闲连接保留时间见 app.upload.*。
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient uploadHttpClient(AppProperties appProperties) {
+        AppProperties.Upload upload = appProperties.getUpload();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(upload.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(upload.getMaxConnectionsPerRoute());
+        // 空闲超过 2 秒的连接在复用前先检查是否已被服务端关闭
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(upload.getConnectTimeoutMillis())
+                .setSocketTimeout(upload.getSocketTimeoutMillis())
+                .setConnectionRequestTimeout(upload.getConnectionRequestTimeoutMillis())
+                .build();
+
+        // 优先使用服务端 Keep-Alive 响应头给出的时间
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? keepAlive : upload.getKeepAliveMillis();
+        };
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(upload.getKeepAliveMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.geminispringboot.config;
+
+/**
+ * 批量更新考勤表后的公式重算方式。
+ */
+public enum RecalculationMode {
+
+    /** 重算工作簿中的全部公式(原有行为) */
+    FULL,
+
+    /** 只重算依赖于被修改单元格的公式 */
+    INCREMENTAL,
+
+    /** 先增量重算，再全量重算并比对结果，不一致时输出警告，用于核对增量结果 */
+    VERIFY
+}
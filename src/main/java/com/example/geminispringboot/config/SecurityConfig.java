@@ -4,16 +4,21 @@ import com.example.geminispringboot.config.CustomAuthenticationFailureHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 
 /**
  * Spring Security configuration for authentication.
- * Protects all endpoints except login page and static resources.
+ * Protects all endpoints except login page, static resources, registration and /actuator/health.
+ * Other actuator endpoints (metrics, prometheus) require an ADMIN user via HTTP Basic so that
+ * scrapers can authenticate without a login form.
  */
 @Configuration
 @EnableWebSecurity
@@ -23,6 +28,26 @@ public class SecurityConfig {
     @Autowired
     private CustomAuthenticationFailureHandler authenticationFailureHandler;
 
+    /**
+     * Actuator endpoints. Health only reports UP/DOWN (show-details is off) and stays public for probes;
+     * metrics expose JVM, HTTP, memory budget and upload details, so scraping requires an ADMIN user.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain actuatorSecurityFilterChain(HttpSecurity http) throws Exception {
+        http
+            .antMatcher("/actuator/**")
+            .authorizeRequests(authorizeRequests ->
+                authorizeRequests
+                    .antMatchers("/actuator/health").permitAll()
+                    .anyRequest().hasRole("ADMIN")
+            )
+            .httpBasic(Customizer.withDefaults())
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .csrf(csrf -> csrf.disable());
+        return http.build();
+    }
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -53,7 +78,7 @@ public class SecurityConfig {
                     .permitAll()
             )
             // Disable CSRF for API endpoints
-            .csrf(csrf -> csrf.ignoringAntMatchers("/process-roster", "/download/**", "/api/**"));
+            .csrf(csrf -> csrf.ignoringAntMatchers("/process-roster", "/process-roster/async", "/process-roster/incremental", "/process-roster/zip", "/jobs/**", "/download/**", "/api/**"));
         return http.build();
     }
 
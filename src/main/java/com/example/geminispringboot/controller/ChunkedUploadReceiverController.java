@@ -0,0 +1,80 @@
+package com.example.geminispringboot.controller;
+
+import com.example.geminispringboot.service.ChunkedUploadReceiverService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 分片上传的本地接收端，只在 app.upload.receiver-enabled=true 时注册，用于离线联调 /upload/file/chunked。
+ * 分片内容以原始请求体 (application/octet-stream) 上传。
+ */
+@RestController
+@RequestMapping("/upload/chunked-receiver")
+@ConditionalOnProperty(prefix = "app.upload", name = "receiver-enabled", havingValue = "true")
+public class ChunkedUploadReceiverController {
+
+    @Autowired
+    private ChunkedUploadReceiverService receiverService;
+
+    @PostMapping("/init")
+    public ResponseEntity<?> init(@RequestParam("fileName") String fileName,
+                                  @RequestParam("fileSize") long fileSize,
+                                  @RequestParam("chunkSize") int chunkSize) {
+        try {
+            return ResponseEntity.ok(receiverService.init(fileName, fileSize, chunkSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body("初始化上传失败: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{uploadId}/status")
+    public ResponseEntity<?> status(@PathVariable String uploadId) {
+        Map<String, Object> status = receiverService.status(uploadId);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    @RequestMapping(value = "/{uploadId}/chunks/{index}", method = {RequestMethod.PUT, RequestMethod.POST})
+    public ResponseEntity<?> receiveChunk(@PathVariable String uploadId, @PathVariable int index,
+                                          HttpServletRequest request) {
+        if (!receiverService.exists(uploadId)) {
+            return ResponseEntity.notFound().build();
+        }
+        try (InputStream content = request.getInputStream()) {
+            return ResponseEntity.ok(receiverService.receiveChunk(uploadId, index, content));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body("保存分片失败: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<?> complete(@PathVariable String uploadId) {
+        if (!receiverService.exists(uploadId)) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(receiverService.complete(uploadId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body("合并文件失败: " + e.getMessage());
+        }
+    }
+}
@@ -2,13 +2,16 @@ package com.example.geminispringboot.controller;
 
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.json.JSONUtil;
+import com.example.geminispringboot.service.ChunkedUploadService;
 import com.example.geminispringboot.service.FileUploadService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -17,6 +20,9 @@ public class HelloController {
     @Autowired
     FileUploadService fileUploadService;
 
+    @Autowired
+    ChunkedUploadService chunkedUploadService;
+
     @GetMapping("/hello")
     public String hello() {
         return "Hello, Gemini! Current time is: " + DateUtil.now();
@@ -32,4 +38,25 @@ public class HelloController {
         return JSONUtil.toJsonStr(stringObjectMap);
 
     }
+
+    /**
+     * 批量转发上传，各文件并行上传，返回每个文件的结果和耗时。
+     */
+    @PostMapping("/upload/files")
+    public String uploadFiles(String uploadUrl, @RequestParam("files") List<MultipartFile> files,
+                              String enterpriseCode,
+                              String signature,
+                              String timestamp) {
+        List<Map<String, Object>> results = fileUploadService.uploadFiles(uploadUrl, files, enterpriseCode, signature, timestamp);
+        return JSONUtil.toJsonStr(results);
+    }
+
+    /**
+     * 大文件分片转发上传。失败时返回 uploadId 和已确认的字节数，带上 uploadId 重新调用即从断点续传。
+     */
+    @PostMapping("/upload/file/chunked")
+    public String uploadFileChunked(String receiverUrl, MultipartFile file, String uploadId) {
+        Map<String, Object> result = chunkedUploadService.uploadFile(receiverUrl, file, uploadId);
+        return JSONUtil.toJsonStr(result);
+    }
 }
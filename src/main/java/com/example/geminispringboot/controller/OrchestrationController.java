@@ -1,23 +1,38 @@
 package com.example.geminispringboot.controller;
 
+import com.example.geminispringboot.model.ProcessingJob;
 import com.example.geminispringboot.model.ProcessingResult;
+import com.example.geminispringboot.service.IncrementalProcessingService;
+import com.example.geminispringboot.service.MemoryAdmissionService;
 import com.example.geminispringboot.service.OrchestrationService;
+import com.example.geminispringboot.service.ProcessingJobService;
+import com.example.geminispringboot.service.ProcessingResultStore;
+import com.example.geminispringboot.service.ProgressListener;
+import com.example.geminispringboot.service.RosterParseCache;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 public class OrchestrationController {
@@ -25,19 +40,34 @@ public class OrchestrationController {
     @Autowired
     private OrchestrationService orchestrationService;
 
-    // 使用一个简单的Map作为内存缓存来存储处理结果
-    private static final Map<String, ProcessingResult> resultCache = new ConcurrentHashMap<>();
+    @Autowired
+    private ProcessingJobService processingJobService;
+
+    @Autowired
+    private RosterParseCache rosterParseCache;
+
+    @Autowired
+    private IncrementalProcessingService incrementalProcessingService;
+
+    @Autowired
+    private MemoryAdmissionService memoryAdmissionService;
+
+    // 处理结果的内存缓存，同步和异步处理共用
+    @Autowired
+    private ProcessingResultStore resultCache;
 
     @PostMapping("/process-roster")
     public ResponseEntity<?> processRoster(
             @RequestParam("dutyRosterFiles") List<MultipartFile> dutyRosterFiles,
             @RequestParam("attendanceFile") MultipartFile attendanceFile,
-            @RequestParam("days") List<Integer> days) {
+            @RequestParam("days") List<Integer> days,
+            @RequestParam(value = "detailLogs", defaultValue = "false") boolean detailLogs,
+            @RequestParam(value = "allSheets", defaultValue = "false") boolean allSheets) {
 
         try {
-            ProcessingResult result = orchestrationService.processFiles(dutyRosterFiles, attendanceFile, days);
-            String transactionId = UUID.randomUUID().toString();
-            resultCache.put(transactionId, result);
+            ProcessingResult result = orchestrationService.processFiles(dutyRosterFiles, attendanceFile, days, detailLogs, allSheets,
+                    ProgressListener.NONE);
+            String transactionId = resultCache.put(result);
 
             // 使用 Java 8 兼容的方式创建 Map
             Map<String, Object> responseBody = new HashMap<>();
@@ -46,24 +76,182 @@ public class OrchestrationController {
 
             return ResponseEntity.ok(responseBody);
 
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body("处理失败: " + e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(500).body("处理失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 以一个 zip 压缩包上传全部值班表，日期从压缩包内的文件名识别(如"5日值班表.xlsx")。
+     */
+    @PostMapping("/process-roster/zip")
+    public ResponseEntity<?> processRosterArchive(
+            @RequestParam("rosterArchive") MultipartFile rosterArchive,
+            @RequestParam("attendanceFile") MultipartFile attendanceFile,
+            @RequestParam(value = "detailLogs", defaultValue = "false") boolean detailLogs,
+            @RequestParam(value = "allSheets", defaultValue = "false") boolean allSheets) {
+
+        try {
+            ProcessingResult result = orchestrationService.processArchive(rosterArchive, attendanceFile, detailLogs, allSheets,
+                    ProgressListener.NONE);
+            String transactionId = resultCache.put(result);
+
+            Map<String, Object> responseBody = new HashMap<>();
+            responseBody.put("transactionId", transactionId);
+            responseBody.put("logs", result.getLogs());
+
+            return ResponseEntity.ok(responseBody);
+
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body("处理失败: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("处理失败: " + e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(500).body("处理失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 异步提交处理任务，立即返回任务ID。处理完成后通过 /jobs/{jobId} 查询结果，
+     * 成功的任务可直接用 /download/{jobId} 下载。
+     */
+    @PostMapping("/process-roster/async")
+    public ResponseEntity<?> processRosterAsync(
+            @RequestParam("dutyRosterFiles") List<MultipartFile> dutyRosterFiles,
+            @RequestParam("attendanceFile") MultipartFile attendanceFile,
+            @RequestParam("days") List<Integer> days,
+            @RequestParam(value = "detailLogs", defaultValue = "false") boolean detailLogs,
+            @RequestParam(value = "allSheets", defaultValue = "false") boolean allSheets) {
+
+        try {
+            ProcessingJob job = processingJobService.submit(dutyRosterFiles, attendanceFile, days, detailLogs, allSheets);
+
+            Map<String, Object> responseBody = new HashMap<>();
+            responseBody.put("jobId", job.getJobId());
+            responseBody.put("status", job.getStatus());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(responseBody);
+
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body("处理任务过多，请稍后再试。");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("处理失败: " + e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(500).body("处理失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 按月增量处理：stateKey 标识一个月的处理状态，只重新计算值班表发生变化的日期。
+     * 首次处理必须上传考勤表，之后可以只上传值班表。
+     */
+    @PostMapping("/process-roster/incremental")
+    public ResponseEntity<?> processRosterIncremental(
+            @RequestParam("stateKey") String stateKey,
+            @RequestParam("dutyRosterFiles") List<MultipartFile> dutyRosterFiles,
+            @RequestParam(value = "attendanceFile", required = false) MultipartFile attendanceFile,
+            @RequestParam("days") List<Integer> days,
+            @RequestParam(value = "detailLogs", defaultValue = "false") boolean detailLogs) {
+
+        try {
+            ProcessingResult result = incrementalProcessingService.processFiles(stateKey, dutyRosterFiles, days, attendanceFile, detailLogs);
+            String transactionId = resultCache.put(result);
+
+            Map<String, Object> responseBody = new HashMap<>();
+            responseBody.put("transactionId", transactionId);
+            responseBody.put("logs", result.getLogs());
+
+            return ResponseEntity.ok(responseBody);
+
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body("处理失败: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("处理失败: " + e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(500).body("处理失败: " + e.getMessage());
         }
     }
 
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getJob(@PathVariable String jobId) {
+        ProcessingJob job = processingJobService.getJob(jobId);
+
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("jobId", job.getJobId());
+        responseBody.put("status", job.getStatus());
+        responseBody.put("submittedAt", job.getSubmittedAt());
+        responseBody.put("startedAt", job.getStartedAt());
+        responseBody.put("finishedAt", job.getFinishedAt());
+        responseBody.put("progress", job.getProgress());
+        if (job.getStatus() == ProcessingJob.Status.SUCCEEDED) {
+            responseBody.put("transactionId", job.getJobId());
+            responseBody.put("logs", job.getLogs());
+        } else if (job.getStatus() == ProcessingJob.Status.FAILED) {
+            responseBody.put("error", job.getError());
+        }
+        return ResponseEntity.ok(responseBody);
+    }
+
+    /**
+     * 以 SSE 推送任务进度: progress 事件包含阶段、百分比和耗时，任务结束时发送 completed 或 failed 事件。
+     */
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeJobEvents(@PathVariable String jobId) {
+        SseEmitter emitter = processingJobService.subscribe(jobId);
+
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    @GetMapping("/results/stats")
+    public ResponseEntity<Map<String, Object>> getResultStats() {
+        return ResponseEntity.ok(resultCache.getStats());
+    }
+
+    @GetMapping("/memory/stats")
+    public ResponseEntity<Map<String, Object>> getMemoryStats() {
+        return ResponseEntity.ok(memoryAdmissionService.getStats());
+    }
+
+    @GetMapping("/roster-cache/stats")
+    public ResponseEntity<Map<String, Object>> getRosterCacheStats() {
+        return ResponseEntity.ok(rosterParseCache.getStats());
+    }
+
     @GetMapping("/download/{transactionId}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String transactionId) {
-        ProcessingResult result = resultCache.get(transactionId);
+    public ResponseEntity<StreamingResponseBody> downloadFile(@PathVariable String transactionId) throws IOException {
+        // 先从缓存中取出结果，并发的下载、淘汰和过期都不会再删除正在发送的文件，重复下载直接返回 404
+        ProcessingResult result = resultCache.take(transactionId);
 
         if (result == null) {
             return ResponseEntity.notFound().build();
         }
 
-        byte[] fileContent = result.getFileContent();
-        String originalFilename = result.getOriginalFilename();
+        // 返回响应头之前打开文件，保证声明的 Content-Length 与发送的内容一致
+        FileChannel channel = null;
+        if (result.isFileBacked()) {
+            try {
+                channel = FileChannel.open(result.getFile(), StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                return ResponseEntity.notFound().build();
+            } catch (IOException e) {
+                Files.deleteIfExists(result.getFile());
+                return ResponseEntity.status(500).build();
+            }
+        }
 
-        ByteArrayResource resource = new ByteArrayResource(fileContent);
+        String originalFilename = result.getOriginalFilename();
 
         ContentDisposition contentDisposition = ContentDisposition.builder("attachment")
                 .filename(originalFilename, StandardCharsets.UTF_8)
@@ -72,13 +260,36 @@ public class OrchestrationController {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentDisposition(contentDisposition);
 
-        // 成功获取后可以从缓存中移除，避免内存一直增长
-        resultCache.remove(transactionId);
+        // 文件内容直接写入响应输出流，写完后删除文件
+        FileChannel source = channel;
+        StreamingResponseBody body = outputStream -> {
+            try {
+                if (source == null) {
+                    outputStream.write(result.getFileContent());
+                } else {
+                    transfer(source, result.getContentLength(), outputStream);
+                }
+                outputStream.flush();
+            } finally {
+                if (source != null) {
+                    source.close();
+                    Files.deleteIfExists(result.getFile());
+                }
+            }
+        };
 
         return ResponseEntity.ok()
                 .headers(headers)
-                .contentLength(fileContent.length)
+                .contentLength(result.getContentLength())
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+                .body(body);
+    }
+
+    private static void transfer(FileChannel channel, long length, OutputStream outputStream) throws IOException {
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        long position = 0;
+        while (position < length) {
+            position += channel.transferTo(position, length - position, target);
+        }
     }
 }
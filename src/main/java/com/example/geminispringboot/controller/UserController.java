@@ -3,6 +3,7 @@ package com.example.geminispringboot.controller;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.example.geminispringboot.dao.service.UserDaoService;
 import com.example.geminispringboot.model.User;
+import com.example.geminispringboot.service.UserCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -21,6 +22,9 @@ public class UserController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserCache userCache;
+
     @PostMapping("/register")
     public String registerUser(@RequestBody Map<String, String> payload) {
         User newUser = new User();
@@ -28,6 +32,8 @@ public class UserController {
         newUser.setPassword(passwordEncoder.encode(payload.get("password")));
         newUser.setRoles("ROLE_USER");
         userDaoService.save(newUser);
+        // 清除该用户名"不存在"的缓存，新用户可以立即登录
+        userCache.invalidate(newUser.getUsername());
         return "User registered successfully";
     }
 
@@ -50,6 +56,8 @@ public class UserController {
         if (passwordEncoder.matches(oldPassword, user.getPassword())) {
             user.setPassword(passwordEncoder.encode(newPassword));
             userDaoService.updateById(user);
+            // 旧密码立即失效
+            userCache.invalidate(username);
             return "Password changed successfully";
         } else {
             return "Old password is not correct";
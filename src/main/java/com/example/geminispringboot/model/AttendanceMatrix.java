@@ -0,0 +1,189 @@
+package com.example.geminispringboot.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次处理过程中"员工 × 日期"的考勤更新矩阵。
+ * <p>
+ * 员工按考勤表姓名列表编号，日期直接作为列下标，班次以字节编码保存在一维数组中(按员工行优先)，
+ * 每天已排班的员工用位图记录，"休"假补全用另一张位图标记。
+ * 整月的更新只占用若干个数组，不再为每个员工每天创建一个 {@link UpdateAttendanceRequest}。
+ */
+public final class AttendanceMatrix {
+
+    /** 班次编码 0 表示该单元格没有标准更新 */
+    public static final int NO_SHIFT = 0;
+
+    private static final int MAX_SHIFT_CODES = 255;
+
+    private final List<String> employeeNames = new ArrayList<>();
+    private final Map<String, Integer> employeeIds = new HashMap<>();
+    private final int maxDay;
+    private final int width;
+
+    private final byte[] shiftCodes;
+    private final BitSet restFill;
+    private final BitSet[] rosteredByDay;
+
+    private final List<String> shiftTable = new ArrayList<>();
+    private final Map<String, Integer> shiftCodeByName = new HashMap<>();
+    private String restShift;
+
+    /**
+     * @param employeeNames 考勤表中的员工姓名列表，重复的姓名共用一个编号
+     * @param maxDay        矩阵可容纳的最大日期
+     */
+    public AttendanceMatrix(List<String> employeeNames, int maxDay) {
+        for (String name : employeeNames) {
+            if (!employeeIds.containsKey(name)) {
+                employeeIds.put(name, this.employeeNames.size());
+                this.employeeNames.add(name);
+            }
+        }
+        this.maxDay = maxDay;
+        this.width = maxDay + 1;
+        this.shiftCodes = new byte[this.employeeNames.size() * width];
+        this.restFill = new BitSet(shiftCodes.length);
+        this.rosteredByDay = new BitSet[width];
+        this.shiftTable.add(null);
+    }
+
+    public int getEmployeeCount() {
+        return employeeNames.size();
+    }
+
+    public String getEmployeeName(int employeeId) {
+        return employeeNames.get(employeeId);
+    }
+
+    /**
+     * @return 员工编号，不在姓名列表中时返回 -1
+     */
+    public int idOf(String name) {
+        Integer id = employeeIds.get(name);
+        return id != null ? id : -1;
+    }
+
+    public int getMaxDay() {
+        return maxDay;
+    }
+
+    /**
+     * 记录一条标准更新，同一单元格多次写入时以最后一次为准。
+     */
+    public void setShift(int employeeId, int day, String shift) {
+        shiftCodes[offset(employeeId, day)] = (byte) encode(shift);
+    }
+
+    /**
+     * @return 班次编码，没有标准更新时返回 {@link #NO_SHIFT}
+     */
+    public int getShiftCode(int employeeId, int day) {
+        return shiftCodes[offset(employeeId, day)] & 0xFF;
+    }
+
+    public String decodeShift(int shiftCode) {
+        return shiftTable.get(shiftCode);
+    }
+
+    /**
+     * 标记某天有值班表(即使当天还没有人员)，只有这些日期会参与"休"假补全。
+     */
+    public BitSet markRosterDay(int day) {
+        checkDay(day);
+        BitSet rostered = rosteredByDay[day];
+        if (rostered == null) {
+            rostered = new BitSet(employeeNames.size());
+            rosteredByDay[day] = rostered;
+        }
+        return rostered;
+    }
+
+    public void markRostered(int day, int employeeId) {
+        markRosterDay(day).set(employeeId);
+    }
+
+    /**
+     * @return 当天已排班的员工位图，当天没有值班表时返回 null
+     */
+    public BitSet getRostered(int day) {
+        checkDay(day);
+        return rosteredByDay[day];
+    }
+
+    /**
+     * 对每个有值班表的日期，把当天未排班的员工标记为"如果单元格为空则填入 restShift"。
+     *
+     * @return 标记的单元格数量
+     */
+    public int fillRest(String restShift) {
+        this.restShift = restShift;
+        int count = 0;
+        int employeeCount = employeeNames.size();
+        for (int day = 1; day <= maxDay; day++) {
+            BitSet rostered = rosteredByDay[day];
+            if (rostered == null) {
+                continue;
+            }
+            for (int id = rostered.nextClearBit(0); id < employeeCount; id = rostered.nextClearBit(id + 1)) {
+                restFill.set(id * width + day);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean isRest(int employeeId, int day) {
+        return restFill.get(offset(employeeId, day));
+    }
+
+    public String getRestShift() {
+        return restShift;
+    }
+
+    /**
+     * @return 该员工是否有任何标准更新或"休"假补全
+     */
+    public boolean hasUpdates(int employeeId) {
+        int start = employeeId * width;
+        int end = start + width;
+        int nextRest = restFill.nextSetBit(start);
+        if (nextRest != -1 && nextRest < end) {
+            return true;
+        }
+        for (int i = start; i < end; i++) {
+            if (shiftCodes[i] != NO_SHIFT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int encode(String shift) {
+        Integer code = shiftCodeByName.get(shift);
+        if (code == null) {
+            if (shiftTable.size() > MAX_SHIFT_CODES) {
+                throw new IllegalStateException("班次种类超过 " + MAX_SHIFT_CODES + " 个");
+            }
+            code = shiftTable.size();
+            shiftTable.add(shift);
+            shiftCodeByName.put(shift, code);
+        }
+        return code;
+    }
+
+    private int offset(int employeeId, int day) {
+        checkDay(day);
+        return employeeId * width + day;
+    }
+
+    private void checkDay(int day) {
+        if (day < 1 || day > maxDay) {
+            throw new IllegalArgumentException("日期超出范围: " + day);
+        }
+    }
+}
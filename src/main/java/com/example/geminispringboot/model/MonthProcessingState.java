@@ -0,0 +1,65 @@
+package com.example.geminispringboot.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一个月考勤表的增量处理状态，以 JSON 保存在 app.incremental.state-dir 下。
+ * <p>
+ * 记录每个值班日期上次使用的值班表(按缓存键)及其收集到的更新，以及被处理修改过的单元格的原始内容。
+ * 再次提交时只有值班表发生变化的日期(及其次日)需要重新计算。
+ */
+@Data
+public class MonthProcessingState {
+
+    /** 原始考勤表内容的 SHA-256，上传了不同的考勤表时重新开始 */
+    private String attendanceHash;
+
+    private String originalFilename;
+
+    /**
+     * 与本状态一起保存的考勤表 (workbook.xlsx) 的 SHA-256。
+     * 两个文件不是原子地一起替换，读取时与磁盘上的考勤表核对，不一致时丢弃状态重新开始
+     */
+    private String workbookHash;
+
+    /** 保存次数，每次写回考勤表和状态时加一 */
+    private long generation;
+
+    /** 值班日期 → 当天值班表收集到的更新 */
+    private Map<Integer, DayState> days = new TreeMap<>();
+
+    /** "行,列" → 该单元格在原始考勤表中的内容，只记录被修改过的单元格 */
+    private Map<String, CellSnapshot> originalCells = new HashMap<>();
+
+    @Data
+    public static class DayState {
+
+        /** 当天各值班表的缓存键(内容摘要 + 姓名列表和映射表摘要)，按上传顺序 */
+        private List<String> rosterKeys = new ArrayList<>();
+
+        /** 当天值班表中是否有班次，有班次时未排班的员工补"休" */
+        private boolean rosterDay;
+
+        private List<String> rostered = new ArrayList<>();
+
+        /** 按收集顺序记录的标准更新，目标日期可能是次日 */
+        private List<UpdateAttendanceRequest> updates = new ArrayList<>();
+    }
+
+    @Data
+    public static class CellSnapshot {
+
+        /** POI 单元格类型名称，单元格不存在时为 BLANK */
+        private String type;
+        private String stringValue;
+        private double numericValue;
+        private boolean booleanValue;
+        private String formula;
+    }
+}
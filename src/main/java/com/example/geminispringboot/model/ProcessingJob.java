@@ -0,0 +1,89 @@
+package com.example.geminispringboot.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一个异步提交的考勤处理任务。状态由工作线程更新，查询接口随时读取。
+ */
+public class ProcessingJob {
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    private final String jobId;
+    private final long submittedAt;
+    private volatile Status status = Status.QUEUED;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile List<String> logs = Collections.emptyList();
+    private volatile String error;
+    private volatile ProgressEvent progress;
+
+    public ProcessingJob(String jobId, long submittedAt) {
+        this.jobId = jobId;
+        this.submittedAt = submittedAt;
+    }
+
+    public void markRunning(long now) {
+        this.startedAt = now;
+        this.status = Status.RUNNING;
+    }
+
+    public void markSucceeded(List<String> logs, long now) {
+        this.logs = logs;
+        this.finishedAt = now;
+        this.status = Status.SUCCEEDED;
+    }
+
+    public void markFailed(String error, long now) {
+        this.error = error;
+        this.finishedAt = now;
+        this.status = Status.FAILED;
+    }
+
+    public void updateProgress(ProgressEvent progress) {
+        this.progress = progress;
+    }
+
+    public boolean isFinished() {
+        Status current = status;
+        return current == Status.SUCCEEDED || current == Status.FAILED;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public List<String> getLogs() {
+        return logs;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return 最近一次进度事件，尚未开始时返回 null
+     */
+    public ProgressEvent getProgress() {
+        return progress;
+    }
+}
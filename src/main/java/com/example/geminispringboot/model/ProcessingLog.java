@@ -0,0 +1,135 @@
+package com.example.geminispringboot.model;
+
+import org.slf4j.helpers.MessageFormatter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次处理过程的事件日志。
+ * <p>
+ * INFO/WARN 事件是面向用户的摘要，全部保留；DEBUG 事件是逐条明细，只有开启明细日志时才记录，
+ * 并且只保留最近的 {@code detailCapacity} 条。消息使用 slf4j 的 {@code {}} 占位符，
+ * 参数在 {@link #toLines()} 时才格式化，未记录的明细不会产生任何字符串拼接。
+ * 各阶段的数量统计通过 {@link #count(String)} 累加。
+ */
+public class ProcessingLog {
+
+    public enum Level {
+        DEBUG, INFO, WARN
+    }
+
+    private static final class Event {
+        final long sequence;
+        final Level level;
+        final String pattern;
+        final Object[] args;
+
+        Event(long sequence, Level level, String pattern, Object[] args) {
+            this.sequence = sequence;
+            this.level = level;
+            this.pattern = pattern;
+            this.args = args;
+        }
+
+        String format() {
+            String message = MessageFormatter.arrayFormat(pattern, args).getMessage();
+            return level == Level.WARN ? "警告: " + message : message;
+        }
+    }
+
+    private final boolean detailEnabled;
+    private final int detailCapacity;
+    private final List<Event> summary = new ArrayList<>();
+    private final Deque<Event> details = new ArrayDeque<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    private long sequence;
+    private long droppedDetails;
+
+    /**
+     * @param detailEnabled  是否记录 DEBUG 明细
+     * @param detailCapacity 最多保留的明细条数，超出时丢弃最早的明细
+     */
+    public ProcessingLog(boolean detailEnabled, int detailCapacity) {
+        this.detailEnabled = detailEnabled && detailCapacity > 0;
+        this.detailCapacity = detailCapacity;
+    }
+
+    public boolean isDetailEnabled() {
+        return detailEnabled;
+    }
+
+    public void info(String pattern, Object... args) {
+        summary.add(new Event(sequence++, Level.INFO, pattern, args));
+    }
+
+    public void warn(String pattern, Object... args) {
+        summary.add(new Event(sequence++, Level.WARN, pattern, args));
+    }
+
+    public void debug(String pattern, Object... args) {
+        if (!detailEnabled) {
+            return;
+        }
+        if (details.size() == detailCapacity) {
+            details.removeFirst();
+            droppedDetails++;
+        }
+        details.addLast(new Event(sequence++, Level.DEBUG, pattern, args));
+    }
+
+    /**
+     * 将计数器 {@code name} 加 1。
+     */
+    public void count(String name) {
+        count(name, 1);
+    }
+
+    public void count(String name, long delta) {
+        counters.merge(name, delta, Long::sum);
+    }
+
+    public long getCount(String name) {
+        return counters.getOrDefault(name, 0L);
+    }
+
+    public Map<String, Long> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    /**
+     * 按记录顺序格式化全部保留的事件。明细被截断时，在第一条保留的明细前注明丢弃的条数。
+     */
+    public List<String> toLines() {
+        List<String> lines = new ArrayList<>(summary.size() + details.size() + 1);
+        Iterator<Event> detailIterator = details.iterator();
+        Event nextDetail = detailIterator.hasNext() ? detailIterator.next() : null;
+        boolean droppedNoted = droppedDetails == 0;
+        for (Event event : summary) {
+            while (nextDetail != null && nextDetail.sequence < event.sequence) {
+                if (!droppedNoted) {
+                    lines.add("    ... 已省略较早的 " + droppedDetails + " 条明细日志");
+                    droppedNoted = true;
+                }
+                lines.add(nextDetail.format());
+                nextDetail = detailIterator.hasNext() ? detailIterator.next() : null;
+            }
+            lines.add(event.format());
+        }
+        while (nextDetail != null) {
+            if (!droppedNoted) {
+                lines.add("    ... 已省略较早的 " + droppedDetails + " 条明细日志");
+                droppedNoted = true;
+            }
+            lines.add(nextDetail.format());
+            nextDetail = detailIterator.hasNext() ? detailIterator.next() : null;
+        }
+        return lines;
+    }
+}
@@ -1,16 +1,37 @@
 package com.example.geminispringboot.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 
 public class ProcessingResult {
 
     private final List<String> logs;
     private final byte[] fileContent;
+    private final Path file;
+    private final long contentLength;
     private final String originalFilename;
 
     public ProcessingResult(List<String> logs, byte[] fileContent, String originalFilename) {
         this.logs = logs;
         this.fileContent = fileContent;
+        this.file = null;
+        this.contentLength = fileContent.length;
+        this.originalFilename = originalFilename;
+    }
+
+    /**
+     * 文件内容保存在本地文件中的结果，下载时直接从文件读取，不经过堆内存。
+     */
+    public ProcessingResult(List<String> logs, Path file, long contentLength, String originalFilename) {
+        this.logs = logs;
+        this.fileContent = null;
+        this.file = file;
+        this.contentLength = contentLength;
         this.originalFilename = originalFilename;
     }
 
@@ -18,8 +39,37 @@ public class ProcessingResult {
         return logs;
     }
 
+    /**
+     * 文件内容的完整副本。保存在本地文件中的结果会通过内存映射读入一个新数组，
+     * 下载时应优先使用 {@link #getFile()}。
+     */
     public byte[] getFileContent() {
-        return fileContent;
+        if (file == null) {
+            return fileContent;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, contentLength);
+            byte[] content = new byte[(int) contentLength];
+            buffer.get(content);
+            return content;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean isFileBacked() {
+        return file != null;
+    }
+
+    /**
+     * @return 保存文件内容的本地文件，内容在内存中时返回 null
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    public long getContentLength() {
+        return contentLength;
     }
 
     public String getOriginalFilename() {
@@ -0,0 +1,53 @@
+package com.example.geminispringboot.model;
+
+/**
+ * 处理过程中某个阶段完成时发出的进度事件。
+ */
+public class ProgressEvent {
+
+    private final String stage;
+    private final String message;
+    private final int percent;
+    private final long stageMillis;
+    private final long elapsedMillis;
+
+    public ProgressEvent(String stage, String message, int percent, long stageMillis, long elapsedMillis) {
+        this.stage = stage;
+        this.message = message;
+        this.percent = percent;
+        this.stageMillis = stageMillis;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return 阶段代码: load, extract, parse, rest-fill, batch-update, write
+     */
+    public String getStage() {
+        return stage;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return 整体完成百分比 (0-100)
+     */
+    public int getPercent() {
+        return percent;
+    }
+
+    /**
+     * @return 本阶段耗时(毫秒)
+     */
+    public long getStageMillis() {
+        return stageMillis;
+    }
+
+    /**
+     * @return 从开始处理到本事件的总耗时(毫秒)
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.geminispringboot.model;
+
+/**
+ * 预先构建的班次描述：值班表中的班次关键字、对应的考勤表简写，以及解析结果中使用的键 "关键字(简写)"。
+ * <p>
+ * 相等性与哈希值只取决于结果键，因此以它为键的 HashMap 与原来以 "关键字(简写)" 字符串为键的结果遍历顺序相同。
+ */
+public final class ShiftDescriptor {
+
+    private final String key;
+    private final String alias;
+    private final String resultKey;
+
+    public ShiftDescriptor(String key, String alias) {
+        this.key = key;
+        this.alias = alias != null ? alias : "";
+        this.resultKey = String.format("%s(%s)", key, this.alias);
+    }
+
+    /**
+     * @return 值班表中的班次关键字，如 "白班"
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return 写入考勤表的班次简写，如 "白"；未配置时为空字符串
+     */
+    public String getAlias() {
+        return alias;
+    }
+
+    /**
+     * @return 解析结果键，如 "白班(白)"
+     */
+    public String getResultKey() {
+        return resultKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return resultKey.equals(((ShiftDescriptor) o).resultKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return resultKey.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return resultKey;
+    }
+}
@@ -1,14 +1,22 @@
 package com.example.geminispringboot.service;
 
 import cn.hutool.core.util.StrUtil;
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.config.RecalculationMode;
+import com.example.geminispringboot.model.AttendanceMatrix;
 import com.example.geminispringboot.model.UpdateAttendanceRequest;
+import com.example.geminispringboot.util.LoadedWorkbook;
 import org.apache.poi.ss.usermodel.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList; // Added this import
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,36 +25,47 @@ import java.util.Objects;
 @Service
 public class AttendanceService {
 
+    private static final Logger logger = LoggerFactory.getLogger(AttendanceService.class);
+
+    @Autowired
+    private AppProperties appProperties;
+
+    /**
+     * Builds the layout index of the first sheet. Callers that need several lookups on the same
+     * workbook (names, last day, batch update) should build it once and pass it around.
+     */
+    public AttendanceSheetIndex buildIndex(Workbook workbook) {
+        return buildIndex(workbook, 0);
+    }
+
+    /**
+     * Builds the layout index of the given sheet. Building only reads the sheet, so indexes of different
+     * sheets of the same workbook may be built concurrently as long as nothing writes to the workbook meanwhile.
+     */
+    public AttendanceSheetIndex buildIndex(Workbook workbook, int sheetIndex) {
+        return AttendanceSheetIndex.build(workbook.getSheetAt(sheetIndex));
+    }
+
     /**
      * [OPTIMIZED] Overloaded method to get the last day of the month from an in-memory Workbook.
      */
     public int getLastDayOfMonth(Workbook workbook) throws IOException {
-        Sheet sheet = workbook.getSheetAt(0);
-        int dateHeaderRowIndex = findRowContaining(sheet, "日     期", 0, 5);
-        if (dateHeaderRowIndex == -1) throw new IOException("文件中找不到日期表头行(含'日     期')");
-
-        int dayNumbersRowIndex = findRowContainingNumber(sheet, 1, dateHeaderRowIndex + 1, dateHeaderRowIndex + 3);
-        if (dayNumbersRowIndex == -1) throw new IOException("在'日     期'行下方找不到包含数字'1'的日期行");
-
-        Row dayNumbersRow = sheet.getRow(dayNumbersRowIndex);
-        if (dayNumbersRow != null) {
-            int lastCellNum = dayNumbersRow.getLastCellNum();
-            for (int i = lastCellNum - 1; i >= 0; i--) {
-                Cell cell = dayNumbersRow.getCell(i);
-                if (cell != null && cell.getCellType() == CellType.NUMERIC) {
-                    return (int) cell.getNumericCellValue();
-                }
-            }
-        }
-        throw new IOException("无法确定月份的最后一天");
+        return getLastDayOfMonth(buildIndex(workbook));
+    }
+
+    /**
+     * Gets the last day of the month from a pre-built sheet index.
+     */
+    public int getLastDayOfMonth(AttendanceSheetIndex index) throws IOException {
+        return index.getLastDayOfMonth();
     }
 
     /**
      * [DEPRECATED - for reference] Original method reading from a file path.
      */
     public int getLastDayOfMonth(String filePath) throws IOException {
-        try (Workbook workbook = WorkbookFactory.create(new FileInputStream(filePath))) {
-            return getLastDayOfMonth(workbook);
+        try (LoadedWorkbook loadedWorkbook = LoadedWorkbook.open(new File(filePath))) {
+            return getLastDayOfMonth(loadedWorkbook.getWorkbook());
         }
     }
 
@@ -59,68 +78,209 @@ public class AttendanceService {
      * @return Returns true if any cell was modified.
      */
     public boolean batchUpdateAttendance(Workbook workbook, List<UpdateAttendanceRequest> standardUpdates, List<UpdateAttendanceRequest> ifEmptyUpdates) throws IOException {
-        Sheet sheet = workbook.getSheetAt(0);
-        boolean hasUpdates = false;
-
-        // --- Find header and date row/column indexes once ---
-        int employeeHeaderRowIndex = findRowContaining(sheet, "姓名", 0, 5);
-        if (employeeHeaderRowIndex == -1) throw new IOException("文件中找不到员工信息表头行(含'姓名')");
+        return batchUpdateAttendance(workbook, buildIndex(workbook), standardUpdates, ifEmptyUpdates);
+    }
 
-        int dateHeaderRowIndex = findRowContaining(sheet, "日     期", 0, 5);
-        if (dateHeaderRowIndex == -1) throw new IOException("文件中找不到日期表头行(含'日     期')");
+    /**
+     * Same as {@link #batchUpdateAttendance(Workbook, List, List)} but reuses a pre-built sheet index.
+     */
+    public boolean batchUpdateAttendance(Workbook workbook, AttendanceSheetIndex index, List<UpdateAttendanceRequest> standardUpdates, List<UpdateAttendanceRequest> ifEmptyUpdates) throws IOException {
+        // --- Header and date row/column indexes come from the shared index ---
+        index.requireUpdateLayout();
+        List<Cell> changedCells = new ArrayList<>();
+        try (ProcessingMetrics.Stage batchUpdateStage = ProcessingMetrics.start(ProcessingMetrics.STAGE_BATCH_UPDATE)) {
+            // --- Process standard updates ---
+            for (UpdateAttendanceRequest request : standardUpdates) {
+                Cell updated = updateCell(index, request, false);
+                if (updated != null) {
+                    changedCells.add(updated);
+                }
+            }
 
-        int nameColumnIndex = findColumnIndex(sheet, "姓名", employeeHeaderRowIndex);
-        if (nameColumnIndex == -1) throw new IOException("文件中找不到'姓名'列");
+            // --- Process "update if empty" updates ---
+            for (UpdateAttendanceRequest request : ifEmptyUpdates) {
+                Cell updated = updateCell(index, request, true);
+                if (updated != null) {
+                    changedCells.add(updated);
+                }
+            }
+            batchUpdateStage.success();
+        }
+        ProcessingMetrics.recordCellsTouched(changedCells.size());
 
-        int dayNumbersRowIndex = findRowContainingNumber(sheet, 1, dateHeaderRowIndex + 1, dateHeaderRowIndex + 3);
-        if (dayNumbersRowIndex == -1) throw new IOException("在'日     期'行下方找不到包含数字'1'的日期行");
+        // --- If any changes were made, re-evaluate formulas once at the end ---
+        recalculateChangedCells(workbook, changedCells);
 
-        int employeeDataStartRow = employeeHeaderRowIndex + 2;
+        return !changedCells.isEmpty();
+    }
 
-        // --- Caches to avoid repeated lookups ---
-        Map<String, Integer> nameRowCache = new HashMap<>();
-        Map<Integer, Integer> dayColCache = new HashMap<>();
+    private void recalculateChangedCells(Workbook workbook, List<Cell> changedCells) {
+        if (changedCells.isEmpty()) {
+            return;
+        }
+        try (ProcessingMetrics.Stage formulaStage = ProcessingMetrics.start(ProcessingMetrics.STAGE_FORMULA_EVALUATION)) {
+            recalculateFormulas(workbook, changedCells, appProperties.getAttendance().getRecalculationMode());
+            formulaStage.success();
+        }
+    }
 
-        // --- Process standard updates ---
-        for (UpdateAttendanceRequest request : standardUpdates) {
-            boolean updated = updateCell(sheet, request, nameColumnIndex, dayNumbersRowIndex, employeeDataStartRow, nameRowCache, dayColCache, false);
-            if (updated) {
-                hasUpdates = true;
+    /**
+     * Applies an employee × day update matrix to the sheet in a single row-major pass.
+     * <p>
+     * For every cell, a standard shift is written unconditionally; otherwise a rest fill is written only if the
+     * cell is blank. This gives the same result as applying all standard updates and then all "if empty" updates
+     * with {@link #batchUpdateAttendance(Workbook, AttendanceSheetIndex, List, List)}.
+     *
+     * @param workbook The workbook to update.
+     * @param index    The pre-built index of the sheet to update.
+     * @param matrix   The collected updates.
+     * @return Returns true if any cell was modified.
+     */
+    public boolean applyAttendanceMatrix(Workbook workbook, AttendanceSheetIndex index, AttendanceMatrix matrix) throws IOException {
+        index.requireUpdateLayout();
+        Sheet sheet = index.getSheet();
+        List<Cell> changedCells = new ArrayList<>();
+        try (ProcessingMetrics.Stage batchUpdateStage = ProcessingMetrics.start(ProcessingMetrics.STAGE_BATCH_UPDATE)) {
+            for (int employeeId = 0; employeeId < matrix.getEmployeeCount(); employeeId++) {
+                if (!matrix.hasUpdates(employeeId)) {
+                    continue;
+                }
+                String name = matrix.getEmployeeName(employeeId);
+                int targetRowIndex = index.findRow(name);
+                if (targetRowIndex == -1) {
+                    logger.warn("在考勤表中未找到员工 '{}'，跳过更新", name);
+                    continue;
+                }
+                Row targetRow = sheet.getRow(targetRowIndex);
+                if (targetRow == null) targetRow = sheet.createRow(targetRowIndex);
+
+                for (int day = 1; day <= matrix.getMaxDay(); day++) {
+                    int shiftCode = matrix.getShiftCode(employeeId, day);
+                    boolean rest = shiftCode == AttendanceMatrix.NO_SHIFT && matrix.isRest(employeeId, day);
+                    if (shiftCode == AttendanceMatrix.NO_SHIFT && !rest) {
+                        continue;
+                    }
+                    int targetColumnIndex = index.findColumn(day);
+                    if (targetColumnIndex == -1) {
+                        throw new IOException("在考勤表中未找到日期: " + day);
+                    }
+                    Cell targetCell = targetRow.getCell(targetColumnIndex);
+                    if (rest && !isBlankCell(targetCell)) {
+                        continue;
+                    }
+                    if (targetCell == null) targetCell = targetRow.createCell(targetColumnIndex);
+                    targetCell.setCellValue(rest ? matrix.getRestShift() : matrix.decodeShift(shiftCode));
+                    changedCells.add(targetCell);
+                }
             }
+            batchUpdateStage.success();
         }
+        ProcessingMetrics.recordCellsTouched(changedCells.size());
 
-        // --- Process "update if empty" updates ---
-        for (UpdateAttendanceRequest request : ifEmptyUpdates) {
-            boolean updated = updateCell(sheet, request, nameColumnIndex, dayNumbersRowIndex, employeeDataStartRow, nameRowCache, dayColCache, true);
-            if (updated) {
-                hasUpdates = true;
+        recalculateChangedCells(workbook, changedCells);
+        return !changedCells.isEmpty();
+    }
+
+    private boolean isBlankCell(Cell cell) {
+        return cell == null || cell.getCellType() == CellType.BLANK ||
+                (cell.getCellType() == CellType.STRING && StrUtil.isBlank(cell.getStringCellValue()));
+    }
+
+    /**
+     * Re-evaluates formulas after cells were modified.
+     * <p>
+     * INCREMENTAL only evaluates the formulas that (transitively) depend on the changed cells and falls back
+     * to a full evaluation when the dependencies cannot be determined statically. VERIFY runs the incremental
+     * pass, then a full pass, and logs every formula whose value differs between the two.
+     *
+     * @param workbook     The workbook that was modified.
+     * @param changedCells The cells whose values were changed.
+     * @param mode         The recalculation mode.
+     */
+    public void recalculateFormulas(Workbook workbook, Collection<Cell> changedCells, RecalculationMode mode) {
+        FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+        if (mode == RecalculationMode.FULL || !recalculateIncrementally(workbook, evaluator, changedCells)) {
+            evaluator.evaluateAll();
+            return;
+        }
+        if (mode == RecalculationMode.VERIFY) {
+            Map<String, String> incrementalValues = snapshotFormulaValues(workbook);
+            workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            Map<String, String> fullValues = snapshotFormulaValues(workbook);
+            int mismatches = 0;
+            for (Map.Entry<String, String> entry : fullValues.entrySet()) {
+                String incrementalValue = incrementalValues.get(entry.getKey());
+                if (!Objects.equals(entry.getValue(), incrementalValue)) {
+                    mismatches++;
+                    logger.warn("增量重算结果不一致: {} 增量={} 全量={}", entry.getKey(), incrementalValue, entry.getValue());
+                }
             }
+            logger.info("公式重算核对完成: 共 {} 个公式，不一致 {} 个", fullValues.size(), mismatches);
         }
+    }
 
-        // --- If any changes were made, re-evaluate all formulas once at the end ---
-        if (hasUpdates) {
-            FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
-            evaluator.evaluateAll();
+    private boolean recalculateIncrementally(Workbook workbook, FormulaEvaluator evaluator, Collection<Cell> changedCells) {
+        FormulaDependencyGraph graph = FormulaDependencyGraph.build(workbook);
+        if (!graph.isResolvable()) {
+            logger.info("工作簿包含无法静态分析引用的公式，回退为全量重算");
+            return false;
+        }
+        for (Cell cell : changedCells) {
+            evaluator.notifyUpdateCell(cell);
+        }
+        List<Cell> dependents = graph.findDependents(changedCells);
+        for (Cell formulaCell : dependents) {
+            evaluator.evaluateFormulaCell(formulaCell);
         }
+        logger.debug("增量重算: 修改 {} 个单元格，重算 {}/{} 个公式", changedCells.size(), dependents.size(), graph.getFormulaCount());
+        return true;
+    }
 
-        return hasUpdates;
+    private Map<String, String> snapshotFormulaValues(Workbook workbook) {
+        Map<String, String> values = new HashMap<>();
+        for (Sheet sheet : workbook) {
+            for (Row row : sheet) {
+                for (Cell cell : row) {
+                    if (cell.getCellType() != CellType.FORMULA) {
+                        continue;
+                    }
+                    String address = sheet.getSheetName() + "!" + cell.getAddress().formatAsString();
+                    switch (cell.getCachedFormulaResultType()) {
+                        case NUMERIC:
+                            values.put(address, String.valueOf(cell.getNumericCellValue()));
+                            break;
+                        case STRING:
+                            values.put(address, cell.getStringCellValue());
+                            break;
+                        case BOOLEAN:
+                            values.put(address, String.valueOf(cell.getBooleanCellValue()));
+                            break;
+                        case ERROR:
+                            values.put(address, "#ERR" + cell.getErrorCellValue());
+                            break;
+                        default:
+                            values.put(address, "");
+                            break;
+                    }
+                }
+            }
+        }
+        return values;
     }
 
     /**
      * [OPTIMIZED-INTERNAL] Private helper to update a single cell in memory.
+     *
+     * @return The modified cell, or null if nothing was changed.
      */
-    private boolean updateCell(Sheet sheet, UpdateAttendanceRequest request, int nameColumnIndex, int dayNumbersRowIndex, int employeeDataStartRow, Map<String, Integer> nameRowCache, Map<Integer, Integer> dayColCache, boolean ifEmpty) throws IOException {
-        // Find row index for the employee name (with cache)
-        int targetRowIndex = nameRowCache.computeIfAbsent(request.getName(),
-                name -> findRowIndexByCellValue(sheet, nameColumnIndex, name, employeeDataStartRow));
-
-        // Find column index for the day (with cache)
-        int targetColumnIndex = dayColCache.computeIfAbsent(request.getDay(),
-                day -> findColumnIndexByCellValue(sheet, dayNumbersRowIndex, day));
+    private Cell updateCell(AttendanceSheetIndex index, UpdateAttendanceRequest request, boolean ifEmpty) throws IOException {
+        Sheet sheet = index.getSheet();
+        int targetRowIndex = index.findRow(request.getName());
+        int targetColumnIndex = index.findColumn(request.getDay());
 
         if (targetRowIndex == -1) {
             System.out.println("警告: 在考勤表中未找到员工 '" + request.getName() + "'，跳过更新。");
-            return false;
+            return null;
         }
         if (targetColumnIndex == -1) {
             // This should ideally not happen if the day is validated before, but as a safeguard:
@@ -134,20 +294,19 @@ public class AttendanceService {
 
         if (ifEmpty) {
             // Logic for "update only if empty"
-            if (targetCell == null || targetCell.getCellType() == CellType.BLANK ||
-                    (targetCell.getCellType() == CellType.STRING && StrUtil.isBlank(targetCell.getStringCellValue()))) {
+            if (isBlankCell(targetCell)) {
                 if (targetCell == null) {
                     targetCell = targetRow.createCell(targetColumnIndex);
                 }
                 targetCell.setCellValue(request.getShift());
-                return true; // Cell was updated
+                return targetCell; // Cell was updated
             }
-            return false; // Cell was not empty, so no update
+            return null; // Cell was not empty, so no update
         } else {
             // Logic for unconditional update
             if (targetCell == null) targetCell = targetRow.createCell(targetColumnIndex);
             targetCell.setCellValue(request.getShift());
-            return true; // Cell was updated
+            return targetCell; // Cell was updated
         }
     }
 
@@ -157,28 +316,21 @@ public class AttendanceService {
     // ============================================================================================
 
     public void updateAttendance(UpdateAttendanceRequest request, String filePath) throws IOException {
-        Workbook workbook;
-        try (FileInputStream fis = new FileInputStream(filePath)) {
-            workbook = WorkbookFactory.create(fis);
+        // 从临时副本打开，写回原文件时不会与读取冲突
+        LoadedWorkbook loadedWorkbook;
+        try {
+            loadedWorkbook = LoadedWorkbook.open(new File(filePath));
         } catch (Exception e) {
             throw new IOException("读取Excel文件失败: " + e.getMessage(), e);
         }
+        Workbook workbook = loadedWorkbook.getWorkbook();
 
         try {
-            Sheet sheet = workbook.getSheetAt(0);
-            // This logic is now inside batchUpdateAttendance and updateCell helpers
-            // For simplicity, we'll just call a non-batch-optimized version here
-            // In a real scenario, you might refactor this to reuse the new helpers
-            int employeeHeaderRowIndex = findRowContaining(sheet, "姓名", 0, 5);
-            int dateHeaderRowIndex = findRowContaining(sheet, "日     期", 0, 5);
-            if (employeeHeaderRowIndex == -1) throw new IOException("文件中找不到员工信息表头行(含'姓名')");
-            if (dateHeaderRowIndex == -1) throw new IOException("文件中找不到日期表头行(含'日     期')");
-            int nameColumnIndex = findColumnIndex(sheet, "姓名", employeeHeaderRowIndex);
-            int dayNumbersRowIndex = findRowContainingNumber(sheet, 1, dateHeaderRowIndex + 1, dateHeaderRowIndex + 3);
-            if (dayNumbersRowIndex == -1) throw new IOException("在'日     期'行下方找不到包含数字'1'的日期行");
-            if (nameColumnIndex == -1) throw new IOException("文件中找不到'姓名'列");
-            int targetRowIndex = findRowIndexByCellValue(sheet, nameColumnIndex, request.getName(), employeeHeaderRowIndex + 2);
-            int targetColumnIndex = findColumnIndexByCellValue(sheet, dayNumbersRowIndex, request.getDay());
+            AttendanceSheetIndex index = buildIndex(workbook);
+            index.requireUpdateLayout();
+            Sheet sheet = index.getSheet();
+            int targetRowIndex = index.findRow(request.getName());
+            int targetColumnIndex = index.findColumn(request.getDay());
             if (targetRowIndex == -1) throw new IOException("未找到员工: " + request.getName());
             if (targetColumnIndex == -1) throw new IOException("未找到日期: " + request.getDay());
             Row targetRow = sheet.getRow(targetRowIndex);
@@ -196,34 +348,29 @@ if (targetRow == null) targetRow = sheet.createRow(targetRowIndex);
         } catch (Exception e) {
             throw new IOException("修改或写回Excel文件时失败: " + e.getMessage(), e);
         } finally {
-            workbook.close();
+            loadedWorkbook.close();
         }
     }
 
     public boolean updateCellIfEmpty(UpdateAttendanceRequest request, String filePath) throws IOException {
         // This method also performs full read/write for a single operation.
         // It's inefficient and should be replaced by the batch method in high-performance contexts.
-        Workbook workbook;
-        try (FileInputStream fis = new FileInputStream(filePath)) {
-            workbook = WorkbookFactory.create(fis);
+        // 从临时副本打开，写回原文件时不会与读取冲突
+        LoadedWorkbook loadedWorkbook;
+        try {
+            loadedWorkbook = LoadedWorkbook.open(new File(filePath));
         } catch (Exception e) {
             throw new IOException("读取Excel文件失败: " + e.getMessage(), e);
         }
+        Workbook workbook = loadedWorkbook.getWorkbook();
 
         boolean updated = false;
         try {
-            Sheet sheet = workbook.getSheetAt(0);
-            // Replicating logic similar to the non-optimized path
-            int employeeHeaderRowIndex = findRowContaining(sheet, "姓名", 0, 5);
-            int dateHeaderRowIndex = findRowContaining(sheet, "日     期", 0, 5);
-            if (employeeHeaderRowIndex == -1) throw new IOException("文件中找不到员工信息表头行(含'姓名')");
-            if (dateHeaderRowIndex == -1) throw new IOException("文件中找不到日期表头行(含'日     期')");
-            int nameColumnIndex = findColumnIndex(sheet, "姓名", employeeHeaderRowIndex);
-            int dayNumbersRowIndex = findRowContainingNumber(sheet, 1, dateHeaderRowIndex + 1, dateHeaderRowIndex + 3);
-            if (dayNumbersRowIndex == -1) throw new IOException("在'日     期'行下方找不到包含数字'1'的日期行");
-            if (nameColumnIndex == -1) throw new IOException("文件中找不到'姓名'列");
-            int targetRowIndex = findRowIndexByCellValue(sheet, nameColumnIndex, request.getName(), employeeHeaderRowIndex + 2);
-            int targetColumnIndex = findColumnIndexByCellValue(sheet, dayNumbersRowIndex, request.getDay());
+            AttendanceSheetIndex index = buildIndex(workbook);
+            index.requireUpdateLayout();
+            Sheet sheet = index.getSheet();
+            int targetRowIndex = index.findRow(request.getName());
+            int targetColumnIndex = index.findColumn(request.getDay());
 
             if (targetRowIndex == -1) {
                 System.out.println("未找到员工: " + request.getName() + "，跳过更新。");
@@ -255,82 +402,12 @@ if (targetRow == null) targetRow = sheet.createRow(targetRowIndex);
         } catch (Exception e) {
             throw new IOException("修改或写回Excel文件时失败: " + e.getMessage(), e);
         } finally {
-            workbook.close();
+            loadedWorkbook.close();
         }
         return updated;
     }
 
 
-    // ============================================================================================
-    // PRIVATE HELPERS (unchanged)
-    // ============================================================================================
-
-    private int findRowContaining(Sheet sheet, String searchText, int startRow, int endRow) {
-        for (int i = startRow; i <= endRow && i <= sheet.getLastRowNum(); i++) {
-            Row row = sheet.getRow(i);
-            if (row != null) {
-                for (Cell cell : row) {
-                    if (cell != null && cell.getCellType() == CellType.STRING && Objects.equals(searchText, cell.getStringCellValue().trim())) {
-                        return i;
-                    }
-                }
-            }
-        }
-        return -1;
-    }
-
-    private int findColumnIndex(Sheet sheet, String columnName, int headerRowIndex) {
-        Row headerRow = sheet.getRow(headerRowIndex);
-        if (headerRow != null) {
-            for (Cell cell : headerRow) {
-                if (cell != null && cell.getCellType() == CellType.STRING && Objects.equals(columnName, cell.getStringCellValue().trim())) {
-                    return cell.getColumnIndex();
-                }
-            }
-        }
-        return -1;
-    }
-
-    private int findRowIndexByCellValue(Sheet sheet, int columnIndex, String value, int startRow) {
-        for (int i = startRow; i <= sheet.getLastRowNum(); i++) {
-            Row row = sheet.getRow(i);
-            if (row != null) {
-                Cell cell = row.getCell(columnIndex);
-                if (cell != null && cell.getCellType() == CellType.STRING && Objects.equals(value, cell.getStringCellValue().trim())) {
-                    return i;
-                }
-            }
-        }
-        return -1;
-    }
-
-    private int findColumnIndexByCellValue(Sheet sheet, int rowIndex, int value) {
-        Row row = sheet.getRow(rowIndex);
-        if (row != null) {
-            for (int i = 0; i < row.getLastCellNum(); i++) {
-                Cell cell = row.getCell(i);
-                if (cell != null && cell.getCellType() == CellType.NUMERIC && value == (int) cell.getNumericCellValue()) {
-                    return i;
-                }
-            }
-        }
-        return -1;
-    }
-
-    private int findRowContainingNumber(Sheet sheet, int number, int startRow, int endRow) {
-        for (int i = startRow; i <= endRow && i <= sheet.getLastRowNum(); i++) {
-            Row row = sheet.getRow(i);
-            if (row != null) {
-                for (Cell cell : row) {
-                    if (cell != null && cell.getCellType() == CellType.NUMERIC && number == (int) cell.getNumericCellValue()) {
-                        return i; // 返回包含该数字的行索引
-                    }
-                }
-            }
-        }
-        return -1; // 未找到
-    }
-
     /**
      * [NEW] Extracts all employee names from the attendance sheet.
      * @param workbook The attendance workbook.
@@ -338,35 +415,13 @@ if (targetRow == null) targetRow = sheet.createRow(targetRowIndex);
      * @throws IOException If the required headers are not found.
      */
     public List<String> extractEmployeeNames(Workbook workbook) throws IOException {
-        List<String> names = new ArrayList<>();
-        Sheet sheet = workbook.getSheetAt(0);
-
-        int employeeHeaderRowIndex = findRowContaining(sheet, "姓名", 0, 5);
-        if (employeeHeaderRowIndex == -1) {
-            throw new IOException("考勤表中找不到员工信息表头行(含'姓名')");
-        }
-
-        int nameColumnIndex = findColumnIndex(sheet, "姓名", employeeHeaderRowIndex);
-        if (nameColumnIndex == -1) {
-            throw new IOException("考勤表中找不到'姓名'列");
-        }
+        return extractEmployeeNames(buildIndex(workbook));
+    }
 
-        int startRow = employeeHeaderRowIndex + 1; // Start from the row right below the header
-        for (int i = startRow; i <= sheet.getLastRowNum(); i++) {
-            Row row = sheet.getRow(i);
-            if (row != null) {
-                Cell cell = row.getCell(nameColumnIndex);
-                // Check if the cell contains a non-blank string value
-                if (cell != null && cell.getCellType() == CellType.STRING && !StrUtil.isBlank(cell.getStringCellValue())) {
-                    String name = cell.getStringCellValue().trim();
-                    // Heuristic to stop if we encounter something that's clearly not a name row, e.g., "备注"
-                    if (name.contains("备注") || name.contains("说明")) {
-                        break;
-                    }
-                    names.add(name);
-                }
-            }
-        }
-        return names;
+    /**
+     * Extracts all employee names from a pre-built sheet index.
+     */
+    public List<String> extractEmployeeNames(AttendanceSheetIndex index) throws IOException {
+        return new ArrayList<>(index.getEmployeeNames());
     }
 }
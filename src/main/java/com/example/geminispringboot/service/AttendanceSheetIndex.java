@@ -0,0 +1,238 @@
+package com.example.geminispringboot.service;
+
+import cn.hutool.core.util.StrUtil;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 考勤表 sheet 页的版式索引。
+ * <p>
+ * 一次遍历即记录表头行、姓名列、日期行、姓名→行号、日期→列号以及本月最后一天，
+ * 同一次请求中的姓名提取、最后一天查询和批量更新共享此索引，不再重复扫描工作表。
+ * 表头缺失时不会在构建阶段报错，而是在访问对应信息时抛出与原逻辑一致的 {@link IOException}。
+ */
+public final class AttendanceSheetIndex {
+
+    private static final String EMPLOYEE_HEADER = "姓名";
+    private static final String DATE_HEADER = "日     期";
+    private static final int HEADER_SEARCH_END_ROW = 5;
+
+    private final Sheet sheet;
+    private final int employeeHeaderRowIndex;
+    private final int dateHeaderRowIndex;
+    private final int nameColumnIndex;
+    private final int dayNumbersRowIndex;
+    private final int lastDayOfMonth;
+    private final List<String> employeeNames;
+    private final Map<String, Integer> nameRowIndex;
+    private final Map<Integer, Integer> dayColumnIndex;
+
+    private AttendanceSheetIndex(Sheet sheet) {
+        this.sheet = sheet;
+        this.employeeHeaderRowIndex = findRowContaining(sheet, EMPLOYEE_HEADER, 0, HEADER_SEARCH_END_ROW);
+        this.dateHeaderRowIndex = findRowContaining(sheet, DATE_HEADER, 0, HEADER_SEARCH_END_ROW);
+        this.nameColumnIndex = employeeHeaderRowIndex == -1 ? -1 : findColumnIndex(sheet, EMPLOYEE_HEADER, employeeHeaderRowIndex);
+        this.dayNumbersRowIndex = dateHeaderRowIndex == -1 ? -1
+                : findRowContainingNumber(sheet, 1, dateHeaderRowIndex + 1, dateHeaderRowIndex + 3);
+
+        this.employeeNames = new ArrayList<>();
+        this.nameRowIndex = new HashMap<>();
+        if (nameColumnIndex != -1) {
+            indexEmployeeRows();
+        }
+
+        this.dayColumnIndex = new HashMap<>();
+        this.lastDayOfMonth = dayNumbersRowIndex == -1 ? -1 : indexDayColumns();
+    }
+
+    /**
+     * 对给定的 sheet 页做一次完整扫描并构建索引。
+     */
+    public static AttendanceSheetIndex build(Sheet sheet) {
+        return new AttendanceSheetIndex(sheet);
+    }
+
+    public Sheet getSheet() {
+        return sheet;
+    }
+
+    public int getNameColumnIndex() throws IOException {
+        requireEmployeeHeader();
+        return nameColumnIndex;
+    }
+
+    public int getDayNumbersRowIndex() throws IOException {
+        requireDateHeader();
+        return dayNumbersRowIndex;
+    }
+
+    /**
+     * 员工数据起始行(表头下方第二行)，与原逐行查找的起点一致。
+     */
+    public int getEmployeeDataStartRow() throws IOException {
+        requireEmployeeHeader();
+        return employeeHeaderRowIndex + 2;
+    }
+
+    /**
+     * @return 考勤表中的员工姓名列表，按出现顺序排列，遇到"备注"/"说明"行停止
+     */
+    public List<String> getEmployeeNames() throws IOException {
+        if (employeeHeaderRowIndex == -1) throw new IOException("考勤表中找不到员工信息表头行(含'姓名')");
+        if (nameColumnIndex == -1) throw new IOException("考勤表中找不到'姓名'列");
+        return Collections.unmodifiableList(employeeNames);
+    }
+
+    public int getLastDayOfMonth() throws IOException {
+        requireDateHeader();
+        if (lastDayOfMonth == -1) throw new IOException("无法确定月份的最后一天");
+        return lastDayOfMonth;
+    }
+
+    /**
+     * @return 员工所在行号，未找到时返回 -1
+     */
+    public int findRow(String name) throws IOException {
+        requireEmployeeHeader();
+        Integer rowIndex = nameRowIndex.get(name);
+        return rowIndex != null ? rowIndex : -1;
+    }
+
+    /**
+     * @return 日期所在列号，未找到时返回 -1
+     */
+    public int findColumn(int day) throws IOException {
+        requireDateHeader();
+        Integer columnIndex = dayColumnIndex.get(day);
+        return columnIndex != null ? columnIndex : -1;
+    }
+
+    /**
+     * @return 该 sheet 页是否为考勤表版式：姓名列、日期行以及本月最后一天都能找到
+     */
+    public boolean hasUpdateLayout() {
+        return employeeHeaderRowIndex != -1 && dateHeaderRowIndex != -1 && nameColumnIndex != -1
+                && dayNumbersRowIndex != -1 && lastDayOfMonth != -1;
+    }
+
+    /**
+     * 校验批量更新所需的全部表头信息，检查顺序与原逐项查找时一致。
+     */
+    public void requireUpdateLayout() throws IOException {
+        if (employeeHeaderRowIndex == -1) throw new IOException("文件中找不到员工信息表头行(含'姓名')");
+        if (dateHeaderRowIndex == -1) throw new IOException("文件中找不到日期表头行(含'日     期')");
+        if (nameColumnIndex == -1) throw new IOException("文件中找不到'姓名'列");
+        if (dayNumbersRowIndex == -1) throw new IOException("在'日     期'行下方找不到包含数字'1'的日期行");
+    }
+
+    private void requireEmployeeHeader() throws IOException {
+        if (employeeHeaderRowIndex == -1) throw new IOException("文件中找不到员工信息表头行(含'姓名')");
+        if (nameColumnIndex == -1) throw new IOException("文件中找不到'姓名'列");
+    }
+
+    private void requireDateHeader() throws IOException {
+        if (dateHeaderRowIndex == -1) throw new IOException("文件中找不到日期表头行(含'日     期')");
+        if (dayNumbersRowIndex == -1) throw new IOException("在'日     期'行下方找不到包含数字'1'的日期行");
+    }
+
+    /**
+     * 单次遍历姓名列：表头下一行开始收集姓名列表(遇到备注停止)，
+     * 表头下第二行开始记录每个姓名第一次出现的行号。
+     */
+    private void indexEmployeeRows() {
+        int employeeDataStartRow = employeeHeaderRowIndex + 2;
+        boolean collectingNames = true;
+        for (int i = employeeHeaderRowIndex + 1; i <= sheet.getLastRowNum(); i++) {
+            Row row = sheet.getRow(i);
+            if (row == null) {
+                continue;
+            }
+            Cell cell = row.getCell(nameColumnIndex);
+            if (cell == null || cell.getCellType() != CellType.STRING) {
+                continue;
+            }
+            String value = cell.getStringCellValue().trim();
+            if (i >= employeeDataStartRow) {
+                nameRowIndex.putIfAbsent(value, i);
+            }
+            if (collectingNames && !StrUtil.isBlank(value)) {
+                // Heuristic to stop if we encounter something that's clearly not a name row, e.g., "备注"
+                if (value.contains("备注") || value.contains("说明")) {
+                    collectingNames = false;
+                } else {
+                    employeeNames.add(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * 单次遍历日期行，记录每个日期第一次出现的列号，并返回最右侧的日期作为本月最后一天。
+     */
+    private int indexDayColumns() {
+        Row dayNumbersRow = sheet.getRow(dayNumbersRowIndex);
+        if (dayNumbersRow == null) {
+            return -1;
+        }
+        int lastDay = -1;
+        for (int i = 0; i < dayNumbersRow.getLastCellNum(); i++) {
+            Cell cell = dayNumbersRow.getCell(i);
+            if (cell != null && cell.getCellType() == CellType.NUMERIC) {
+                int day = (int) cell.getNumericCellValue();
+                dayColumnIndex.putIfAbsent(day, i);
+                lastDay = day;
+            }
+        }
+        return lastDay;
+    }
+
+    private static int findRowContaining(Sheet sheet, String searchText, int startRow, int endRow) {
+        for (int i = startRow; i <= endRow && i <= sheet.getLastRowNum(); i++) {
+            Row row = sheet.getRow(i);
+            if (row != null) {
+                for (Cell cell : row) {
+                    if (cell != null && cell.getCellType() == CellType.STRING && Objects.equals(searchText, cell.getStringCellValue().trim())) {
+                        return i;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int findColumnIndex(Sheet sheet, String columnName, int headerRowIndex) {
+        Row headerRow = sheet.getRow(headerRowIndex);
+        if (headerRow != null) {
+            for (Cell cell : headerRow) {
+                if (cell != null && cell.getCellType() == CellType.STRING && Objects.equals(columnName, cell.getStringCellValue().trim())) {
+                    return cell.getColumnIndex();
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int findRowContainingNumber(Sheet sheet, int number, int startRow, int endRow) {
+        for (int i = startRow; i <= endRow && i <= sheet.getLastRowNum(); i++) {
+            Row row = sheet.getRow(i);
+            if (row != null) {
+                for (Cell cell : row) {
+                    if (cell != null && cell.getCellType() == CellType.NUMERIC && number == (int) cell.getNumericCellValue()) {
+                        return i;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+}
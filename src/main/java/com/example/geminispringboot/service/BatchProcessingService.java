@@ -0,0 +1,297 @@
+package com.example.geminispringboot.service;
+
+import cn.hutool.core.util.StrUtil;
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.ProcessingResult;
+import com.example.geminispringboot.util.FileMultipartFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 不经过 HTTP 的目录批处理。
+ * <p>
+ * 输入目录下每个直接包含考勤表(文件名含 {@code app.batch.attendance-file-keyword})和值班表
+ * (文件名可按 {@code app.roster.zip-day-pattern} 识别日期)的目录是一个任务，通常对应一个部门的一个月。
+ * 各任务在 {@code app.batch.workers} 个线程中并行处理，结果写到输出目录中的相同相对路径。
+ * 只有显式开启 {@code app.batch.in-place} 时才直接替换原考勤表：原考勤表首次被替换前另存为
+ * 同目录下的 {@code *.orig}，以后每次都从该原件重新处理，结果不会在上次的结果上叠加。
+ */
+@Service
+public class BatchProcessingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchProcessingService.class);
+
+    @Autowired
+    private OrchestrationService orchestrationService;
+
+    @Autowired
+    private AppProperties appProperties;
+
+    /**
+     * 一个任务的处理结果及耗时。
+     */
+    public static class JobResult {
+        private final String job;
+        private final int rosterCount;
+        private final long elapsedMillis;
+        private final Path output;
+        private final String error;
+
+        JobResult(String job, int rosterCount, long elapsedMillis, Path output, String error) {
+            this.job = job;
+            this.rosterCount = rosterCount;
+            this.elapsedMillis = elapsedMillis;
+            this.output = output;
+            this.error = error;
+        }
+
+        public String getJob() {
+            return job;
+        }
+
+        public int getRosterCount() {
+            return rosterCount;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public Path getOutput() {
+            return output;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public boolean isSucceeded() {
+            return error == null;
+        }
+    }
+
+    // 目录扫描得到的一个任务
+    static class BatchJob {
+        final Path directory;
+        final String name;
+        final List<Path> attendanceFiles = new ArrayList<>();
+        final List<Path> rosterFiles = new ArrayList<>();
+        final List<Integer> days = new ArrayList<>();
+
+        BatchJob(Path directory, String name) {
+            this.directory = directory;
+            this.name = name;
+        }
+    }
+
+    /**
+     * 处理 {@code app.batch.input-dir} 下的全部任务，并把耗时汇总输出到 {@code out}。
+     *
+     * @return 按任务目录排序的处理结果
+     */
+    public List<JobResult> run(PrintStream out) throws IOException {
+        AppProperties.Batch batch = appProperties.getBatch();
+        if (StrUtil.isBlank(batch.getInputDir())) {
+            throw new IllegalArgumentException("未配置批处理输入目录 app.batch.input-dir");
+        }
+        Path inputDir = Paths.get(batch.getInputDir()).toAbsolutePath().normalize();
+        if (!Files.isDirectory(inputDir)) {
+            throw new IllegalArgumentException("批处理输入目录不存在: " + inputDir);
+        }
+        Path outputDir = StrUtil.isBlank(batch.getOutputDir()) ? null : Paths.get(batch.getOutputDir()).toAbsolutePath().normalize();
+        if (outputDir == null && !batch.isInPlace()) {
+            throw new IllegalArgumentException("未配置批处理输出目录 app.batch.output-dir；要直接替换原考勤表请设置 app.batch.in-place=true");
+        }
+
+        long start = System.currentTimeMillis();
+        List<BatchJob> jobs = findJobs(inputDir);
+        logger.info("批处理开始: 输入目录 {}，共 {} 个任务，{} 个工作线程", inputDir, jobs.size(), batch.getWorkers());
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, batch.getWorkers()), new CustomizableThreadFactory("batch-job-"));
+        List<JobResult> results = new ArrayList<>(jobs.size());
+        try {
+            List<Future<JobResult>> futures = new ArrayList<>(jobs.size());
+            for (BatchJob job : jobs) {
+                futures.add(executor.submit(() -> runJob(job, inputDir, outputDir, batch.isAllSheets())));
+            }
+            for (Future<JobResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("批处理被中断", e);
+                } catch (ExecutionException e) {
+                    // runJob 自行捕获处理异常，这里只会是 Error
+                    throw new IllegalStateException("批处理任务异常终止", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        printSummary(out, results, System.currentTimeMillis() - start);
+        return results;
+    }
+
+    /**
+     * 扫描输入目录，每个直接包含考勤表的目录是一个任务。
+     */
+    List<BatchJob> findJobs(Path inputDir) throws IOException {
+        AppProperties.Batch batch = appProperties.getBatch();
+        Pattern dayPattern = Pattern.compile(appProperties.getRoster().getZipDayPattern());
+        List<BatchJob> jobs = new ArrayList<>();
+        List<Path> directories;
+        try (Stream<Path> paths = Files.walk(inputDir)) {
+            directories = paths.filter(Files::isDirectory).sorted().collect(Collectors.toList());
+        }
+        for (Path directory : directories) {
+            String name = inputDir.equals(directory) ? "." : inputDir.relativize(directory).toString().replace('\\', '/');
+            BatchJob job = new BatchJob(directory, name);
+            List<Path> files;
+            try (Stream<Path> paths = Files.list(directory)) {
+                files = paths.filter(Files::isRegularFile).filter(BatchProcessingService::isExcelFile).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (fileName.contains(batch.getAttendanceFileKeyword())) {
+                    job.attendanceFiles.add(file);
+                    continue;
+                }
+                Matcher dayMatcher = dayPattern.matcher(fileName);
+                if (dayMatcher.find()) {
+                    job.rosterFiles.add(file);
+                    job.days.add(Integer.parseInt(dayMatcher.groupCount() > 0 ? dayMatcher.group(1) : dayMatcher.group()));
+                } else {
+                    logger.info("跳过无法识别日期的文件: {}", file);
+                }
+            }
+            if (!job.attendanceFiles.isEmpty()) {
+                jobs.add(job);
+            }
+        }
+        return jobs;
+    }
+
+    private JobResult runJob(BatchJob job, Path inputDir, Path outputDir, boolean allSheets) {
+        long start = System.currentTimeMillis();
+        try {
+            if (job.attendanceFiles.size() > 1) {
+                throw new IllegalArgumentException("目录中有多个考勤表: " + job.attendanceFiles.stream()
+                        .map(file -> file.getFileName().toString()).collect(Collectors.joining(", ")));
+            }
+            if (job.rosterFiles.isEmpty()) {
+                throw new IllegalArgumentException("目录中没有值班表");
+            }
+            Path attendanceFile = job.attendanceFiles.get(0);
+            Path source = outputDir == null ? backupOriginal(attendanceFile) : attendanceFile;
+            List<MultipartFile> rosters = new ArrayList<>(job.rosterFiles.size());
+            for (Path rosterFile : job.rosterFiles) {
+                rosters.add(asMultipartFile("dutyRosterFiles", rosterFile));
+            }
+
+            ProcessingResult result = orchestrationService.processFiles(rosters,
+                    new FileMultipartFile("attendanceFile", attendanceFile.getFileName().toString(), null, source.toFile()),
+                    job.days, false, allSheets, ProgressListener.NONE);
+
+            Path target = outputDir == null ? attendanceFile : outputDir.resolve(inputDir.relativize(attendanceFile));
+            writeResult(result, target);
+            long elapsed = System.currentTimeMillis() - start;
+            logger.info("批处理任务完成: {} ({} 个值班表，{} ms) -> {}", job.name, job.rosterFiles.size(), elapsed, target);
+            return new JobResult(job.name, job.rosterFiles.size(), elapsed, target, null);
+        } catch (Exception e) {
+            long elapsed = System.currentTimeMillis() - start;
+            logger.error("批处理任务失败: {}", job.name, e);
+            return new JobResult(job.name, job.rosterFiles.size(), elapsed, null, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    private static MultipartFile asMultipartFile(String name, Path file) {
+        return new FileMultipartFile(name, file.getFileName().toString(), null, file.toFile());
+    }
+
+    /**
+     * 原地替换时保留原考勤表：首次处理前复制为 {@code *.orig}，已存在时不覆盖。
+     * .orig 不是 Excel 扩展名，扫描任务时不会被当作考勤表或值班表。
+     *
+     * @return 未被处理过的原考勤表
+     */
+    private static Path backupOriginal(Path attendanceFile) throws IOException {
+        Path original = attendanceFile.resolveSibling(attendanceFile.getFileName() + ".orig");
+        if (!Files.exists(original)) {
+            Path temp = Files.createTempFile(attendanceFile.getParent(), ".batch_", ".tmp");
+            try {
+                Files.copy(attendanceFile, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, original, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            logger.info("原考勤表已备份: {}", original);
+        }
+        return original;
+    }
+
+    /**
+     * 结果先写到目标目录中的临时文件，再替换目标文件，中途失败不会留下半个考勤表。
+     */
+    private static void writeResult(ProcessingResult result, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".batch_", ".tmp");
+        try {
+            if (result.isFileBacked()) {
+                Files.move(result.getFile(), temp, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.write(temp, result.getFileContent());
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+            if (result.isFileBacked()) {
+                Files.deleteIfExists(result.getFile());
+            }
+        }
+    }
+
+    private static boolean isExcelFile(Path file) {
+        String fileName = file.getFileName().toString();
+        String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+        return !fileName.startsWith("~$") && !fileName.startsWith(".")
+                && (lowerCaseName.endsWith(".xlsx") || lowerCaseName.endsWith(".xls"));
+    }
+
+    private static void printSummary(PrintStream out, List<JobResult> results, long totalMillis) {
+        List<JobResult> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparing(JobResult::getJob));
+        long failed = sorted.stream().filter(result -> !result.isSucceeded()).count();
+
+        out.println("================ 批处理耗时汇总 ================");
+        out.println(String.format("%-8s %10s %8s  %s", "状态", "耗时(ms)", "值班表", "任务"));
+        for (JobResult result : sorted) {
+            out.println(String.format("%-8s %10d %8d  %s%s", result.isSucceeded() ? "成功" : "失败", result.getElapsedMillis(),
+                    result.getRosterCount(), result.getJob(), result.isSucceeded() ? "" : " (" + result.getError() + ")"));
+        }
+        out.println(String.format("共 %d 个任务，成功 %d 个，失败 %d 个，总耗时 %d ms", sorted.size(), sorted.size() - failed, failed, totalMillis));
+    }
+}
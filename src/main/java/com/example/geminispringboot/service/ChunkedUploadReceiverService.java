@@ -0,0 +1,342 @@
+package com.example.geminispringboot.service;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.geminispringboot.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 分片上传协议的本地接收端，供 {@link ChunkedUploadService} 离线联调使用。
+ * <p>
+ * 协议：init 登记文件名、大小和分片大小并返回 uploadId；各分片按序号上传，可乱序、可重复；
+ * status 返回已确认的分片和从文件开头连续确认的字节数；complete 在全部分片到齐后按序拼接。
+ * 分片保存在 app.upload.receiver-dir 下，上传状态只保存在内存中。
+ * <p>
+ * 接收端不需要登录，文件大小、每个分片写入磁盘的字节数和同时进行的上传数都有上限；超过
+ * app.upload.receiver-session-idle-minutes 没有请求的未完成上传连同已收到的分片定期删除，
+ * 已合并的文件在完成后同样保留这么长时间。
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.upload", name = "receiver-enabled", havingValue = "true")
+public class ChunkedUploadReceiverService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadReceiverService.class);
+
+    /** 单个文件的分片数上限，避免极小的分片大小撑大内存中的分片位图 */
+    private static final int MAX_CHUNKS = 100_000;
+
+    private static final Pattern UPLOAD_ID = Pattern.compile("[0-9a-f]{32}");
+
+    @Autowired
+    private AppProperties appProperties;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private ScheduledThreadPoolExecutor sweeper;
+
+    @PostConstruct
+    void initSweeper() {
+        long interval = Math.max(1, appProperties.getUpload().getReceiverSweepIntervalSeconds());
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("chunk-receiver-sweeper-");
+        threadFactory.setDaemon(true);
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+        executor.scheduleWithFixedDelay(this::sweepQuietly, interval, interval, TimeUnit.SECONDS);
+        this.sweeper = executor;
+    }
+
+    private static final class Session {
+        final String uploadId;
+        final String fileName;
+        final long fileSize;
+        final int chunkSize;
+        final int chunkCount;
+        final Path directory;
+        final BitSet received = new BitSet();
+        volatile long lastAccessAt = System.currentTimeMillis();
+
+        Session(String uploadId, String fileName, long fileSize, int chunkSize, Path directory) {
+            this.uploadId = uploadId;
+            this.fileName = fileName;
+            this.fileSize = fileSize;
+            this.chunkSize = chunkSize;
+            this.chunkCount = (int) ((fileSize + chunkSize - 1) / chunkSize);
+            this.directory = directory;
+        }
+
+        long chunkLength(int index) {
+            return Math.min(chunkSize, fileSize - (long) index * chunkSize);
+        }
+    }
+
+    public Map<String, Object> init(String fileName, long fileSize, int chunkSize) throws IOException {
+        if (!StringUtils.hasText(fileName)) {
+            throw new IllegalArgumentException("文件名不能为空");
+        }
+        if (fileSize < 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("文件大小或分片大小无效: " + fileSize + "/" + chunkSize);
+        }
+        AppProperties.Upload upload = appProperties.getUpload();
+        if (fileSize > upload.getReceiverMaxFileBytes()) {
+            throw new IllegalArgumentException("文件过大: " + fileSize + " 字节，上限为 " + upload.getReceiverMaxFileBytes() + " 字节");
+        }
+        if ((fileSize + chunkSize - 1) / chunkSize > MAX_CHUNKS) {
+            throw new IllegalArgumentException("分片过多，分片大小至少为 " + (fileSize + MAX_CHUNKS - 1) / MAX_CHUNKS + " 字节");
+        }
+        String uploadId = UUID.randomUUID().toString().replace("-", "");
+        Session session = new Session(uploadId, fileName, fileSize, chunkSize, receiverDir().resolve(uploadId));
+        synchronized (sessions) {
+            if (sessions.size() >= upload.getReceiverMaxSessions()) {
+                throw new RejectedExecutionException("同时进行的上传数已达上限 " + upload.getReceiverMaxSessions());
+            }
+            sessions.put(uploadId, session);
+        }
+        try {
+            Files.createDirectories(session.directory);
+        } catch (IOException e) {
+            sessions.remove(uploadId);
+            throw e;
+        }
+        logger.info("分片上传开始: {} ({} 字节，{} 个分片) -> {}", fileName, fileSize, session.chunkCount, uploadId);
+        return status(session);
+    }
+
+    public boolean exists(String uploadId) {
+        return sessions.containsKey(uploadId);
+    }
+
+    /**
+     * @return 上传状态，uploadId 不存在时返回 null
+     */
+    public Map<String, Object> status(String uploadId) {
+        Session session = sessions.get(uploadId);
+        if (session == null) {
+            return null;
+        }
+        session.lastAccessAt = System.currentTimeMillis();
+        return status(session);
+    }
+
+    /**
+     * 保存一个分片。分片先写入临时文件再改名，重复上传同一分片会覆盖之前的内容。
+     */
+    public Map<String, Object> receiveChunk(String uploadId, int index, InputStream content) throws IOException {
+        Session session = requireSession(uploadId);
+        if (index < 0 || index >= session.chunkCount) {
+            throw new IllegalArgumentException("分片序号超出范围: " + index);
+        }
+        long expected = session.chunkLength(index);
+        Path temp = Files.createTempFile(session.directory, "chunk_", ".tmp");
+        try {
+            // 最多多读一个字节用于判断超长，请求体再大也不会整个写入磁盘
+            long length;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                length = copyAtMost(content, out, expected + 1);
+            }
+            if (length > expected) {
+                throw new IllegalArgumentException("分片 " + index + " 的长度超过 " + expected);
+            }
+            if (length != expected) {
+                throw new IllegalArgumentException("分片 " + index + " 的长度应为 " + expected + "，实际为 " + length);
+            }
+            Files.move(temp, chunkFile(session, index), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        synchronized (session) {
+            session.received.set(index);
+        }
+        return status(session);
+    }
+
+    private static long copyAtMost(InputStream in, OutputStream out, long limit) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        while (total < limit) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, limit - total));
+            if (read == -1) {
+                break;
+            }
+            out.write(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * 全部分片到齐后按序拼接成完整文件。
+     */
+    public Map<String, Object> complete(String uploadId) throws IOException {
+        Session session = requireSession(uploadId);
+        List<Integer> missing = new ArrayList<>();
+        synchronized (session) {
+            for (int index = session.received.nextClearBit(0); index < session.chunkCount; index = session.received.nextClearBit(index + 1)) {
+                missing.add(index);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("还有 " + missing.size() + " 个分片未上传: " + missing);
+        }
+        Path target = session.directory.resolve(safeFileName(session.fileName));
+        try (OutputStream out = Files.newOutputStream(target)) {
+            for (int index = 0; index < session.chunkCount; index++) {
+                Path chunkFile = chunkFile(session, index);
+                Files.copy(chunkFile, out);
+            }
+        }
+        for (int index = 0; index < session.chunkCount; index++) {
+            Files.deleteIfExists(chunkFile(session, index));
+        }
+        sessions.remove(uploadId);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("uploadId", uploadId);
+        result.put("fileName", session.fileName);
+        result.put("size", Files.size(target));
+        try (InputStream in = Files.newInputStream(target)) {
+            result.put("sha256", DigestUtil.sha256Hex(in));
+        }
+        logger.info("分片上传完成: {} -> {}", session.fileName, target);
+        return result;
+    }
+
+    /**
+     * 删除空闲超时的未完成上传及其分片目录，以及完成后超过同样时间的上传目录(含合并后的文件)。
+     *
+     * @return 删除的上传目录数
+     */
+    public int sweep() {
+        long idleMillis = TimeUnit.MINUTES.toMillis(appProperties.getUpload().getReceiverSessionIdleMinutes());
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Session session : sessions.values()) {
+            if (now - session.lastAccessAt >= idleMillis && sessions.remove(session.uploadId, session)) {
+                deleteDirectory(session.directory);
+                removed++;
+                logger.info("分片上传空闲超时，已删除: {} ({})", session.fileName, session.uploadId);
+            }
+        }
+        // 已完成的上传和重启前遗留的上传只剩磁盘上的目录，按目录的修改时间清理
+        Path root = receiverDir();
+        if (!Files.isDirectory(root)) {
+            return removed;
+        }
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(root)) {
+            for (Path directory : directories) {
+                String uploadId = directory.getFileName().toString();
+                if (UPLOAD_ID.matcher(uploadId).matches() && !sessions.containsKey(uploadId) && Files.isDirectory(directory)
+                        && now - Files.getLastModifiedTime(directory).toMillis() >= idleMillis) {
+                    deleteDirectory(directory);
+                    removed++;
+                    logger.info("已删除过期的上传目录: {}", directory);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("清理上传目录失败: {} ({})", root, e.getMessage());
+        }
+        return removed;
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            // 异常会取消后续的定期执行
+            logger.warn("清理空闲的分片上传失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 上传状态只在内存中，停止后无法续传，删除所有未完成上传的分片。
+     */
+    @PreDestroy
+    void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        for (Session session : sessions.values()) {
+            if (sessions.remove(session.uploadId, session)) {
+                deleteDirectory(session.directory);
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            logger.warn("删除分片目录失败: {} ({})", directory, e.getMessage());
+        }
+    }
+
+    private Map<String, Object> status(Session session) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        List<Integer> chunks = new ArrayList<>();
+        int contiguous;
+        synchronized (session) {
+            session.received.stream().forEach(chunks::add);
+            contiguous = session.received.nextClearBit(0);
+        }
+        status.put("uploadId", session.uploadId);
+        status.put("fileName", session.fileName);
+        status.put("fileSize", session.fileSize);
+        status.put("chunkSize", session.chunkSize);
+        status.put("chunkCount", session.chunkCount);
+        status.put("chunks", chunks);
+        // 从文件开头连续确认的字节数，断点续传从这里之后的未确认分片开始
+        status.put("offset", Math.min(session.fileSize, (long) contiguous * session.chunkSize));
+        return status;
+    }
+
+    private Session requireSession(String uploadId) {
+        Session session = sessions.get(uploadId);
+        if (session == null) {
+            throw new IllegalArgumentException("上传不存在: " + uploadId);
+        }
+        session.lastAccessAt = System.currentTimeMillis();
+        return session;
+    }
+
+    private static Path chunkFile(Session session, int index) {
+        return session.directory.resolve(index + ".part");
+    }
+
+    private static String safeFileName(String fileName) {
+        String name = Paths.get(fileName.replace('\\', '/')).getFileName().toString();
+        return name.startsWith(".") ? "_" + name : name;
+    }
+
+    private Path receiverDir() {
+        String configured = appProperties.getUpload().getReceiverDir();
+        return StringUtils.hasText(configured)
+                ? Paths.get(configured)
+                : Paths.get(System.getProperty("java.io.tmpdir"), "chunked-upload-receiver");
+    }
+}
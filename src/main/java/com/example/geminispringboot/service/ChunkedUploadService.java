@@ -0,0 +1,371 @@
+package com.example.geminispringboot.service;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.example.geminispringboot.config.AppProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 大文件的分片转发上传，协议与 {@link ChunkedUploadReceiverService} 一致：
+ * <pre>
+ * POST {base}/init?fileName=&amp;fileSize=&amp;chunkSize=   -&gt; {uploadId, chunkSize, chunks, offset}
+ * GET  {base}/{uploadId}/status                        -&gt; 已确认的分片 (chunks) 和连续确认的字节数 (offset)
+ * PUT  {base}/{uploadId}/chunks/{index}                -&gt; 分片内容为请求体
+ * POST {base}/{uploadId}/complete                      -&gt; 合并后的文件信息
+ * </pre>
+ * 文件按 app.upload.chunk-size-bytes 顺序切片，每个文件最多 app.upload.chunk-parallelism 个分片同时在传，
+ * 内存中最多保留同样数量的分片。每个分片独立重试：网络异常、5xx 和 429 按指数退避 (带随机抖动) 重试，
+ * 其余 4xx 直接失败。上传失败时返回 uploadId 和已确认的字节数，带上 uploadId 再次调用只上传未确认的分片。
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    static final String CHUNK_TIMER = "file.upload.chunk";
+    static final String CHUNK_RETRIES = "file.upload.chunk.retries";
+
+    // 与 FileUploadService 共用的连接池客户端
+    @Autowired
+    private CloseableHttpClient httpClient;
+
+    @Autowired
+    private AppProperties appProperties;
+
+    // 分片上传线程池，各文件共用；单个文件在传的分片数由信号量限制
+    private ThreadPoolExecutor chunkExecutor;
+
+    @PostConstruct
+    void initChunkExecutor() {
+        AppProperties.Upload config = appProperties.getUpload();
+        int threads = Math.max(1, config.getConcurrency()) * Math.max(1, config.getChunkParallelism());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())),
+                new CustomizableThreadFactory("chunk-upload-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        this.chunkExecutor = executor;
+    }
+
+    @PreDestroy
+    void shutdownChunkExecutor() {
+        chunkExecutor.shutdownNow();
+    }
+
+    /**
+     * 分片上传一个文件。
+     *
+     * @param receiverUrl 接收端地址，如 http://host/upload/chunked-receiver
+     * @param uploadId    续传时传入上次返回的 uploadId，为空时开始新的上传
+     * @return code、message、uploadId、已确认的字节数 (acknowledgedBytes)、重试次数 (retries)、耗时 (elapsedMillis)，
+     * 成功时 data 为接收端 complete 的响应
+     */
+    public Map<String, Object> uploadFile(String receiverUrl, MultipartFile file, String uploadId) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (StrUtil.isBlank(receiverUrl)) {
+            result.put("code", 400);
+            result.put("message", "上传地址不能为空");
+            return result;
+        }
+        if (file == null) {
+            result.put("code", 400);
+            result.put("message", "上传文件不能为空");
+            return result;
+        }
+
+        String baseUrl = StrUtil.removeSuffix(receiverUrl, "/");
+        String fileName = StrUtil.blankToDefault(file.getOriginalFilename(), "upload_file");
+        long start = System.currentTimeMillis();
+        AtomicInteger retries = new AtomicInteger();
+        try {
+            JSONObject status = StrUtil.isBlank(uploadId) ? null : fetchStatus(baseUrl, uploadId);
+            if (status == null) {
+                if (StrUtil.isNotBlank(uploadId)) {
+                    logger.warn("接收端没有上传 {}，重新开始上传: {}", uploadId, fileName);
+                }
+                status = init(baseUrl, fileName, file.getSize());
+            } else if (status.getLong("fileSize") != file.getSize()) {
+                result.put("code", 400);
+                result.put("message", "续传的文件大小与上传 " + uploadId + " 不一致");
+                return result;
+            }
+            uploadId = status.getStr("uploadId");
+            result.put("uploadId", uploadId);
+
+            ChunkFailure failure = uploadChunks(baseUrl, uploadId, file, status, retries);
+            if (failure != null) {
+                JSONObject latest = fetchStatus(baseUrl, uploadId);
+                result.put("code", failure.statusCode > 0 ? failure.statusCode : 500);
+                result.put("message", "分片 " + failure.index + " 上传失败: " + failure.message);
+                result.put("acknowledgedBytes", latest == null ? 0L : latest.getLong("offset"));
+            } else {
+                Response response = execute(new HttpPost(baseUrl + "/" + uploadId + "/complete"));
+                if (response.statusCode == 200) {
+                    result.put("code", 200);
+                    result.put("message", "上传成功");
+                    result.put("acknowledgedBytes", file.getSize());
+                    result.put("data", response.body);
+                } else {
+                    result.put("code", response.statusCode);
+                    result.put("message", "合并文件失败，服务器返回状态码: " + response.statusCode);
+                    result.put("errorDetail", response.body);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.put("code", 500);
+            result.put("message", "上传被中断");
+            logger.warn("分片上传文件被中断: {}", fileName);
+        } catch (Exception e) {
+            result.put("code", 500);
+            result.put("message", "上传异常: " + e.getMessage());
+            logger.error("分片上传文件失败: {}", fileName, e);
+        }
+        result.put("retries", retries.get());
+        result.put("elapsedMillis", System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private static final class ChunkFailure {
+        final int index;
+        final int statusCode;
+        final String message;
+
+        ChunkFailure(int index, int statusCode, String message) {
+            this.index = index;
+            this.statusCode = statusCode;
+            this.message = message;
+        }
+    }
+
+    private static final class Response {
+        final int statusCode;
+        final String body;
+
+        Response(int statusCode, String body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+    }
+
+    /**
+     * 顺序读取文件并提交未确认的分片；某个分片最终失败后不再提交新分片，等在传的分片结束后返回。
+     *
+     * @return 第一个失败的分片，全部成功时为 null
+     */
+    private ChunkFailure uploadChunks(String baseUrl, String uploadId, MultipartFile file, JSONObject status,
+                                      AtomicInteger retries) throws IOException, InterruptedException {
+        int chunkSize = status.getInt("chunkSize");
+        long fileSize = file.getSize();
+        int chunkCount = (int) ((fileSize + chunkSize - 1) / chunkSize);
+        Set<Integer> acknowledged = new HashSet<>(status.getJSONArray("chunks").toList(Integer.class));
+
+        Semaphore inFlight = new Semaphore(Math.max(1, appProperties.getUpload().getChunkParallelism()));
+        AtomicReference<ChunkFailure> failure = new AtomicReference<>();
+        List<Future<?>> futures = new ArrayList<>();
+        try (InputStream in = file.getInputStream()) {
+            for (int index = 0; index < chunkCount && failure.get() == null; index++) {
+                int length = (int) Math.min(chunkSize, fileSize - (long) index * chunkSize);
+                if (acknowledged.contains(index)) {
+                    skipFully(in, length);
+                    continue;
+                }
+                byte[] chunk = new byte[length];
+                readFully(in, chunk);
+                inFlight.acquire();
+                int chunkIndex = index;
+                try {
+                    futures.add(chunkExecutor.submit(() -> {
+                        try {
+                            ChunkFailure chunkFailure = sendChunkWithRetry(baseUrl, uploadId, chunkIndex, chunk, retries);
+                            if (chunkFailure != null) {
+                                failure.compareAndSet(null, chunkFailure);
+                            }
+                            return null;
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+            }
+        } finally {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failure.compareAndSet(null, new ChunkFailure(-1, 0, String.valueOf(e.getCause().getMessage())));
+                }
+            }
+        }
+        return failure.get();
+    }
+
+    /**
+     * 上传一个分片，可重试的失败按指数退避重试。
+     *
+     * @return 最终失败时返回失败信息，成功时为 null
+     */
+    private ChunkFailure sendChunkWithRetry(String baseUrl, String uploadId, int index, byte[] chunk,
+                                            AtomicInteger retries) throws InterruptedException {
+        AppProperties.Upload config = appProperties.getUpload();
+        int maxAttempts = Math.max(1, config.getChunkMaxAttempts());
+        for (int attempt = 1; ; attempt++) {
+            HttpPut put = new HttpPut(baseUrl + "/" + uploadId + "/chunks/" + index);
+            put.setEntity(new ByteArrayEntity(chunk, ContentType.APPLICATION_OCTET_STREAM));
+            long start = System.nanoTime();
+            int statusCode = 0;
+            String message;
+            try {
+                Response response = execute(put);
+                statusCode = response.statusCode;
+                message = "服务器返回状态码 " + statusCode + ": " + response.body;
+            } catch (IOException e) {
+                message = e.toString();
+            }
+            boolean succeeded = statusCode == 200;
+            recordChunk(System.nanoTime() - start, succeeded);
+            if (succeeded) {
+                return null;
+            }
+            boolean retryable = statusCode == 0 || statusCode == 429 || statusCode >= 500;
+            if (!retryable || attempt >= maxAttempts) {
+                logger.warn("分片 {}/{} 上传失败 (第 {} 次): {}", uploadId, index, attempt, message);
+                return new ChunkFailure(index, statusCode, message);
+            }
+            long delay = backoffMillis(attempt, config);
+            logger.info("分片 {}/{} 上传失败 (第 {} 次)，{} ms 后重试: {}", uploadId, index, attempt, delay, message);
+            retries.incrementAndGet();
+            Counter.builder(CHUNK_RETRIES)
+                    .description("分片上传的重试次数")
+                    .register(Metrics.globalRegistry)
+                    .increment();
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * 第 n 次失败后等待 min(最长等待, 初始等待 * 2^(n-1))，并在其后一半范围内随机抖动，避免各分片同时重试。
+     */
+    static long backoffMillis(int attempt, AppProperties.Upload config) {
+        long base = Math.max(1, config.getChunkRetryBaseDelayMillis());
+        long max = Math.max(base, config.getChunkRetryMaxDelayMillis());
+        long delay = attempt >= 31 ? max : Math.min(max, base << (attempt - 1));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private JSONObject init(String baseUrl, String fileName, long fileSize) throws IOException, URISyntaxException {
+        HttpPost post = new HttpPost(new URIBuilder(baseUrl + "/init")
+                .addParameter("fileName", fileName)
+                .addParameter("fileSize", String.valueOf(fileSize))
+                .addParameter("chunkSize", String.valueOf(appProperties.getUpload().getChunkSizeBytes()))
+                .build());
+        Response response = execute(post);
+        if (response.statusCode != 200) {
+            throw new IOException("初始化上传失败，服务器返回状态码 " + response.statusCode + ": " + response.body);
+        }
+        return JSONUtil.parseObj(response.body);
+    }
+
+    /**
+     * @return 上传状态，接收端不存在该上传时返回 null
+     */
+    private JSONObject fetchStatus(String baseUrl, String uploadId) throws IOException {
+        Response response = execute(new HttpGet(baseUrl + "/" + uploadId + "/status"));
+        if (response.statusCode == 404) {
+            return null;
+        }
+        if (response.statusCode != 200) {
+            throw new IOException("查询上传状态失败，服务器返回状态码 " + response.statusCode + ": " + response.body);
+        }
+        return JSONUtil.parseObj(response.body);
+    }
+
+    private Response execute(HttpUriRequest request) throws IOException {
+        // 关闭响应即把连接归还连接池
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            String body = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            return new Response(response.getStatusLine().getStatusCode(), body);
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = in.read(buffer, offset, buffer.length - offset);
+            if (read < 0) {
+                throw new EOFException("文件内容比声明的大小短");
+            }
+            offset += read;
+        }
+    }
+
+    private static void skipFully(InputStream in, long length) throws IOException {
+        byte[] buffer = new byte[8192];
+        long remaining = length;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                // skip 不保证前进，退回到读取
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new EOFException("文件内容比声明的大小短");
+                }
+                skipped = read;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static void recordChunk(long elapsedNanos, boolean succeeded) {
+        Timer.builder(CHUNK_TIMER)
+                .description("单个分片的上传耗时")
+                .tag("outcome", succeeded ? "success" : "failure")
+                .register(Metrics.globalRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -2,14 +2,21 @@ package com.example.geminispringboot.service;
 
 import cn.hutool.poi.excel.ExcelReader;
 import cn.hutool.poi.excel.ExcelUtil;
+import com.example.geminispringboot.util.FileMultipartFile;
+import com.example.geminispringboot.util.XlsxStreamingReader;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,41 +36,84 @@ public class ExcelService {
             throw new IOException("文件为空");
         }
 
-        List<List<String>> result = new ArrayList<>();
+        if (isOoxml(file)) {
+            return readExcelDataStreaming(file);
+        }
         try (InputStream inputStream = file.getInputStream()) {
-            ExcelReader reader = ExcelUtil.getReader(inputStream);
-            Sheet sheet = reader.getSheet();
+            return readExcelDataInMemory(inputStream);
+        }
+    }
 
-            int lastRowNum = sheet.getLastRowNum();
-            int consecutiveEmptyRowCount = 0;
+    /**
+     * 使用 XSSF 事件模型(SAX)流式读取 .xlsx 文件的第一个sheet页，不构建整个工作簿的DOM。
+     * 上传内容先复制到临时文件，以便 POI 按需随机读取 zip 条目，读取结束后删除；
+     * 已落盘的 {@link FileMultipartFile} 直接读取其文件，不再复制。
+     * @param file .xlsx 格式的Excel文件
+     * @return List<List<String>> 集合，与 {@link #readExcelDataInMemory(InputStream)} 的结果一致
+     * @throws IOException 如果文件读取失败
+     */
+    List<List<String>> readExcelDataStreaming(MultipartFile file) throws IOException {
+        if (file instanceof FileMultipartFile) {
+            List<List<String>> result = new ArrayList<>();
+            XlsxStreamingReader.read(((FileMultipartFile) file).getFile(), CONSECUTIVE_EMPTY_ROW_LIMIT, result::add);
+            return result;
+        }
+        File tempFile = File.createTempFile("roster_", ".xlsx");
+        try {
+            try (InputStream inputStream = file.getInputStream()) {
+                Files.copy(inputStream, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            List<List<String>> result = new ArrayList<>();
+            XlsxStreamingReader.read(tempFile, CONSECUTIVE_EMPTY_ROW_LIMIT, result::add);
+            return result;
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
 
-            for (int i = 0; i <= lastRowNum; i++) {
-                Row row = sheet.getRow(i);
-                if (isRowEmpty(row)) {
-                    consecutiveEmptyRowCount++;
-                    if (consecutiveEmptyRowCount >= CONSECUTIVE_EMPTY_ROW_LIMIT) {
-                        // 连续100个空行，停止读取
-                        break;
-                    }
-                    result.add(new ArrayList<>()); // 添加空行以保持行号对应
-                    continue;
-                }
+    /**
+     * 使用 Hutool 将整个工作簿加载到内存后读取第一个sheet页，用于 .xls 等非 OOXML 格式。
+     */
+    List<List<String>> readExcelDataInMemory(InputStream inputStream) throws IOException {
+        List<List<String>> result = new ArrayList<>();
+        ExcelReader reader = ExcelUtil.getReader(inputStream);
+        Sheet sheet = reader.getSheet();
 
-                // 如果当前行不为空，重置计数器
-                consecutiveEmptyRowCount = 0;
+        int lastRowNum = sheet.getLastRowNum();
+        int consecutiveEmptyRowCount = 0;
 
-                List<String> rowData = new ArrayList<>();
-                short lastCellNum = row.getLastCellNum();
-                for (int j = 0; j < lastCellNum; j++) {
-                    Object cellValue = reader.readCellValue(j, i);
-                    rowData.add(cellValue != null ? cellValue.toString() : "");
+        for (int i = 0; i <= lastRowNum; i++) {
+            Row row = sheet.getRow(i);
+            if (isRowEmpty(row)) {
+                consecutiveEmptyRowCount++;
+                if (consecutiveEmptyRowCount >= CONSECUTIVE_EMPTY_ROW_LIMIT) {
+                    // 连续100个空行，停止读取
+                    break;
                 }
-                result.add(rowData);
+                result.add(new ArrayList<>()); // 添加空行以保持行号对应
+                continue;
+            }
+
+            // 如果当前行不为空，重置计数器
+            consecutiveEmptyRowCount = 0;
+
+            List<String> rowData = new ArrayList<>();
+            short lastCellNum = row.getLastCellNum();
+            for (int j = 0; j < lastCellNum; j++) {
+                Object cellValue = reader.readCellValue(j, i);
+                rowData.add(cellValue != null ? cellValue.toString() : "");
             }
+            result.add(rowData);
         }
         return result;
     }
 
+    private boolean isOoxml(MultipartFile file) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(file.getInputStream())) {
+            return FileMagic.valueOf(inputStream) == FileMagic.OOXML;
+        }
+    }
+
     private boolean isRowEmpty(Row row) {
         if (row == null) {
             return true;
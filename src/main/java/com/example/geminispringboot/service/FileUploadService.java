@@ -1,43 +1,100 @@
 package com.example.geminispringboot.service;
 
-import org.apache.http.HttpResponse;
-import org.apache.http.client.config.RequestConfig;
+import cn.hutool.core.util.StrUtil;
+import com.example.geminispringboot.config.AppProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.entity.mime.content.FileBody;
+import org.apache.http.entity.mime.content.InputStreamBody;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.io.IOException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class FileUploadService {
 
+    private static final Logger logger = LoggerFactory.getLogger(FileUploadService.class);
 
-    private static File convertToTempFile(MultipartFile multipartFile) throws IOException {
-        // 创建临时文件，使用原始文件名
-        String originalFilename = multipartFile.getOriginalFilename();
-        String safeFilename = originalFilename != null ?
-                originalFilename.replaceAll("[^a-zA-Z0-9.-]", "_") : "upload_file";
+    static final String UPLOAD_TIMER = "file.upload";
+    static final String UPLOAD_SIZE = "file.upload.size";
 
-        File tempFile = File.createTempFile(
-                "upload_" + System.currentTimeMillis() + "_",
-                "_" + safeFilename
-        );
+    // 所有上传共用的连接池客户端，由 HttpClientConfig 创建和关闭
+    @Autowired
+    private CloseableHttpClient httpClient;
 
-        // 将MultipartFile内容写入临时文件
-        multipartFile.transferTo(tempFile);
+    @Autowired
+    private AppProperties appProperties;
 
-        return tempFile;
+    // 批量上传的线程池，线程数和队列长度均有上限
+    private ThreadPoolExecutor uploadExecutor;
+
+    @PostConstruct
+    void initUploadExecutor() {
+        AppProperties.Upload config = appProperties.getUpload();
+        int concurrency = Math.max(1, config.getConcurrency());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())),
+                new CustomizableThreadFactory("file-upload-"),
+                // 队列排满时由提交的线程自己上传，起到限流作用
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        this.uploadExecutor = executor;
+    }
+
+    @PreDestroy
+    void shutdownUploadExecutor() {
+        uploadExecutor.shutdownNow();
+    }
+
+    /**
+     * 以上传内容的输入流作为 multipart 文件部分，不经过临时文件。
+     * 默认不声明长度，请求体以 chunked 方式发送；app.upload.chunked=false 时声明文件大小，发送 Content-Length。
+     */
+    private InputStreamBody fileBody(InputStream content, MultipartFile file) {
+        String filename = StrUtil.blankToDefault(file.getOriginalFilename(), "upload_file");
+        if (appProperties.getUpload().isChunked()) {
+            return new InputStreamBody(content, ContentType.DEFAULT_BINARY, filename);
+        }
+        return new SizedInputStreamBody(content, filename, file.getSize());
+    }
+
+    private static class SizedInputStreamBody extends InputStreamBody {
+        private final long contentLength;
+
+        SizedInputStreamBody(InputStream content, String filename, long contentLength) {
+            super(content, ContentType.DEFAULT_BINARY, filename);
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public long getContentLength() {
+            return contentLength;
+        }
     }
 
     /**
@@ -62,36 +119,28 @@ public class FileUploadService {
             result.put("message", "上传地址不能为空");
             return result;
         }
-        
 
-        
         // 验证文件是否存在
-        File uploadFile = null;
-        try {
-            uploadFile = convertToTempFile(file);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        if (file == null) {
+            result.put("code", 400);
+            result.put("message", "上传文件不能为空");
+            return result;
         }
 
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         HttpPost httpPost = new HttpPost(uploadUrl);
-        
-        try {
-            // 配置请求超时时间
-            RequestConfig requestConfig = RequestConfig.custom()
-                    .setConnectTimeout(60 * 1000)        // 连接超时：60秒
-                    .setSocketTimeout(300 * 1000)        // 读取超时：300秒
-                    .setConnectionRequestTimeout(60 * 1000) // 请求队列超时：60秒
-                    .build();
-            httpPost.setConfig(requestConfig);
-            
+        long start = System.nanoTime();
+        boolean succeeded = false;
+
+        // 超时时间使用连接池客户端的默认配置 (app.upload.*)
+        // 上传内容直接从输入流写入请求体，请求结束时关闭
+        try (InputStream fileStream = file.getInputStream()) {
             // 构建Multipart表单上传体
             MultipartEntityBuilder builder = MultipartEntityBuilder.create();
             builder.setCharset(StandardCharsets.UTF_8)
                     .setMode(HttpMultipartMode.BROWSER_COMPATIBLE);
             
             // 添加文件
-            builder.addPart("fileData", new FileBody(uploadFile, ContentType.DEFAULT_BINARY, uploadFile.getName()));
+            builder.addPart("fileData", fileBody(fileStream, file));
             
             // 添加其他参数（如果提供了值）
             if (enterpriseCode != null && !enterpriseCode.isEmpty()) {
@@ -109,45 +158,98 @@ public class FileUploadService {
             // 封装请求体并执行请求
             org.apache.http.HttpEntity entity = builder.build();
             httpPost.setEntity(entity);
-            HttpResponse response = httpClient.execute(httpPost);
-            
-            // 获取响应状态码
-            int statusCode = response.getStatusLine().getStatusCode();
-            
-            // 处理响应结果
-            if (statusCode == 200) {
-                String responseBody = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
-                result.put("code", 200);
-                result.put("message", "上传成功");
-                result.put("data", responseBody);
-            } else {
-                String errorResponse = "";
-                try {
-                    errorResponse = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
-                } catch (Exception e) {
-                    errorResponse = "无法读取错误响应体";
+            // 关闭响应即把连接归还连接池，不关闭共用的客户端
+            try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
+
+                // 获取响应状态码
+                int statusCode = response.getStatusLine().getStatusCode();
+
+                // 处理响应结果
+                if (statusCode == 200) {
+                    String responseBody = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+                    result.put("code", 200);
+                    result.put("message", "上传成功");
+                    result.put("data", responseBody);
+                    succeeded = true;
+                } else {
+                    String errorResponse = "";
+                    try {
+                        errorResponse = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+                    } catch (Exception e) {
+                        errorResponse = "无法读取错误响应体";
+                    }
+                    result.put("code", statusCode);
+                    result.put("message", "上传失败，服务器返回状态码: " + statusCode);
+                    result.put("errorDetail", errorResponse);
                 }
-                result.put("code", statusCode);
-                result.put("message", "上传失败，服务器返回状态码: " + statusCode);
-                result.put("errorDetail", errorResponse);
             }
-            
+
         } catch (Exception e) {
             result.put("code", 500);
             result.put("message", "上传异常: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("上传文件失败: {}", file.getOriginalFilename(), e);
         } finally {
+            recordUpload(System.nanoTime() - start, file.getSize(), succeeded);
+        }
+
+        return result;
+    }
+
+    /**
+     * 批量上传：各文件在上传线程池中并行上传，结果按 {@code files} 的顺序返回。
+     * 每个结果除 {@link #uploadFile} 的返回值外，还包含文件名 (fileName) 和耗时 (elapsedMillis)。
+     */
+    public List<Map<String, Object>> uploadFiles(String uploadUrl, List<MultipartFile> files,
+                                                 String enterpriseCode,
+                                                 String signature,
+                                                 String timestamp) {
+        List<Future<Map<String, Object>>> futures = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            futures.add(uploadExecutor.submit(() -> {
+                long start = System.currentTimeMillis();
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("fileName", file.getOriginalFilename());
+                result.putAll(uploadFile(uploadUrl, file, enterpriseCode, signature, timestamp));
+                result.put("elapsedMillis", System.currentTimeMillis() - start);
+                return result;
+            }));
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(files.size());
+        for (int i = 0; i < futures.size(); i++) {
             try {
-                if (httpClient != null) {
-                    httpClient.close();
+                results.add(futures.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Future<Map<String, Object>> future : futures) {
+                    future.cancel(true);
                 }
-            } catch (Exception e) {
-                // 关闭异常不返回给调用方，仅打印日志
-                e.printStackTrace();
+                throw new IllegalStateException("批量上传被中断", e);
+            } catch (ExecutionException e) {
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("fileName", files.get(i).getOriginalFilename());
+                result.put("code", 500);
+                result.put("message", "上传异常: " + e.getCause().getMessage());
+                results.add(result);
             }
         }
-        
-        return result;
+        return results;
+    }
+
+    private static void recordUpload(long elapsedNanos, long size, boolean succeeded) {
+        String outcome = succeeded ? "success" : "failure";
+        Timer.builder(UPLOAD_TIMER)
+                .description("文件转发上传耗时")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder(UPLOAD_SIZE)
+                .description("转发上传的文件大小")
+                .baseUnit("bytes")
+                .tag("outcome", outcome)
+                .register(Metrics.globalRegistry)
+                .record(size);
     }
 
 
@@ -0,0 +1,278 @@
+package com.example.geminispringboot.service;
+
+import org.apache.poi.hssf.usermodel.HSSFEvaluationWorkbook;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.EvaluationWorkbook;
+import org.apache.poi.ss.formula.ExternSheetReferenceToken;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaParsingWorkbook;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.AbstractFunctionPtg;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.NameXPtg;
+import org.apache.poi.ss.formula.ptg.NameXPxg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Pxg;
+import org.apache.poi.ss.formula.ptg.Pxg3D;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 工作簿内公式单元格的依赖关系图。
+ * <p>
+ * 构建时解析每个公式引用的单元格区域，按被引用的 sheet 页和行号建立反向索引，
+ * 批量更新后即可找出(含传递依赖的)受影响公式，只对这些公式重新求值。
+ * 员工行上的汇总公式(如 COUNTIF(D4:AH4,"白"))只引用本行，落在按行的桶里，查找代价与员工数无关；
+ * 跨多行的区域(如按日合计)放在单独的列表中线性检查，这类公式数量很少。
+ * <p>
+ * 遇到无法静态确定引用目标的公式(命名区域、INDIRECT、OFFSET、解析失败等)时，
+ * {@link #isResolvable()} 返回 false，调用方应回退到全量重算。
+ */
+final class FormulaDependencyGraph {
+
+    /** 区域跨越的行数不超过该值时按行建桶，否则放入宽区域列表 */
+    private static final int ROW_BUCKET_SPAN_LIMIT = 64;
+
+    private static final Set<String> OPAQUE_FUNCTIONS = new HashSet<>(Arrays.asList("INDIRECT", "OFFSET"));
+    private static final Set<String> VOLATILE_FUNCTIONS = new HashSet<>(Arrays.asList("NOW", "TODAY", "RAND", "RANDBETWEEN"));
+
+    private final Workbook workbook;
+    private final Map<Integer, SheetDependents> dependentsBySheet = new HashMap<>();
+    private final List<FormulaNode> volatileNodes = new ArrayList<>();
+    private final Map<String, Integer> sheetIndexByName = new HashMap<>();
+    private int formulaCount;
+    private boolean resolvable = true;
+
+    private FormulaDependencyGraph(Workbook workbook) {
+        this.workbook = workbook;
+    }
+
+    /**
+     * 扫描工作簿中所有 sheet 页的公式单元格并构建依赖图。
+     */
+    static FormulaDependencyGraph build(Workbook workbook) {
+        FormulaDependencyGraph graph = new FormulaDependencyGraph(workbook);
+        graph.index();
+        return graph;
+    }
+
+    boolean isResolvable() {
+        return resolvable;
+    }
+
+    int getFormulaCount() {
+        return formulaCount;
+    }
+
+    /**
+     * 找出直接或间接依赖于给定单元格的全部公式单元格，按依赖传播顺序返回。
+     * 易失函数(NOW、TODAY 等)所在的公式总是包含在结果中。
+     */
+    List<Cell> findDependents(Collection<Cell> changedCells) {
+        Set<FormulaNode> affected = new LinkedHashSet<>();
+        Deque<int[]> pending = new ArrayDeque<>();
+        for (Cell cell : changedCells) {
+            pending.add(new int[]{workbook.getSheetIndex(cell.getSheet()), cell.getRowIndex(), cell.getColumnIndex()});
+        }
+        while (!pending.isEmpty()) {
+            int[] address = pending.poll();
+            SheetDependents dependents = dependentsBySheet.get(address[0]);
+            if (dependents == null) {
+                continue;
+            }
+            for (FormulaRange range : dependents.candidates(address[1])) {
+                if (range.contains(address[1], address[2]) && affected.add(range.node)) {
+                    pending.add(new int[]{range.node.sheetIndex, range.node.cell.getRowIndex(), range.node.cell.getColumnIndex()});
+                }
+            }
+        }
+        affected.addAll(volatileNodes);
+
+        List<Cell> result = new ArrayList<>(affected.size());
+        for (FormulaNode node : affected) {
+            result.add(node.cell);
+        }
+        return result;
+    }
+
+    private void index() {
+        FormulaParsingWorkbook parsingWorkbook;
+        if (workbook instanceof XSSFWorkbook) {
+            parsingWorkbook = XSSFEvaluationWorkbook.create((XSSFWorkbook) workbook);
+        } else if (workbook instanceof HSSFWorkbook) {
+            parsingWorkbook = HSSFEvaluationWorkbook.create((HSSFWorkbook) workbook);
+        } else {
+            resolvable = false;
+            return;
+        }
+        EvaluationWorkbook evaluationWorkbook = (EvaluationWorkbook) parsingWorkbook;
+
+        for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
+            Sheet sheet = workbook.getSheetAt(sheetIndex);
+            sheetIndexByName.put(sheet.getSheetName(), sheetIndex);
+        }
+        for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets() && resolvable; sheetIndex++) {
+            for (Row row : workbook.getSheetAt(sheetIndex)) {
+                for (Cell cell : row) {
+                    if (cell.getCellType() == CellType.FORMULA) {
+                        indexFormula(cell, sheetIndex, parsingWorkbook, evaluationWorkbook);
+                        if (!resolvable) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void indexFormula(Cell cell, int sheetIndex, FormulaParsingWorkbook parsingWorkbook, EvaluationWorkbook evaluationWorkbook) {
+        Ptg[] ptgs;
+        try {
+            ptgs = FormulaParser.parse(cell.getCellFormula(), parsingWorkbook, FormulaType.CELL, sheetIndex, cell.getRowIndex());
+        } catch (RuntimeException e) {
+            resolvable = false;
+            return;
+        }
+        formulaCount++;
+        FormulaNode node = new FormulaNode(cell, sheetIndex);
+        for (Ptg ptg : ptgs) {
+            if (ptg instanceof NamePtg || ptg instanceof NameXPtg || ptg instanceof NameXPxg) {
+                resolvable = false;
+                return;
+            }
+            if (ptg instanceof AbstractFunctionPtg) {
+                String functionName = ((AbstractFunctionPtg) ptg).getName();
+                if (OPAQUE_FUNCTIONS.contains(functionName)) {
+                    resolvable = false;
+                    return;
+                }
+                if (VOLATILE_FUNCTIONS.contains(functionName)) {
+                    volatileNodes.add(node);
+                }
+            } else if (ptg instanceof AreaPtgBase) {
+                AreaPtgBase area = (AreaPtgBase) ptg;
+                addRange(ptg, sheetIndex, evaluationWorkbook, node,
+                        area.getFirstRow(), area.getLastRow(), area.getFirstColumn(), area.getLastColumn());
+            } else if (ptg instanceof RefPtgBase) {
+                RefPtgBase ref = (RefPtgBase) ptg;
+                addRange(ptg, sheetIndex, evaluationWorkbook, node,
+                        ref.getRow(), ref.getRow(), ref.getColumn(), ref.getColumn());
+            }
+            if (!resolvable) {
+                return;
+            }
+        }
+    }
+
+    private void addRange(Ptg ptg, int formulaSheetIndex, EvaluationWorkbook evaluationWorkbook, FormulaNode node,
+                          int firstRow, int lastRow, int firstColumn, int lastColumn) {
+        Integer targetSheetIndex = formulaSheetIndex;
+        if (ptg instanceof Pxg) {
+            if (ptg instanceof Pxg3D && ((Pxg3D) ptg).getLastSheetName() != null) {
+                // 跨多个 sheet 页的三维引用，不做静态分析
+                resolvable = false;
+                return;
+            }
+            if (((Pxg) ptg).getExternalWorkbookNumber() > 0) {
+                return; // 外部工作簿，不会被本次更新修改
+            }
+            targetSheetIndex = sheetIndexByName.get(((Pxg) ptg).getSheetName());
+        } else if (ptg instanceof ExternSheetReferenceToken) {
+            EvaluationWorkbook.ExternalSheet externalSheet =
+                    evaluationWorkbook.getExternalSheet(((ExternSheetReferenceToken) ptg).getExternSheetIndex());
+            if (externalSheet != null) {
+                if (externalSheet.getWorkbookName() != null) {
+                    return;
+                }
+                targetSheetIndex = sheetIndexByName.get(externalSheet.getSheetName());
+            }
+        }
+        if (targetSheetIndex == null) {
+            resolvable = false;
+            return;
+        }
+        dependentsBySheet.computeIfAbsent(targetSheetIndex, k -> new SheetDependents())
+                .add(new FormulaRange(node, firstRow, lastRow, firstColumn, lastColumn));
+    }
+
+    private static final class FormulaNode {
+        final Cell cell;
+        final int sheetIndex;
+
+        FormulaNode(Cell cell, int sheetIndex) {
+            this.cell = cell;
+            this.sheetIndex = sheetIndex;
+        }
+    }
+
+    private static final class FormulaRange {
+        final FormulaNode node;
+        final int firstRow;
+        final int lastRow;
+        final int firstColumn;
+        final int lastColumn;
+
+        FormulaRange(FormulaNode node, int firstRow, int lastRow, int firstColumn, int lastColumn) {
+            this.node = node;
+            this.firstRow = Math.min(firstRow, lastRow);
+            this.lastRow = Math.max(firstRow, lastRow);
+            this.firstColumn = Math.min(firstColumn, lastColumn);
+            this.lastColumn = Math.max(firstColumn, lastColumn);
+        }
+
+        boolean contains(int row, int column) {
+            return row >= firstRow && row <= lastRow && column >= firstColumn && column <= lastColumn;
+        }
+    }
+
+    /**
+     * 某个 sheet 页上被引用区域的反向索引。
+     */
+    private static final class SheetDependents {
+        final Map<Integer, List<FormulaRange>> rangesByRow = new HashMap<>();
+        final List<FormulaRange> wideRanges = new ArrayList<>();
+
+        void add(FormulaRange range) {
+            if (range.lastRow - range.firstRow >= ROW_BUCKET_SPAN_LIMIT) {
+                wideRanges.add(range);
+                return;
+            }
+            for (int row = range.firstRow; row <= range.lastRow; row++) {
+                rangesByRow.computeIfAbsent(row, k -> new ArrayList<>()).add(range);
+            }
+        }
+
+        List<FormulaRange> candidates(int row) {
+            List<FormulaRange> rowRanges = rangesByRow.get(row);
+            if (rowRanges == null) {
+                return wideRanges;
+            }
+            if (wideRanges.isEmpty()) {
+                return rowRanges;
+            }
+            List<FormulaRange> candidates = new ArrayList<>(rowRanges.size() + wideRanges.size());
+            candidates.addAll(rowRanges);
+            candidates.addAll(wideRanges);
+            return candidates;
+        }
+    }
+}
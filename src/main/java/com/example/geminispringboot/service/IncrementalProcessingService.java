@@ -0,0 +1,504 @@
+package com.example.geminispringboot.service;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.AttendanceMatrix;
+import com.example.geminispringboot.model.MonthProcessingState;
+import com.example.geminispringboot.model.ProcessingLog;
+import com.example.geminispringboot.model.ProcessingResult;
+import com.example.geminispringboot.model.UpdateAttendanceRequest;
+import com.example.geminispringboot.util.AhoCorasickMatcher;
+import com.example.geminispringboot.util.LoadedWorkbook;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * 按月增量处理考勤表。
+ * <p>
+ * 每个状态键(通常对应一个月的考勤表)在 app.incremental.state-dir 下保存上次生成的考勤表和
+ * {@link MonthProcessingState}。再次提交整月的值班表时，只有值班表发生变化(新增、修改或删除)的日期会重新解析，
+ * 并且只重新计算这些日期及其次日("乘"/"下"班会写到次日)的单元格，其余单元格保持上次的结果。
+ * 某个单元格不再需要更新时恢复为原始考勤表中的内容。
+ */
+@Service
+public class IncrementalProcessingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalProcessingService.class);
+
+    private static final Pattern STATE_KEY_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final String STATE_FILE = "state.json";
+    private static final String WORKBOOK_FILE = "workbook.xlsx";
+
+    @Autowired
+    private OrchestrationService orchestrationService;
+
+    @Autowired
+    private AttendanceService attendanceService;
+
+    @Autowired
+    private ScheduleParsingService scheduleParsingService;
+
+    @Autowired
+    private RosterParseCache rosterParseCache;
+
+    @Autowired
+    private ProcessingResultStore resultStore;
+
+    @Autowired
+    private AppProperties appProperties;
+
+    @Autowired
+    private MemoryAdmissionService memoryAdmissionService;
+
+    private static final int STATE_LOCK_STRIPES = 64;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 同一个状态键的处理串行执行；按状态键分段加锁，锁的数量固定，不随状态键增长
+    private final Object[] stateLocks = new Object[STATE_LOCK_STRIPES];
+
+    {
+        for (int i = 0; i < stateLocks.length; i++) {
+            stateLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * @param stateKey        增量状态的键，只能包含字母、数字、'-' 和 '_'
+     * @param attendanceFile  原始考勤表；首次处理时必须上传，之后可省略，上传了不同的考勤表时重新开始
+     */
+    public ProcessingResult processFiles(String stateKey, List<MultipartFile> dutyRosterFiles, List<Integer> days,
+                                         MultipartFile attendanceFile, boolean detailLogs) throws IOException {
+        if (!STATE_KEY_PATTERN.matcher(stateKey).matches()) {
+            throw new IllegalArgumentException("状态键只能包含字母、数字、'-' 和 '_': " + stateKey);
+        }
+        if (dutyRosterFiles.size() != days.size()) {
+            throw new IllegalArgumentException("值班表文件数量与日期数量不匹配。");
+        }
+        synchronized (stateLocks[Math.floorMod(stateKey.hashCode(), STATE_LOCK_STRIPES)]) {
+            return processLocked(stateKey, dutyRosterFiles, days, attendanceFile, detailLogs);
+        }
+    }
+
+    private ProcessingResult processLocked(String stateKey, List<MultipartFile> dutyRosterFiles, List<Integer> days,
+                                           MultipartFile attendanceFile, boolean detailLogs) throws IOException {
+        ProcessingLog logs = new ProcessingLog(detailLogs, appProperties.getLogs().getDetailCapacity());
+        logs.info("--- 开始增量处理 (状态: {}) ---", stateKey);
+
+        Path stateDir = stateDir(stateKey);
+        Path stateFile = stateDir.resolve(STATE_FILE);
+        Path workbookFile = stateDir.resolve(WORKBOOK_FILE);
+        MonthProcessingState state = Files.exists(workbookFile) ? loadState(stateFile) : null;
+        if (state != null && !Objects.equals(state.getWorkbookHash(), hash(workbookFile))) {
+            // 上次保存中途失败，考勤表和状态不是同一次处理的结果，不能在其基础上增量处理
+            logs.warn("增量处理状态与保存的考勤表不一致，需要重新上传考勤表完整处理。");
+            state = null;
+        }
+
+        boolean fresh = false;
+        if (attendanceFile != null && !attendanceFile.isEmpty()) {
+            String attendanceHash;
+            try (InputStream in = attendanceFile.getInputStream()) {
+                attendanceHash = DigestUtil.sha256Hex(in);
+            }
+            if (state == null || !attendanceHash.equals(state.getAttendanceHash())) {
+                state = new MonthProcessingState();
+                state.setAttendanceHash(attendanceHash);
+                state.setOriginalFilename(attendanceFile.getOriginalFilename());
+                fresh = true;
+                logs.info("使用上传的考勤表重新开始: {}", attendanceFile.getOriginalFilename());
+            }
+        } else if (state == null) {
+            throw new IllegalArgumentException("没有找到增量处理状态 '" + stateKey + "'，首次处理需要上传考勤表。");
+        }
+        if (!fresh) {
+            logs.info("在上次生成的考勤表基础上增量处理。");
+        }
+
+        InputStreamSource workbookSource = fresh ? attendanceFile : new FileSystemResource(workbookFile);
+        MemoryAdmissionService.Reservation workbookReservation = memoryAdmissionService.admitWorkbook(workbookSource,
+                "考勤表 " + state.getOriginalFilename());
+        LoadedWorkbook loadedWorkbook = null;
+        try {
+            loadedWorkbook = LoadedWorkbook.open(workbookSource);
+            Workbook workbook = loadedWorkbook.getWorkbook();
+            AttendanceSheetIndex sheetIndex = attendanceService.buildIndex(workbook);
+            List<String> allEmployeeNames = attendanceService.extractEmployeeNames(sheetIndex);
+            int lastDayOfMonth = attendanceService.getLastDayOfMonth(sheetIndex);
+            logs.info("姓名列表提取完成 (共 {} 人)，本月最后一天是: {}", allEmployeeNames.size(), lastDayOfMonth);
+
+            // 按日期分组，同一天的多个值班表保持上传顺序
+            Map<Integer, List<MultipartFile>> filesByDay = new TreeMap<>();
+            for (int i = 0; i < dutyRosterFiles.size(); i++) {
+                if (days.get(i) < 1) {
+                    throw new IllegalArgumentException("日期必须大于 0: " + days.get(i));
+                }
+                filesByDay.computeIfAbsent(days.get(i), k -> new ArrayList<>()).add(dutyRosterFiles.get(i));
+            }
+
+            String cacheContextKey = rosterParseCache.contextKey(allEmployeeNames, appProperties.getMappings());
+            Map<Integer, List<String>> rosterKeysByDay = new TreeMap<>();
+            for (Map.Entry<Integer, List<MultipartFile>> entry : filesByDay.entrySet()) {
+                List<String> keys = new ArrayList<>(entry.getValue().size());
+                for (MultipartFile dutyRosterFile : entry.getValue()) {
+                    keys.add(rosterParseCache.key(dutyRosterFile, cacheContextKey));
+                }
+                rosterKeysByDay.put(entry.getKey(), keys);
+            }
+
+            // 值班表新增、修改或删除的日期
+            Set<Integer> changedDays = new TreeSet<>();
+            Set<Integer> allDays = new TreeSet<>(rosterKeysByDay.keySet());
+            allDays.addAll(state.getDays().keySet());
+            for (int day : allDays) {
+                MonthProcessingState.DayState previous = state.getDays().get(day);
+                if (!Objects.equals(rosterKeysByDay.get(day), previous != null ? previous.getRosterKeys() : null)) {
+                    changedDays.add(day);
+                }
+            }
+            logs.info("共 {} 个值班日期，其中 {} 个需要重新计算: {}", allDays.size(), changedDays.size(), changedDays);
+
+            Path resultFile = resultStore.createResultFile();
+            try {
+                if (changedDays.isEmpty() && !fresh) {
+                    logs.info("值班表均未变化，直接返回上次生成的考勤表。");
+                    Files.copy(workbookFile, resultFile, StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    collectChangedDays(state, changedDays, filesByDay, rosterKeysByDay, allEmployeeNames, lastDayOfMonth, logs,
+                            workbookReservation);
+                    applyChangedDays(workbook, sheetIndex, state, changedDays, allEmployeeNames, lastDayOfMonth, logs);
+
+                    saveWorkbookAndState(stateDir, workbookFile, stateFile, workbook, state);
+                    Files.copy(workbookFile, resultFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(resultFile);
+                throw e;
+            }
+            logs.info("--- 增量处理成功结束 ---");
+
+            return new ProcessingResult(logs.toLines(), resultFile, Files.size(resultFile), state.getOriginalFilename());
+
+        } finally {
+            if (loadedWorkbook != null) {
+                try {
+                    loadedWorkbook.close();
+                } catch (IOException e) {
+                    logger.warn("关闭内存中的工作簿时出错: {}", e.getMessage());
+                }
+            }
+            workbookReservation.close();
+        }
+    }
+
+    /**
+     * 重新解析发生变化的日期的值班表，替换状态中这些日期记录的更新。
+     */
+    private void collectChangedDays(MonthProcessingState state, Set<Integer> changedDays, Map<Integer, List<MultipartFile>> filesByDay,
+                                   Map<Integer, List<String>> rosterKeysByDay, List<String> allEmployeeNames, int lastDayOfMonth,
+                                   ProcessingLog logs, MemoryAdmissionService.Reservation workbookReservation) throws IOException {
+        AhoCorasickMatcher nameMatcher = scheduleParsingService.compileNameMatcher(allEmployeeNames);
+        ShiftDictionary shiftDictionary = scheduleParsingService.compileShiftDictionary(appProperties.getMappings());
+
+        List<Future<OrchestrationService.ParsedRoster>> parsedRosters = new ArrayList<>();
+        for (int day : changedDays) {
+            List<MultipartFile> files = filesByDay.get(day);
+            if (files == null) {
+                continue;
+            }
+            for (int i = 0; i < files.size(); i++) {
+                String cacheKey = rosterKeysByDay.get(day).get(i);
+                parsedRosters.add(orchestrationService.submitRosterParse(files.get(i), () -> cacheKey, nameMatcher, shiftDictionary,
+                        workbookReservation));
+            }
+        }
+
+        try {
+            int rosterIndex = 0;
+            for (int day : changedDays) {
+                List<MultipartFile> files = filesByDay.get(day);
+                if (files == null) {
+                    state.getDays().remove(day);
+                    logs.info("  -> {}日的值班表已移除，恢复当天及次日的原始内容", day);
+                    continue;
+                }
+                MonthProcessingState.DayState dayState = new MonthProcessingState.DayState();
+                dayState.setRosterKeys(rosterKeysByDay.get(day));
+                Set<String> rostered = new LinkedHashSet<>();
+                RosterUpdateSink sink = new RosterUpdateSink() {
+                    @Override
+                    public void rosterDay(int rosterDay) {
+                        dayState.setRosterDay(true);
+                    }
+
+                    @Override
+                    public void rostered(int rosterDay, String name) {
+                        rostered.add(name);
+                    }
+
+                    @Override
+                    public void update(String name, int targetDay, String shift) {
+                        UpdateAttendanceRequest update = new UpdateAttendanceRequest();
+                        update.setName(name);
+                        update.setDay(targetDay);
+                        update.setShift(shift);
+                        dayState.getUpdates().add(update);
+                    }
+                };
+                for (MultipartFile dutyRosterFile : files) {
+                    logs.info("  -> 正在处理: {} (对应日期: {}日)", dutyRosterFile.getOriginalFilename(), day);
+                    OrchestrationService.ParsedRoster parsedRoster = orchestrationService.awaitParsedRoster(parsedRosters.get(rosterIndex++), dutyRosterFile);
+                    orchestrationService.collectRosterUpdates(day, parsedRoster.shifts, lastDayOfMonth, logs, sink);
+                }
+                dayState.setRostered(new ArrayList<>(rostered));
+                state.getDays().put(day, dayState);
+            }
+        } finally {
+            for (Future<OrchestrationService.ParsedRoster> parsedRoster : parsedRosters) {
+                parsedRoster.cancel(true);
+            }
+        }
+        logs.info("变化的值班表解析完成，共收集 {} 条排班更新，跳过 {} 条超出本月范围的更新。",
+                logs.getCount(OrchestrationService.COUNTER_STANDARD_UPDATES), logs.getCount(OrchestrationService.COUNTER_SKIPPED_UPDATES));
+    }
+
+    /**
+     * 用状态中全部日期的更新重建矩阵，只把变化日期及其次日的单元格写回考勤表。
+     */
+    private void applyChangedDays(Workbook workbook, AttendanceSheetIndex index, MonthProcessingState state, Set<Integer> changedDays,
+                                  List<String> allEmployeeNames, int lastDayOfMonth, ProcessingLog logs) throws IOException {
+        index.requireUpdateLayout();
+        int maxDay = lastDayOfMonth;
+        for (int day : state.getDays().keySet()) {
+            maxDay = Math.max(maxDay, day);
+        }
+        for (int day : changedDays) {
+            maxDay = Math.max(maxDay, day);
+        }
+
+        // 按日期顺序重放，与完整处理时的写入顺序一致
+        AttendanceMatrix matrix = new AttendanceMatrix(allEmployeeNames, maxDay);
+        for (Map.Entry<Integer, MonthProcessingState.DayState> entry : new TreeMap<>(state.getDays()).entrySet()) {
+            int day = entry.getKey();
+            MonthProcessingState.DayState dayState = entry.getValue();
+            if (dayState.isRosterDay()) {
+                matrix.markRosterDay(day);
+            }
+            for (String name : dayState.getRostered()) {
+                int employeeId = matrix.idOf(name);
+                if (employeeId != -1) {
+                    matrix.markRostered(day, employeeId);
+                }
+            }
+            for (UpdateAttendanceRequest update : dayState.getUpdates()) {
+                int employeeId = matrix.idOf(update.getName());
+                if (employeeId != -1) {
+                    matrix.setShift(employeeId, update.getDay(), update.getShift());
+                }
+            }
+        }
+        matrix.fillRest("休");
+
+        Set<Integer> targetDays = new TreeSet<>();
+        for (int day : changedDays) {
+            targetDays.add(day);
+            if (day + 1 <= maxDay) {
+                targetDays.add(day + 1);
+            }
+        }
+
+        Sheet sheet = index.getSheet();
+        Map<String, MonthProcessingState.CellSnapshot> originalCells = state.getOriginalCells();
+        List<Cell> changedCells = new ArrayList<>();
+        int restoredCount = 0;
+        for (int employeeId = 0; employeeId < matrix.getEmployeeCount(); employeeId++) {
+            int rowIndex = index.findRow(matrix.getEmployeeName(employeeId));
+            if (rowIndex == -1) {
+                continue;
+            }
+            Row row = sheet.getRow(rowIndex);
+            if (row == null) row = sheet.createRow(rowIndex);
+
+            for (int day : targetDays) {
+                int shiftCode = matrix.getShiftCode(employeeId, day);
+                boolean rest = shiftCode == AttendanceMatrix.NO_SHIFT && matrix.isRest(employeeId, day);
+                int columnIndex = index.findColumn(day);
+                if (columnIndex == -1) {
+                    if (shiftCode != AttendanceMatrix.NO_SHIFT || rest) {
+                        throw new IOException("在考勤表中未找到日期: " + day);
+                    }
+                    continue;
+                }
+
+                String cellKey = rowIndex + "," + columnIndex;
+                Cell cell = row.getCell(columnIndex);
+                MonthProcessingState.CellSnapshot original = originalCells.get(cellKey);
+                if (original == null) {
+                    // 没有被修改过的单元格，当前内容就是原始内容
+                    original = snapshot(cell);
+                }
+
+                String desired = null;
+                if (shiftCode != AttendanceMatrix.NO_SHIFT) {
+                    desired = matrix.decodeShift(shiftCode);
+                } else if (rest && isBlank(original)) {
+                    desired = matrix.getRestShift();
+                }
+
+                if (desired != null) {
+                    originalCells.putIfAbsent(cellKey, original);
+                    if (cell == null) cell = row.createCell(columnIndex);
+                    if (cell.getCellType() != CellType.STRING || !desired.equals(cell.getStringCellValue())) {
+                        cell.setCellValue(desired);
+                        changedCells.add(cell);
+                    }
+                } else if (originalCells.remove(cellKey) != null) {
+                    if (cell == null) cell = row.createCell(columnIndex);
+                    restore(cell, original);
+                    changedCells.add(cell);
+                    restoredCount++;
+                }
+            }
+        }
+        logs.info("重新计算了 {} 天的单元格: 修改 {} 个，其中恢复原始内容 {} 个。", targetDays.size(), changedCells.size(), restoredCount);
+
+        if (!changedCells.isEmpty()) {
+            attendanceService.recalculateFormulas(workbook, changedCells, appProperties.getAttendance().getRecalculationMode());
+        }
+    }
+
+    private static MonthProcessingState.CellSnapshot snapshot(Cell cell) {
+        MonthProcessingState.CellSnapshot snapshot = new MonthProcessingState.CellSnapshot();
+        CellType type = cell == null ? CellType.BLANK : cell.getCellType();
+        snapshot.setType(type.name());
+        switch (type) {
+            case STRING:
+                snapshot.setStringValue(cell.getStringCellValue());
+                break;
+            case NUMERIC:
+                snapshot.setNumericValue(cell.getNumericCellValue());
+                break;
+            case BOOLEAN:
+                snapshot.setBooleanValue(cell.getBooleanCellValue());
+                break;
+            case FORMULA:
+                snapshot.setFormula(cell.getCellFormula());
+                break;
+            default:
+                break;
+        }
+        return snapshot;
+    }
+
+    private static void restore(Cell cell, MonthProcessingState.CellSnapshot snapshot) {
+        switch (CellType.valueOf(snapshot.getType())) {
+            case STRING:
+                cell.setCellValue(snapshot.getStringValue());
+                break;
+            case NUMERIC:
+                cell.setCellValue(snapshot.getNumericValue());
+                break;
+            case BOOLEAN:
+                cell.setCellValue(snapshot.isBooleanValue());
+                break;
+            case FORMULA:
+                cell.setCellFormula(snapshot.getFormula());
+                break;
+            default:
+                cell.setBlank();
+                break;
+        }
+    }
+
+    // 与 AttendanceService 中"仅当单元格为空时更新"的判断一致
+    private static boolean isBlank(MonthProcessingState.CellSnapshot snapshot) {
+        return CellType.BLANK.name().equals(snapshot.getType()) ||
+                (CellType.STRING.name().equals(snapshot.getType()) && StrUtil.isBlank(snapshot.getStringValue()));
+    }
+
+    private Path stateDir(String stateKey) {
+        String configured = appProperties.getIncremental().getStateDir();
+        Path root = StringUtils.hasText(configured)
+                ? Paths.get(configured)
+                : Paths.get(System.getProperty("java.io.tmpdir"), "attendance-incremental");
+        return root.resolve(stateKey);
+    }
+
+    private MonthProcessingState loadState(Path stateFile) {
+        if (!Files.exists(stateFile)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(stateFile.toFile(), MonthProcessingState.class);
+        } catch (IOException e) {
+            logger.warn("读取增量处理状态 {} 失败，将重新开始: {}", stateFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 先把考勤表和状态都写入临时文件，两者都写成功后才替换保存的文件。
+     * 状态中记录考勤表的摘要，两次替换之间中断时下次读取能发现不一致。
+     */
+    private void saveWorkbookAndState(Path stateDir, Path workbookFile, Path stateFile, Workbook workbook,
+                                      MonthProcessingState state) throws IOException {
+        Files.createDirectories(stateDir);
+        Path tempWorkbook = Files.createTempFile(stateDir, "workbook_", ".tmp");
+        Path tempState = null;
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempWorkbook))) {
+                workbook.write(out);
+            }
+            state.setWorkbookHash(hash(tempWorkbook));
+            state.setGeneration(state.getGeneration() + 1);
+            tempState = Files.createTempFile(stateDir, "state_", ".tmp");
+            objectMapper.writeValue(tempState.toFile(), state);
+
+            Files.move(tempWorkbook, workbookFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tempState, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempWorkbook);
+            if (tempState != null) {
+                Files.deleteIfExists(tempState);
+            }
+        }
+    }
+
+    private static String hash(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return DigestUtil.sha256Hex(in);
+        }
+    }
+}
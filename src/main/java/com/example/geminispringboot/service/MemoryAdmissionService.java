@@ -0,0 +1,343 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 工作簿加载的内存准入控制。
+ * <p>
+ * 加载前根据 zip 条目解压后的大小估算工作簿在 POI 对象模型中的内存占用，并从全局预算
+ * (app.memory.budget-bytes) 中预留；预算不足时按先来后到排队，等待超过 app.memory.max-wait-millis
+ * 或估算值本身就超过预算时以 {@link RejectedExecutionException} 拒绝。
+ * .xlsx 值班表走流式读取，只为共享字符串表预留内存；考勤表需要原地修改，只能完整加载。
+ * <p>
+ * 已持有考勤表预留的请求为其值班表追加预留时不参与排队：排在队首的新请求在等该请求释放预算，
+ * 追加预留若排在它后面，两者会互相等待直到超时。追加预留只在有其他追加预留正在读取时等待其归还，
+ * 否则立即放行，即使暂时超出预算 (最多超出一个值班表的估算值)。
+ */
+@Service
+public class MemoryAdmissionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryAdmissionService.class);
+
+    /** 每个工作簿对象本身的固定开销 (样式表、文档属性等) */
+    private static final long BASE_WORKBOOK_BYTES = 256 * 1024;
+    private static final String SHARED_STRINGS_PART = "xl/sharedStrings.xml";
+
+    @Autowired
+    private AppProperties appProperties;
+
+    private long budgetBytes;
+    private long reservedBytes;
+    private final Set<Reservation> reservations = new LinkedHashSet<>();
+    private final Deque<Reservation> waiting = new ArrayDeque<>();
+    private int topUpCount;
+    private long admitted;
+    private long rejected;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    void init() {
+        long configured = appProperties.getMemory().getBudgetBytes();
+        this.budgetBytes = configured > 0 ? configured : Runtime.getRuntime().maxMemory() / 10 * 6;
+        Gauge.builder("attendance.memory.budget", this, service -> service.budgetBytes)
+                .description("工作簿加载的内存预算").baseUnit("bytes").register(Metrics.globalRegistry);
+        Gauge.builder("attendance.memory.reserved", this, MemoryAdmissionService::getReservedBytes)
+                .description("已预留的工作簿内存").baseUnit("bytes").register(Metrics.globalRegistry);
+        Gauge.builder("attendance.memory.reservations", this, service -> service.getReservationCount())
+                .description("持有内存预留的工作簿数").register(Metrics.globalRegistry);
+        Gauge.builder("attendance.memory.waiting", this, service -> service.getWaitingCount())
+                .description("等待内存预算的工作簿数").register(Metrics.globalRegistry);
+        this.rejectedCounter = Counter.builder("attendance.memory.rejected")
+                .description("因内存预算不足被拒绝的工作簿数").register(Metrics.globalRegistry);
+        logger.info("工作簿内存预算: {} MB", budgetBytes / (1024 * 1024));
+    }
+
+    /**
+     * 工作簿的内存占用估算。
+     */
+    public static final class Footprint {
+        private final boolean ooxml;
+        private final long inMemoryBytes;
+        private final long streamingBytes;
+
+        Footprint(boolean ooxml, long inMemoryBytes, long streamingBytes) {
+            this.ooxml = ooxml;
+            this.inMemoryBytes = inMemoryBytes;
+            this.streamingBytes = streamingBytes;
+        }
+
+        public boolean isOoxml() {
+            return ooxml;
+        }
+
+        /** 完整加载为 POI 对象模型时的内存占用 */
+        public long getInMemoryBytes() {
+            return inMemoryBytes;
+        }
+
+        /** 流式读取时的内存占用，只有 .xlsx 可以流式读取 */
+        public long getStreamingBytes() {
+            return streamingBytes;
+        }
+    }
+
+    /**
+     * 一次内存预留，关闭时归还预算。
+     */
+    public final class Reservation implements AutoCloseable {
+        private final String subject;
+        private final long bytes;
+        private final Reservation holder;
+        private final long createdAt = System.currentTimeMillis();
+        private boolean released;
+
+        private Reservation(String subject, long bytes, Reservation holder) {
+            this.subject = subject;
+            this.bytes = bytes;
+            this.holder = holder;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+
+    /**
+     * 为完整加载的工作簿(如考勤表)预留内存。
+     */
+    public Reservation admitWorkbook(InputStreamSource workbook, String subject) throws IOException {
+        return reserve(subject, estimate(workbook).getInMemoryBytes());
+    }
+
+    /**
+     * 为只读的值班表预留内存：.xlsx 按流式读取估算，.xls 只能完整加载。
+     */
+    public Reservation admitRoster(InputStreamSource roster, String subject) throws IOException {
+        return admitRoster(roster, subject, null);
+    }
+
+    /**
+     * 为请求 {@code holder} 要读取的值班表追加预留，holder 为 null 时与 {@link #admitRoster(InputStreamSource, String)} 相同。
+     */
+    public Reservation admitRoster(InputStreamSource roster, String subject, Reservation holder) throws IOException {
+        Footprint footprint = estimate(roster);
+        long bytes = footprint.isOoxml() ? footprint.getStreamingBytes() : footprint.getInMemoryBytes();
+        return holder != null ? topUp(holder, subject, bytes) : reserve(subject, bytes);
+    }
+
+    /**
+     * 读取 zip 条目估算内存占用，不构建工作簿。
+     * 累计的估算值超过预算后停止读取，解压后体积异常大的文件不会被完整解压。
+     */
+    public Footprint estimate(InputStreamSource workbook) throws IOException {
+        AppProperties.Memory memory = appProperties.getMemory();
+        try (InputStream in = new BufferedInputStream(workbook.getInputStream())) {
+            if (FileMagic.valueOf(in) != FileMagic.OOXML) {
+                return new Footprint(false, BASE_WORKBOOK_BYTES + countBytes(in, budgetBytes) * memory.getXlsExpansionFactor(), 0);
+            }
+            long inMemoryBytes = BASE_WORKBOOK_BYTES;
+            long streamingBytes = BASE_WORKBOOK_BYTES;
+            try (ZipInputStream zip = new ZipInputStream(in)) {
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null && inMemoryBytes <= budgetBytes) {
+                    String name = entry.getName().toLowerCase(Locale.ROOT);
+                    boolean xml = name.endsWith(".xml") || name.endsWith(".rels");
+                    // 本地文件头里可能没有解压后的大小，此时解压计数
+                    long size = entry.getSize() >= 0 ? entry.getSize() : countBytes(zip, budgetBytes);
+                    long cost = xml ? size * memory.getXmlExpansionFactor() : size;
+                    inMemoryBytes += cost;
+                    if (SHARED_STRINGS_PART.equals(name)) {
+                        streamingBytes += cost;
+                    }
+                }
+            }
+            return new Footprint(true, inMemoryBytes, streamingBytes);
+        }
+    }
+
+    private static long countBytes(InputStream in, long limit) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while (total <= limit && (read = in.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * 从预算中预留 {@code bytes}，预算不足时排队等待。
+     *
+     * @throws RejectedExecutionException 预留量超过总预算，或等待超时
+     */
+    public Reservation reserve(String subject, long bytes) throws IOException {
+        Reservation reservation = new Reservation(subject, bytes, null);
+        synchronized (this) {
+            rejectOverBudget(subject, bytes);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(appProperties.getMemory().getMaxWaitMillis());
+            waiting.addLast(reservation);
+            try {
+                // 先到先得：只有排在队首且预算足够时才能预留，避免大文件一直被小文件插队
+                while (waiting.peekFirst() != reservation || reservedBytes + bytes > budgetBytes) {
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        reject(subject, bytes);
+                        throw new RejectedExecutionException("内存繁忙，等待 " + appProperties.getMemory().getMaxWaitMillis()
+                                + " ms 后仍无法加载: " + subject);
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("等待内存预算时被中断: " + subject, e);
+            } finally {
+                waiting.remove(reservation);
+                notifyAll();
+            }
+            reservedBytes += bytes;
+            reservations.add(reservation);
+            admitted++;
+        }
+        logger.debug("预留内存 {} MB: {}", toMegabytes(bytes), subject);
+        return reservation;
+    }
+
+    /**
+     * 在 {@code holder} 之外为同一请求追加预留 {@code bytes}，不参与先来后到的排队。
+     * 预算不足且有其他追加预留正在使用时等待其归还；没有时立即放行，保证持有预留的请求总能继续。
+     *
+     * @throws RejectedExecutionException 预留量超过总预算，或等待超时
+     */
+    public Reservation topUp(Reservation holder, String subject, long bytes) throws IOException {
+        Reservation reservation = new Reservation(subject, bytes, holder);
+        synchronized (this) {
+            rejectOverBudget(subject, bytes);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(appProperties.getMemory().getMaxWaitMillis());
+            try {
+                // 追加预留用完即还，等待它们不会反过来等待本请求，不会互相等待
+                while (reservedBytes + bytes > budgetBytes && topUpCount > 0) {
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        reject(subject, bytes);
+                        throw new RejectedExecutionException("内存繁忙，等待 " + appProperties.getMemory().getMaxWaitMillis()
+                                + " ms 后仍无法加载: " + subject);
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("等待内存预算时被中断: " + subject, e);
+            }
+            reservedBytes += bytes;
+            topUpCount++;
+            reservations.add(reservation);
+            admitted++;
+        }
+        logger.debug("为 {} 追加预留内存 {} MB: {}", holder.subject, toMegabytes(bytes), subject);
+        return reservation;
+    }
+
+    private void rejectOverBudget(String subject, long bytes) {
+        if (bytes > budgetBytes) {
+            reject(subject, bytes);
+            throw new RejectedExecutionException("文件过大，预计需要 " + toMegabytes(bytes) + " MB 内存，超过预算 "
+                    + toMegabytes(budgetBytes) + " MB: " + subject);
+        }
+    }
+
+    private synchronized void release(Reservation reservation) {
+        if (reservation.released) {
+            return;
+        }
+        reservation.released = true;
+        reservedBytes -= reservation.bytes;
+        if (reservation.holder != null) {
+            topUpCount--;
+        }
+        reservations.remove(reservation);
+        notifyAll();
+    }
+
+    private void reject(String subject, long bytes) {
+        rejected++;
+        rejectedCounter.increment();
+        logger.warn("内存预算不足，拒绝加载: {} (预计 {} MB，已预留 {}/{} MB)", subject, toMegabytes(bytes),
+                toMegabytes(reservedBytes), toMegabytes(budgetBytes));
+    }
+
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    public synchronized int getReservationCount() {
+        return reservations.size();
+    }
+
+    public synchronized int getWaitingCount() {
+        return waiting.size();
+    }
+
+    /**
+     * 当前预算、预留和排队情况。
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            stats.put("budgetBytes", budgetBytes);
+            stats.put("reservedBytes", reservedBytes);
+            stats.put("waiting", waiting.size());
+            stats.put("admitted", admitted);
+            stats.put("rejected", rejected);
+            List<Map<String, Object>> current = new ArrayList<>(reservations.size());
+            for (Reservation reservation : reservations) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("subject", reservation.subject);
+                item.put("bytes", reservation.bytes);
+                item.put("heldMillis", now - reservation.createdAt);
+                if (reservation.holder != null) {
+                    item.put("holder", reservation.holder.subject);
+                }
+                current.add(item);
+            }
+            stats.put("reservations", current);
+        }
+        return stats;
+    }
+
+    private static long toMegabytes(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+}
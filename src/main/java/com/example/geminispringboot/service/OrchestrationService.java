@@ -1,26 +1,53 @@
 package com.example.geminispringboot.service;
 
 import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.AttendanceMatrix;
+import com.example.geminispringboot.model.ProcessingLog;
 import com.example.geminispringboot.model.ProcessingResult;
-import com.example.geminispringboot.model.UpdateAttendanceRequest;
+import com.example.geminispringboot.model.ShiftDescriptor;
+import com.example.geminispringboot.util.AhoCorasickMatcher;
+import com.example.geminispringboot.util.FileMultipartFile;
+import com.example.geminispringboot.util.LoadedWorkbook;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayOutputStream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 @Service
 public class OrchestrationService {
 
+    private static final Logger logger = LoggerFactory.getLogger(OrchestrationService.class);
+
+    static final String COUNTER_STANDARD_UPDATES = "standardUpdates";
+    static final String COUNTER_SKIPPED_UPDATES = "skippedUpdates";
+    static final String COUNTER_REST_CANDIDATES = "restCandidates";
+    static final String COUNTER_CACHED_ROSTERS = "cachedRosters";
+
     @Autowired
     private ExcelService excelService;
 
@@ -33,14 +60,45 @@ public class OrchestrationService {
     @Autowired
     private AppProperties appProperties;
 
+    @Autowired
+    private ProcessingResultStore resultStore;
+
+    @Autowired
+    private RosterParseCache rosterParseCache;
+
+    @Autowired
+    private MemoryAdmissionService memoryAdmissionService;
+
+    // 所有请求共享的值班表解析线程池，线程数和队列长度均有上限
+    private ExecutorService rosterParsingExecutor;
+
+    @PostConstruct
+    void initRosterParsingExecutor() {
+        AppProperties.Roster roster = appProperties.getRoster();
+        int threads = roster.getParseThreads() > 0 ? roster.getParseThreads() : Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(roster.getParseQueueCapacity()),
+                new CustomizableThreadFactory("roster-parse-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        this.rosterParsingExecutor = executor;
+    }
+
+    @PreDestroy
+    void shutdownRosterParsingExecutor() {
+        rosterParsingExecutor.shutdownNow();
+    }
+
     // Private inner class to hold file-day pairs for sorting
     private static class RosterInput {
         final MultipartFile file;
         final int day;
+        final Future<ParsedRoster> parsed;
 
-        RosterInput(MultipartFile file, int day) {
+        RosterInput(MultipartFile file, int day, Future<ParsedRoster> parsed) {
             this.file = file;
             this.day = day;
+            this.parsed = parsed;
         }
 
         int getDay() {
@@ -52,145 +110,513 @@ public class OrchestrationService {
         }
     }
 
+    // 值班表来源：逐个交出值班表文件及其日期，每交出一个就立即提交解析
+    @FunctionalInterface
+    private interface RosterSource {
+        void forEach(RosterConsumer consumer) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface RosterConsumer {
+        void accept(MultipartFile dutyRosterFile, int day) throws IOException;
+    }
+
+    // 一个值班表的解析结果，以及它是否来自缓存
+    static class ParsedRoster {
+        final Map<ShiftDescriptor, List<String>> shifts;
+        final boolean fromCache;
+
+        ParsedRoster(Map<ShiftDescriptor, List<String>> shifts, boolean fromCache) {
+            this.shifts = shifts;
+            this.fromCache = fromCache;
+        }
+    }
+
+    // 一个要更新的考勤表 sheet 页，矩阵在确定日期范围后创建
+    private static class SheetTarget {
+        final AttendanceSheetIndex index;
+        final List<String> employeeNames;
+        final int lastDayOfMonth;
+        AttendanceMatrix matrix;
+
+        SheetTarget(AttendanceSheetIndex index, List<String> employeeNames, int lastDayOfMonth) {
+            this.index = index;
+            this.employeeNames = employeeNames;
+            this.lastDayOfMonth = lastDayOfMonth;
+        }
+
+        String getSheetName() {
+            return index.getSheet().getSheetName();
+        }
+    }
+
     public ProcessingResult processFiles(List<MultipartFile> dutyRosterFiles, MultipartFile attendanceFile, List<Integer> days) throws IOException {
-        List<String> logs = new ArrayList<>();
-        logs.add("--- 开始处理多个文件 (按日期排序) ---");
+        return processFiles(dutyRosterFiles, attendanceFile, days, false);
+    }
+
+    /**
+     * @param detailLogs 是否在返回的日志中包含逐条更新的明细，默认只返回各步骤的摘要
+     */
+    public ProcessingResult processFiles(List<MultipartFile> dutyRosterFiles, MultipartFile attendanceFile, List<Integer> days,
+                                         boolean detailLogs) throws IOException {
+        return processFiles(dutyRosterFiles, attendanceFile, days, detailLogs, ProgressListener.NONE);
+    }
+
+    /**
+     * @param detailLogs       是否在返回的日志中包含逐条更新的明细
+     * @param progressListener 每个阶段(以及每个值班表)处理完成时收到进度事件
+     */
+    public ProcessingResult processFiles(List<MultipartFile> dutyRosterFiles, MultipartFile attendanceFile, List<Integer> days,
+                                         boolean detailLogs, ProgressListener progressListener) throws IOException {
+        return processFiles(dutyRosterFiles, attendanceFile, days, detailLogs, false, progressListener);
+    }
+
+    /**
+     * @param detailLogs       是否在返回的日志中包含逐条更新的明细
+     * @param allSheets        是否更新考勤表中所有符合考勤表版式的 sheet 页，否则只更新第一个 sheet 页
+     * @param progressListener 每个阶段(以及每个值班表)处理完成时收到进度事件
+     */
+    public ProcessingResult processFiles(List<MultipartFile> dutyRosterFiles, MultipartFile attendanceFile, List<Integer> days,
+                                         boolean detailLogs, boolean allSheets, ProgressListener progressListener) throws IOException {
+        ProcessingLog logs = new ProcessingLog(detailLogs, appProperties.getLogs().getDetailCapacity());
+        logs.info("--- 开始处理多个文件 (按日期排序) ---");
 
         if (dutyRosterFiles.size() != days.size()) {
             throw new IllegalArgumentException("值班表文件数量与日期数量不匹配。");
         }
 
-        Workbook attendanceWorkbook = null;
-        try (InputStream attendanceStream = attendanceFile.getInputStream()) {
+        RosterSource rosterSource = consumer -> {
+            for (int i = 0; i < dutyRosterFiles.size(); i++) {
+                consumer.accept(dutyRosterFiles.get(i), days.get(i));
+            }
+        };
+        return processRosters(rosterSource, attendanceFile, allSheets, logs, new ProgressTracker(progressListener));
+    }
+
+    /**
+     * 处理一个 zip 压缩包中的全部值班表，日期由文件名按 {@code app.roster.zip-day-pattern} 识别。
+     * 压缩包以流的方式逐个解压到临时文件，每解压出一个值班表就提交解析，解压与解析同时进行；
+     * 临时文件在处理结束后删除。
+     *
+     * @param rosterArchive 值班表压缩包，只处理其中的 .xls/.xlsx 文件
+     */
+    public ProcessingResult processArchive(MultipartFile rosterArchive, MultipartFile attendanceFile, boolean detailLogs,
+                                           boolean allSheets, ProgressListener progressListener) throws IOException {
+        ProcessingLog logs = new ProcessingLog(detailLogs, appProperties.getLogs().getDetailCapacity());
+        logs.info("--- 开始处理值班表压缩包: {} ---", rosterArchive.getOriginalFilename());
+        List<FileMultipartFile> extractedFiles = new ArrayList<>();
+        try {
+            return processRosters(consumer -> readRosterArchive(rosterArchive, logs, extractedFiles, consumer), attendanceFile,
+                    allSheets, logs, new ProgressTracker(progressListener));
+        } finally {
+            for (FileMultipartFile extractedFile : extractedFiles) {
+                extractedFile.delete();
+            }
+        }
+    }
+
+    private ProcessingResult processRosters(RosterSource rosterSource, MultipartFile attendanceFile, boolean allSheets,
+                                            ProcessingLog logs, ProgressTracker progress) throws IOException {
+        // 加载前按估算的内存占用从全局预算中预留，预算不足时排队或拒绝
+        MemoryAdmissionService.Reservation attendanceReservation = memoryAdmissionService.admitWorkbook(attendanceFile,
+                "考勤表 " + attendanceFile.getOriginalFilename());
+        LoadedWorkbook loadedAttendance = null;
+        try {
             // 步骤 1: 将唯一的考勤表直接读入内存
-            logs.add("步骤 1/5: 正在将考勤表加载到内存: " + attendanceFile.getOriginalFilename());
-            attendanceWorkbook = WorkbookFactory.create(attendanceStream);
-            logs.add("考勤表加载成功。");
+            logs.info("步骤 1/5: 正在将考勤表加载到内存: {}", attendanceFile.getOriginalFilename());
+            logs.debug("  -> 预计占用内存 {} KB", attendanceReservation.getBytes() / 1024);
+            Workbook attendanceWorkbook;
+            try (ProcessingMetrics.Stage loadStage = ProcessingMetrics.start(ProcessingMetrics.STAGE_LOAD)) {
+                // 从磁盘文件打开，POI 按需读取 zip 条目，不在内存中缓冲整个压缩包
+                loadedAttendance = LoadedWorkbook.open(attendanceFile);
+                attendanceWorkbook = loadedAttendance.getWorkbook();
+                loadStage.success();
+            }
+            logs.info("考勤表加载成功。");
+            progress.complete("load", "考勤表加载完成", 10);
 
             // 步骤 2: 从考勤表中动态提取员工姓名列表和获取最后一天
-            logs.add("步骤 2/5: 正在从考勤表提取基础信息...");
-            List<String> allEmployeeNames = attendanceService.extractEmployeeNames(attendanceWorkbook);
-            int lastDayOfMonth = attendanceService.getLastDayOfMonth(attendanceWorkbook);
-            logs.add("姓名列表提取完成 (共 " + allEmployeeNames.size() + " 人)，本月最后一天是: " + lastDayOfMonth);
-
-            // 将文件和日期配对并按日期排序
-            List<RosterInput> rosterInputs = IntStream.range(0, dutyRosterFiles.size())
-                    .mapToObj(i -> new RosterInput(dutyRosterFiles.get(i), days.get(i)))
-                    .sorted(Comparator.comparingInt(RosterInput::getDay))
-                    .collect(Collectors.toList());
-
-            logs.add("值班表已按日期从小到大排序。");
-
-            // 步骤 3: 循环解析所有值班表并收集更新
-            logs.add("步骤 3/5: 正在按排序后的顺序解析所有值班表并收集考勤更新...");
-            List<UpdateAttendanceRequest> allStandardUpdates = new ArrayList<>();
-            Map<Integer, Set<String>> rosteredNamesByDay = new HashMap<>();
-            Pattern pattern = Pattern.compile(".*\\((.*)\\)");
-
-            for (RosterInput rosterInput : rosterInputs) {
-                MultipartFile dutyRosterFile = rosterInput.getFile();
-                int day = rosterInput.getDay();
-                logs.add("  -> 正在处理: " + dutyRosterFile.getOriginalFilename() + " (对应日期: " + day + "日)");
-
-                List<List<String>> dutyRosterData = excelService.readExcelData(dutyRosterFile);
-                Map<String, List<String>> parsedDutyRoster = scheduleParsingService.parse(dutyRosterData, allEmployeeNames, appProperties.getMappings());
-
-                Map<String, Integer> chengShiftCount = new HashMap<>(); // "乘"班计数器，每个文件独立
-
-                for (Map.Entry<String, List<String>> entry : parsedDutyRoster.entrySet()) {
-                    String key = entry.getKey();
-                    List<String> names = entry.getValue();
-
-                    // 记录当天所有已排班的人员
-                    rosteredNamesByDay.computeIfAbsent(day, k -> new HashSet<>()).addAll(names);
-
-                    Matcher matcher = pattern.matcher(key);
-                    if (matcher.find()) {
-                        String shift = matcher.group(1);
-                        logs.add("    - 处理班次: '" + shift + "'，包含 " + names.size() + " 人");
-
-                        for (String name : names) {
-                            UpdateAttendanceRequest request = new UpdateAttendanceRequest();
-                            request.setName(name);
-                            request.setShift(shift);
-
-                            if ("乘".equals(shift)) {
-                                int count = chengShiftCount.getOrDefault(name, 0);
-                                int targetDay = (count == 0) ? day : day + 1;
-                                if (targetDay <= lastDayOfMonth) {
-                                    request.setDay(targetDay);
-                                    allStandardUpdates.add(request);
-                                    logs.add("      - [收集] 更新 " + name + " 第 " + targetDay + " 天为: " + shift);
-                                } else {
-                                    logs.add("      - **跳过**: " + name + " 第 " + targetDay + " 天的更新，超出本月范围。");
-                                }
-                                chengShiftCount.put(name, count + 1);
-                            } else if ("下".equals(shift)) {
-                                int targetDay = day + 1;
-                                if (targetDay <= lastDayOfMonth) {
-                                    request.setDay(targetDay);
-                                    allStandardUpdates.add(request);
-                                    logs.add("      - [收集] 更新 " + name + " 第 " + targetDay + " 天为: " + shift);
-                                } else {
-                                    logs.add("      - **跳过**: " + name + " 第 " + targetDay + " 天的更新，超出本月范围。");
-                                }
-                            } else {
-                                request.setDay(day);
-                                allStandardUpdates.add(request);
-                                logs.add("      - [收集] 更新 " + name + " 第 " + day + " 天为: " + shift);
-                            }
-                        }
+            logs.info("步骤 2/5: 正在从考勤表提取基础信息...");
+            List<SheetTarget> sheetTargets;
+            int lastDayOfMonth;
+            List<String> allEmployeeNames;
+            try (ProcessingMetrics.Stage extractStage = ProcessingMetrics.start(ProcessingMetrics.STAGE_EXTRACT)) {
+                sheetTargets = buildSheetTargets(attendanceWorkbook, allSheets, logs);
+                lastDayOfMonth = sheetTargets.get(0).lastDayOfMonth;
+                // 所有 sheet 页的姓名合并去重，解析值班表时统一匹配，再按 sheet 页分发更新
+                Set<String> mergedNames = new LinkedHashSet<>();
+                for (SheetTarget sheetTarget : sheetTargets) {
+                    if (sheetTarget.lastDayOfMonth != lastDayOfMonth) {
+                        throw new IOException("各 sheet 页的月份天数不一致: '" + sheetTargets.get(0).getSheetName() + "' 为 " + lastDayOfMonth
+                                + " 天，'" + sheetTarget.getSheetName() + "' 为 " + sheetTarget.lastDayOfMonth + " 天");
                     }
+                    mergedNames.addAll(sheetTarget.employeeNames);
                 }
+                // 只有一个 sheet 页时沿用其原始姓名列表，解析结果和缓存键与之前完全一致
+                allEmployeeNames = sheetTargets.size() == 1 ? sheetTargets.get(0).employeeNames : new ArrayList<>(mergedNames);
+                extractStage.success();
             }
-            logs.add("所有值班表解析完成。");
+            logs.info("姓名列表提取完成 (共 {} 人)，本月最后一天是: {}", allEmployeeNames.size(), lastDayOfMonth);
+            progress.complete("extract", "姓名列表提取完成 (共 " + allEmployeeNames.size() + " 人)", 15);
+
+            // 步骤 3: 解析所有值班表并按日期顺序收集更新
+            logs.info("步骤 3/5: 正在解析所有值班表并按日期顺序收集考勤更新...");
+            // 姓名匹配器和班次字典只编译一次，所有值班表共用
+            AhoCorasickMatcher nameMatcher = scheduleParsingService.compileNameMatcher(allEmployeeNames);
+            ShiftDictionary shiftDictionary = scheduleParsingService.compileShiftDictionary(appProperties.getMappings());
+            // 内容、姓名列表和映射表都未变化的值班表直接使用缓存的解析结果
+            String cacheContextKey = rosterParseCache.contextKey(allEmployeeNames, appProperties.getMappings());
+
+            // 读取和解析彼此独立，每个值班表一交出就提交到线程池并行解析，再按日期顺序依次合并结果
+            List<RosterInput> rosterInputs = new ArrayList<>();
+            int maxDay = lastDayOfMonth;
+            try {
+                rosterSource.forEach((dutyRosterFile, day) -> {
+                    if (day < 1) {
+                        throw new IllegalArgumentException("日期必须大于 0: " + day);
+                    }
+                    rosterInputs.add(new RosterInput(dutyRosterFile, day,
+                            submitRosterParse(dutyRosterFile, () -> rosterParseCache.key(dutyRosterFile, cacheContextKey), nameMatcher,
+                                    shiftDictionary, attendanceReservation)));
+                });
+
+                // 按日期排序(稳定排序，同一天的值班表保持提交顺序)
+                rosterInputs.sort(Comparator.comparingInt(RosterInput::getDay));
+                logs.info("值班表已按日期从小到大排序。");
+
+                // 员工 × 日期的更新矩阵，需容纳本月所有日期以及值班表对应的日期
+                for (RosterInput rosterInput : rosterInputs) {
+                    maxDay = Math.max(maxDay, rosterInput.getDay());
+                }
+                List<AttendanceMatrix> matrices = new ArrayList<>(sheetTargets.size());
+                for (SheetTarget sheetTarget : sheetTargets) {
+                    sheetTarget.matrix = new AttendanceMatrix(sheetTarget.employeeNames, maxDay);
+                    matrices.add(sheetTarget.matrix);
+                }
+                RosterUpdateSink matrixSink = RosterUpdateSink.into(matrices);
+
+                for (int rosterIndex = 0; rosterIndex < rosterInputs.size(); rosterIndex++) {
+                    RosterInput rosterInput = rosterInputs.get(rosterIndex);
+                    MultipartFile dutyRosterFile = rosterInput.getFile();
+                    int day = rosterInput.getDay();
+                    logs.info("  -> 正在处理: {} (对应日期: {}日)", dutyRosterFile.getOriginalFilename(), day);
+
+                    ParsedRoster parsedRoster = awaitParsedRoster(rosterInput.parsed, dutyRosterFile);
+                    if (parsedRoster.fromCache) {
+                        logs.count(COUNTER_CACHED_ROSTERS);
+                        logs.debug("    - 文件内容未变化，使用缓存的解析结果");
+                    }
+                    collectRosterUpdates(day, parsedRoster.shifts, lastDayOfMonth, logs, matrixSink);
+                    // 解析阶段占 15% ~ 70%
+                    progress.complete("parse", "值班表解析完成: " + dutyRosterFile.getOriginalFilename() + " (" + (rosterIndex + 1) + "/" + rosterInputs.size() + ")",
+                            15 + 55 * (rosterIndex + 1) / rosterInputs.size());
+                }
+            } finally {
+                // 读取或合并过程中出错时，取消尚未完成的解析任务
+                for (RosterInput rosterInput : rosterInputs) {
+                    rosterInput.parsed.cancel(true);
+                }
+            }
+            logs.info("所有值班表解析完成 ({} 个使用了缓存的解析结果)，共收集 {} 条排班更新，跳过 {} 条超出本月范围的更新。",
+                    logs.getCount(COUNTER_CACHED_ROSTERS), logs.getCount(COUNTER_STANDARD_UPDATES), logs.getCount(COUNTER_SKIPPED_UPDATES));
 
             // 步骤 4: 收集所有“休”的更新请求
-            logs.add("步骤 4/5: 正在为所有涉及的日期收集'休'假更新...");
-            List<UpdateAttendanceRequest> allIfEmptyUpdates = new ArrayList<>();
-            for (Map.Entry<Integer, Set<String>> entry : rosteredNamesByDay.entrySet()) {
-                int day = entry.getKey();
-                Set<String> rosteredNamesForDay = entry.getValue();
-                logs.add("  -> 检查日期: " + day + "日，当天已排班 " + rosteredNamesForDay.size() + " 人");
-
-                for (String name : allEmployeeNames) {
-                    if (!rosteredNamesForDay.contains(name)) {
-                        UpdateAttendanceRequest request = new UpdateAttendanceRequest();
-                        request.setName(name);
-                        request.setDay(day);
-                        request.setShift("休");
-                        allIfEmptyUpdates.add(request);
-                        logs.add("    - [收集] 为未排班员工 " + name + " 在第 " + day + " 天添加 '休' (如果单元格为空)");
+            logs.info("步骤 4/5: 正在为所有涉及的日期收集'休'假更新...");
+            for (SheetTarget sheetTarget : sheetTargets) {
+                if (sheetTargets.size() > 1) {
+                    logs.debug("  -> sheet 页: {}", sheetTarget.getSheetName());
+                }
+                AttendanceMatrix matrix = sheetTarget.matrix;
+                int employeeCount = matrix.getEmployeeCount();
+                for (int day = 1; day <= maxDay; day++) {
+                    BitSet rosteredForDay = matrix.getRostered(day);
+                    if (rosteredForDay == null) {
+                        continue;
                     }
+                    int rosteredCount = rosteredForDay.cardinality();
+                    logs.debug("  -> 检查日期: {}日，当天已排班 {} 人，{} 名未排班员工将添加 '休' (如果单元格为空)",
+                            day, rosteredCount, employeeCount - rosteredCount);
                 }
             }
-            logs.add("考勤更新收集完成。");
+            // 各 sheet 页的矩阵互不相关，并行补全
+            List<Future<Integer>> restFills = new ArrayList<>(sheetTargets.size());
+            for (SheetTarget sheetTarget : sheetTargets) {
+                restFills.add(rosterParsingExecutor.submit(() -> {
+                    try (ProcessingMetrics.Stage restFillStage = ProcessingMetrics.start(ProcessingMetrics.STAGE_REST_FILL)) {
+                        int filled = sheetTarget.matrix.fillRest("休");
+                        restFillStage.success();
+                        return filled;
+                    }
+                }));
+            }
+            int restCount = 0;
+            for (int i = 0; i < restFills.size(); i++) {
+                restCount += await(restFills.get(i), "收集'休'假更新", sheetTargets.get(i).getSheetName());
+            }
+            logs.count(COUNTER_REST_CANDIDATES, restCount);
+            logs.info("考勤更新收集完成，共 {} 个'休'假候选单元格。", restCount);
+            progress.complete("rest-fill", "'休'假更新收集完成", 75);
 
             // 步骤 5: 一次性批量更新内存中的考勤表
-            logs.add("步骤 5/5: 开始在内存中批量更新考勤表...");
-            attendanceService.batchUpdateAttendance(attendanceWorkbook, allStandardUpdates, allIfEmptyUpdates);
-            logs.add("批量更新完成。");
-
-            // 将内存中的工作簿写入字节数组以便返回
-            logs.add("正在生成最终文件...");
-            byte[] fileContent;
-            try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                attendanceWorkbook.write(baos);
-                fileContent = baos.toByteArray();
+            logs.info("步骤 5/5: 开始在内存中批量更新考勤表...");
+            // POI 工作簿不是线程安全的，写入按 sheet 页依次进行
+            for (SheetTarget sheetTarget : sheetTargets) {
+                if (sheetTargets.size() > 1) {
+                    logs.info("  -> 正在更新 sheet 页: {}", sheetTarget.getSheetName());
+                }
+                attendanceService.applyAttendanceMatrix(attendanceWorkbook, sheetTarget.index, sheetTarget.matrix);
             }
-            logs.add("--- 文件处理成功结束 ---");
+            logs.info("批量更新完成。");
+            progress.complete("batch-update", "考勤表批量更新完成", 90);
+
+            // 将工作簿直接写入结果文件，下载时从文件流式输出，不在内存中保留完整副本
+            logs.info("正在生成最终文件...");
+            Path resultFile = resultStore.createResultFile();
+            try (ProcessingMetrics.Stage writeStage = ProcessingMetrics.start(ProcessingMetrics.STAGE_WRITE)) {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(resultFile))) {
+                    attendanceWorkbook.write(out);
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(resultFile);
+                    throw e;
+                }
+                writeStage.success();
+            }
+            logs.info("--- 文件处理成功结束 ---");
+            progress.complete("write", "结果文件生成完成", 100);
 
-            return new ProcessingResult(logs, fileContent, attendanceFile.getOriginalFilename());
+            return new ProcessingResult(logs.toLines(), resultFile, Files.size(resultFile), attendanceFile.getOriginalFilename());
 
         } finally {
-            // 确保工作簿在处理结束时关闭以释放内存
-            if (attendanceWorkbook != null) {
+            // 确保工作簿在处理结束时关闭以释放内存并删除临时文件
+            if (loadedAttendance != null) {
                 try {
-                    attendanceWorkbook.close();
+                    loadedAttendance.close();
                 } catch (IOException e) {
-                    logs.add("关闭内存中的工作簿时出错: " + e.getMessage());
+                    logger.warn("关闭内存中的工作簿时出错: {}", e.getMessage());
+                }
+            }
+            attendanceReservation.close();
+        }
+    }
+
+    /**
+     * 以流的方式逐个解压压缩包中的值班表，解压到临时文件(加入 extractedFiles，由调用方删除)后立即交给 consumer。
+     * 解压出的内容不占用堆内存，文件数和解压后的总大小有上限，超出时拒绝整个请求。
+     * 目录、非 Excel 文件以及 macOS 附带的元数据文件被跳过；文件名中识别不出日期时拒绝整个请求。
+     */
+    private void readRosterArchive(MultipartFile rosterArchive, ProcessingLog logs, List<FileMultipartFile> extractedFiles,
+                                   RosterConsumer consumer) throws IOException {
+        AppProperties.Roster roster = appProperties.getRoster();
+        Pattern dayPattern = Pattern.compile(roster.getZipDayPattern());
+        int entryCount = 0;
+        int rosterCount = 0;
+        long totalBytes = 0;
+        try (ZipInputStream zip = new ZipInputStream(rosterArchive.getInputStream(), Charset.forName(roster.getZipFilenameCharset()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (++entryCount > roster.getZipMaxEntries()) {
+                    throw new IllegalArgumentException("压缩包中的文件过多 (超过 " + roster.getZipMaxEntries() + " 个)");
+                }
+                String entryName = entry.getName();
+                String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+                if (!isRosterFileName(entryName, fileName)) {
+                    logs.info("  -> 跳过压缩包中的非值班表文件: {}", entryName);
+                    continue;
+                }
+                Matcher dayMatcher = dayPattern.matcher(fileName);
+                if (!dayMatcher.find()) {
+                    throw new IllegalArgumentException("无法从文件名中识别日期: " + entryName);
+                }
+                int day = Integer.parseInt(dayMatcher.groupCount() > 0 ? dayMatcher.group(1) : dayMatcher.group());
+
+                File content = File.createTempFile("zip_entry_", ".tmp");
+                FileMultipartFile extracted = new FileMultipartFile("dutyRosterFiles", fileName, null, content);
+                extractedFiles.add(extracted);
+                long size = extractArchiveEntry(zip, entryName, content, roster.getZipMaxEntryBytes(), roster.getZipMaxTotalBytes() - totalBytes);
+                totalBytes += size;
+                logs.debug("  -> 已解压: {} (对应日期: {}日，{} 字节)", entryName, day, size);
+                consumer.accept(extracted, day);
+                rosterCount++;
+            }
+        }
+        if (rosterCount == 0) {
+            throw new IllegalArgumentException("压缩包中没有值班表文件(.xls/.xlsx)。");
+        }
+        logs.info("压缩包解压完成，共 {} 个值班表。", rosterCount);
+    }
+
+    private static boolean isRosterFileName(String entryName, String fileName) {
+        String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+        return !entryName.startsWith("__MACOSX/") && !fileName.startsWith("._") && !fileName.startsWith("~$")
+                && (lowerCaseName.endsWith(".xlsx") || lowerCaseName.endsWith(".xls"));
+    }
+
+    /**
+     * 把当前条目解压到 target，返回解压后的字节数。
+     *
+     * @param remainingTotalBytes 压缩包解压总大小上限还剩余的字节数
+     */
+    private long extractArchiveEntry(ZipInputStream zip, String entryName, File target, long maxEntryBytes,
+                                     long remainingTotalBytes) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target.toPath()))) {
+            for (int read = zip.read(buffer); read != -1; read = zip.read(buffer)) {
+                total += read;
+                if (total > maxEntryBytes) {
+                    throw new IllegalArgumentException("压缩包中的文件过大: " + entryName + " (超过 " + maxEntryBytes + " 字节)");
+                }
+                if (total > remainingTotalBytes) {
+                    throw new IllegalArgumentException("压缩包解压后的总大小超过 " + appProperties.getRoster().getZipMaxTotalBytes() + " 字节");
                 }
+                out.write(buffer, 0, read);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 构建要更新的 sheet 页。只更新第一个 sheet 页时保持原有的表头校验；更新全部 sheet 页时，
+     * 各 sheet 页的版式索引在线程池中并行构建(只读)，不符合考勤表版式的 sheet 页被跳过。
+     */
+    private List<SheetTarget> buildSheetTargets(Workbook attendanceWorkbook, boolean allSheets, ProcessingLog logs) throws IOException {
+        if (!allSheets) {
+            AttendanceSheetIndex sheetIndex = attendanceService.buildIndex(attendanceWorkbook);
+            return Collections.singletonList(new SheetTarget(sheetIndex, attendanceService.extractEmployeeNames(sheetIndex),
+                    attendanceService.getLastDayOfMonth(sheetIndex)));
+        }
+
+        int sheetCount = attendanceWorkbook.getNumberOfSheets();
+        List<Future<AttendanceSheetIndex>> sheetIndexes = new ArrayList<>(sheetCount);
+        for (int i = 0; i < sheetCount; i++) {
+            int sheetNumber = i;
+            sheetIndexes.add(rosterParsingExecutor.submit(() -> attendanceService.buildIndex(attendanceWorkbook, sheetNumber)));
+        }
+        List<SheetTarget> sheetTargets = new ArrayList<>();
+        try {
+            for (int i = 0; i < sheetCount; i++) {
+                AttendanceSheetIndex sheetIndex = await(sheetIndexes.get(i), "读取 sheet 页", attendanceWorkbook.getSheetName(i));
+                if (!sheetIndex.hasUpdateLayout()) {
+                    logs.info("  -> 跳过 sheet 页 '{}'：不是考勤表版式", attendanceWorkbook.getSheetName(i));
+                    continue;
+                }
+                SheetTarget sheetTarget = new SheetTarget(sheetIndex, attendanceService.extractEmployeeNames(sheetIndex),
+                        attendanceService.getLastDayOfMonth(sheetIndex));
+                logs.info("  -> sheet 页 '{}'：{} 人", sheetTarget.getSheetName(), sheetTarget.employeeNames.size());
+                sheetTargets.add(sheetTarget);
+            }
+        } finally {
+            for (Future<AttendanceSheetIndex> sheetIndex : sheetIndexes) {
+                sheetIndex.cancel(true);
+            }
+        }
+        if (sheetTargets.isEmpty()) {
+            throw new IOException("考勤表中没有符合考勤表版式(含'姓名'和'日     期'表头)的 sheet 页");
+        }
+        logs.info("共 {} 个 sheet 页需要更新。", sheetTargets.size());
+        return sheetTargets;
+    }
+
+    /**
+     * 收集一个值班表的考勤更新："乘"班第一次出现记在当天、再次出现记在次日，"下"班记在次日，
+     * 其余班次记在当天；记到次日且超出本月范围的更新跳过。
+     */
+    void collectRosterUpdates(int day, Map<ShiftDescriptor, List<String>> parsedDutyRoster, int lastDayOfMonth,
+                              ProcessingLog logs, RosterUpdateSink sink) {
+        Map<String, Integer> chengShiftCount = new HashMap<>(); // "乘"班计数器，每个文件独立
+
+        for (Map.Entry<ShiftDescriptor, List<String>> entry : parsedDutyRoster.entrySet()) {
+            List<String> names = entry.getValue();
+
+            // 记录当天所有已排班的人员
+            sink.rosterDay(day);
+
+            String shift = entry.getKey().getAlias();
+            logs.debug("    - 处理班次: '{}'，包含 {} 人", shift, names.size());
+
+            for (String name : names) {
+                sink.rostered(day, name);
+
+                int targetDay = day;
+                boolean limitedToMonth = true;
+                if ("乘".equals(shift)) {
+                    int count = chengShiftCount.getOrDefault(name, 0);
+                    targetDay = (count == 0) ? day : day + 1;
+                    chengShiftCount.put(name, count + 1);
+                } else if ("下".equals(shift)) {
+                    targetDay = day + 1;
+                } else {
+                    limitedToMonth = false;
+                }
+
+                if (limitedToMonth && targetDay > lastDayOfMonth) {
+                    logs.count(COUNTER_SKIPPED_UPDATES);
+                    logs.debug("      - **跳过**: {} 第 {} 天的更新，超出本月范围。", name, targetDay);
+                    continue;
+                }
+                sink.update(name, targetDay, shift);
+                logs.count(COUNTER_STANDARD_UPDATES);
+                logs.debug("      - [收集] 更新 {} 第 {} 天为: {}", name, targetDay, shift);
+            }
+        }
+    }
+
+    /**
+     * 在值班表解析线程池中读取并解析一个值班表，缓存键在解析线程中计算。
+     * 值班表的内存在请求已持有的 {@code jobReservation} 之外追加预留，不与其他请求一起排队。
+     */
+    Future<ParsedRoster> submitRosterParse(MultipartFile dutyRosterFile, Callable<String> cacheKey, AhoCorasickMatcher nameMatcher,
+                                           ShiftDictionary shiftDictionary, MemoryAdmissionService.Reservation jobReservation) {
+        return rosterParsingExecutor.submit(() -> parseRoster(dutyRosterFile, cacheKey.call(), nameMatcher, shiftDictionary, jobReservation));
+    }
+
+    private ParsedRoster parseRoster(MultipartFile dutyRosterFile, String cacheKey, AhoCorasickMatcher nameMatcher,
+                                     ShiftDictionary shiftDictionary, MemoryAdmissionService.Reservation jobReservation) throws IOException {
+        Map<ShiftDescriptor, List<String>> cached = rosterParseCache.get(cacheKey);
+        if (cached != null) {
+            return new ParsedRoster(cached, true);
+        }
+        // 在解析线程上计量，分配的内存归属于读取/解析该值班表的线程
+        List<List<String>> dutyRosterData;
+        try (ProcessingMetrics.Stage readStage = ProcessingMetrics.start(ProcessingMetrics.STAGE_ROSTER_READ);
+             MemoryAdmissionService.Reservation ignored = memoryAdmissionService.admitRoster(dutyRosterFile,
+                     "值班表 " + dutyRosterFile.getOriginalFilename(), jobReservation)) {
+            dutyRosterData = excelService.readExcelData(dutyRosterFile);
+            readStage.success();
+        }
+        Map<ShiftDescriptor, List<String>> parsed;
+        try (ProcessingMetrics.Stage parseStage = ProcessingMetrics.start(ProcessingMetrics.STAGE_ROSTER_PARSE)) {
+            parsed = scheduleParsingService.parseStructured(dutyRosterData, nameMatcher, shiftDictionary);
+            parseStage.success();
+        }
+        rosterParseCache.put(cacheKey, parsed);
+        return new ParsedRoster(parsed, false);
+    }
+
+    ParsedRoster awaitParsedRoster(Future<ParsedRoster> parsedRoster, MultipartFile dutyRosterFile) throws IOException {
+        return await(parsedRoster, "解析值班表", dutyRosterFile.getOriginalFilename());
+    }
+
+    /**
+     * 等待线程池中的任务完成，任务抛出的 IOException/RuntimeException 原样抛出。
+     */
+    private static <T> T await(Future<T> future, String action, String subject) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(action + "时被中断: " + subject, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
+            throw new IOException(action + "失败: " + subject, cause);
         }
     }
 }
@@ -0,0 +1,375 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.ProcessingJob;
+import com.example.geminispringboot.model.ProcessingResult;
+import com.example.geminispringboot.model.ProgressEvent;
+import com.example.geminispringboot.util.FileMultipartFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步执行考勤处理任务。
+ * <p>
+ * 任务在有界线程池中执行，同时运行的任务数和排队数量均由 app.jobs.* 配置，队列满时直接拒绝提交。
+ * 上传文件在提交时转存为临时文件，任务结束后删除；成功的结果以任务ID存入 {@link ProcessingResultStore}，
+ * 可以直接用 /download/{jobId} 下载。处理进度通过 SSE 推送给 {@link #subscribe(String)} 的订阅者。
+ * <p>
+ * 事件由单独的线程池发送，处理线程只登记事件，不会被网络慢或已停止读取的浏览器阻塞；
+ * 订阅者来不及接收时只保留最新的进度，结束事件总在最后发送。
+ */
+@Service
+public class ProcessingJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingJobService.class);
+
+    private static final String EVENT_PROGRESS = "progress";
+    private static final String EVENT_COMPLETED = "completed";
+    private static final String EVENT_FAILED = "failed";
+
+    @Autowired
+    private OrchestrationService orchestrationService;
+
+    @Autowired
+    private ProcessingResultStore resultStore;
+
+    @Autowired
+    private AppProperties appProperties;
+
+    private final Map<String, ProcessingJob> jobs = new ConcurrentHashMap<>();
+
+    // 每个任务的 SSE 订阅者，增删在对应任务对象上同步，发送在 eventExecutor 中进行
+    private final Map<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor jobExecutor;
+    private ThreadPoolExecutor eventExecutor;
+    private ScheduledThreadPoolExecutor jobEvictor;
+
+    @PostConstruct
+    void initJobExecutor() {
+        AppProperties.Jobs config = appProperties.getJobs();
+        int concurrency = Math.max(1, config.getConcurrency());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())),
+                new CustomizableThreadFactory("roster-job-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        this.jobExecutor = executor;
+
+        // 每个订阅者同时最多只有一个发送任务，队列长度不超过订阅者数
+        int eventThreads = Math.max(1, config.getEventThreads());
+        ThreadPoolExecutor events = new ThreadPoolExecutor(eventThreads, eventThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("job-events-"));
+        events.allowCoreThreadTimeOut(true);
+        this.eventExecutor = events;
+
+        // 没有新任务提交时也要清理，已结束任务的日志可能很大
+        long interval = Math.max(1, config.getEvictIntervalSeconds());
+        CustomizableThreadFactory evictorThreadFactory = new CustomizableThreadFactory("job-evictor-");
+        evictorThreadFactory.setDaemon(true);
+        ScheduledThreadPoolExecutor evictor = new ScheduledThreadPoolExecutor(1, evictorThreadFactory);
+        evictor.scheduleWithFixedDelay(this::evictExpiredJobsQuietly, interval, interval, TimeUnit.SECONDS);
+        this.jobEvictor = evictor;
+    }
+
+    @PreDestroy
+    void shutdownJobExecutor() {
+        jobEvictor.shutdownNow();
+        jobExecutor.shutdownNow();
+        eventExecutor.shutdownNow();
+    }
+
+    /**
+     * 提交一个处理任务，立即返回。
+     *
+     * @throws RejectedExecutionException 任务队列已满
+     */
+    public ProcessingJob submit(List<MultipartFile> dutyRosterFiles, MultipartFile attendanceFile, List<Integer> days,
+                                boolean detailLogs) throws IOException {
+        return submit(dutyRosterFiles, attendanceFile, days, detailLogs, false);
+    }
+
+    /**
+     * @param allSheets 是否更新考勤表中所有符合考勤表版式的 sheet 页
+     * @throws RejectedExecutionException 任务队列已满
+     */
+    public ProcessingJob submit(List<MultipartFile> dutyRosterFiles, MultipartFile attendanceFile, List<Integer> days,
+                                boolean detailLogs, boolean allSheets) throws IOException {
+        if (dutyRosterFiles.size() != days.size()) {
+            throw new IllegalArgumentException("值班表文件数量与日期数量不匹配。");
+        }
+        evictExpiredJobs();
+
+        List<FileMultipartFile> spooledFiles = new ArrayList<>(dutyRosterFiles.size() + 1);
+        try {
+            FileMultipartFile spooledAttendance = FileMultipartFile.spool(attendanceFile);
+            spooledFiles.add(spooledAttendance);
+            List<MultipartFile> spooledRosters = new ArrayList<>(dutyRosterFiles.size());
+            for (MultipartFile dutyRosterFile : dutyRosterFiles) {
+                FileMultipartFile spooledRoster = FileMultipartFile.spool(dutyRosterFile);
+                spooledFiles.add(spooledRoster);
+                spooledRosters.add(spooledRoster);
+            }
+
+            ProcessingJob job = new ProcessingJob(UUID.randomUUID().toString(), System.currentTimeMillis());
+            jobs.put(job.getJobId(), job);
+            try {
+                jobExecutor.execute(() -> runJob(job, spooledRosters, spooledAttendance, days, detailLogs, allSheets, spooledFiles));
+            } catch (RejectedExecutionException e) {
+                jobs.remove(job.getJobId());
+                throw e;
+            }
+            return job;
+        } catch (IOException | RuntimeException e) {
+            deleteAll(spooledFiles);
+            throw e;
+        }
+    }
+
+    public ProcessingJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 订阅任务进度。订阅时立即补发最近一次进度事件；任务已结束时补发结束事件后关闭连接。
+     *
+     * @return 任务不存在时返回 null
+     */
+    public SseEmitter subscribe(String jobId) {
+        ProcessingJob job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        Subscriber subscriber = new Subscriber(job, newEmitter(TimeUnit.MINUTES.toMillis(appProperties.getJobs().getEventTimeoutMinutes())));
+        ProgressEvent progress;
+        boolean finished;
+        synchronized (job) {
+            progress = job.getProgress();
+            finished = job.isFinished();
+            if (!finished) {
+                List<Subscriber> jobSubscribers = subscribers.computeIfAbsent(jobId, k -> new ArrayList<>());
+                jobSubscribers.add(subscriber);
+                Runnable unsubscribe = () -> {
+                    subscriber.close();
+                    synchronized (job) {
+                        jobSubscribers.remove(subscriber);
+                    }
+                };
+                subscriber.emitter.onCompletion(unsubscribe);
+                subscriber.emitter.onTimeout(unsubscribe);
+            }
+        }
+        if (progress != null) {
+            subscriber.offerProgress(progress);
+        }
+        if (finished) {
+            subscriber.offerFinished();
+        }
+        return subscriber.emitter;
+    }
+
+    SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    private void publishProgress(ProcessingJob job, ProgressEvent event) {
+        List<Subscriber> targets;
+        synchronized (job) {
+            job.updateProgress(event);
+            List<Subscriber> jobSubscribers = subscribers.get(job.getJobId());
+            targets = jobSubscribers == null ? Collections.emptyList() : new ArrayList<>(jobSubscribers);
+        }
+        for (Subscriber subscriber : targets) {
+            subscriber.offerProgress(event);
+        }
+    }
+
+    private void publishFinished(ProcessingJob job) {
+        List<Subscriber> targets;
+        synchronized (job) {
+            List<Subscriber> jobSubscribers = subscribers.remove(job.getJobId());
+            targets = jobSubscribers == null ? Collections.emptyList() : new ArrayList<>(jobSubscribers);
+        }
+        for (Subscriber subscriber : targets) {
+            subscriber.offerFinished();
+        }
+    }
+
+    /**
+     * 一个 SSE 订阅者的待发送事件。同一订阅者的事件由一个发送任务依次发送，保证先进度后结束的顺序；
+     * 发送期间到达的进度只保留最新一条。
+     */
+    private final class Subscriber {
+        final ProcessingJob job;
+        final SseEmitter emitter;
+        private ProgressEvent pendingProgress;
+        private boolean pendingFinished;
+        private boolean sending;
+        private boolean closed;
+
+        Subscriber(ProcessingJob job, SseEmitter emitter) {
+            this.job = job;
+            this.emitter = emitter;
+        }
+
+        void offerProgress(ProgressEvent event) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                pendingProgress = event;
+            }
+            schedule();
+        }
+
+        void offerFinished() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                pendingFinished = true;
+            }
+            schedule();
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+            try {
+                eventExecutor.execute(this::send);
+            } catch (RejectedExecutionException e) {
+                // 服务正在关闭
+                close();
+                emitter.complete();
+            }
+        }
+
+        private void send() {
+            while (true) {
+                ProgressEvent progress;
+                boolean finished;
+                synchronized (this) {
+                    progress = pendingProgress;
+                    finished = pendingFinished;
+                    pendingProgress = null;
+                    pendingFinished = false;
+                    if (closed || (progress == null && !finished)) {
+                        sending = false;
+                        return;
+                    }
+                }
+                try {
+                    if (progress != null) {
+                        emitter.send(SseEmitter.event().name(EVENT_PROGRESS).data(progress));
+                    }
+                    if (finished) {
+                        close();
+                        emitter.send(finishedEvent(job));
+                        emitter.complete();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // 客户端已断开，不影响任务本身
+                    close();
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder finishedEvent(ProcessingJob job) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("jobId", job.getJobId());
+        data.put("status", job.getStatus());
+        if (job.getStatus() == ProcessingJob.Status.FAILED) {
+            data.put("error", job.getError());
+        } else {
+            data.put("transactionId", job.getJobId());
+        }
+        return SseEmitter.event().name(job.getStatus() == ProcessingJob.Status.FAILED ? EVENT_FAILED : EVENT_COMPLETED).data(data);
+    }
+
+    private void runJob(ProcessingJob job, List<MultipartFile> dutyRosterFiles, MultipartFile attendanceFile,
+                        List<Integer> days, boolean detailLogs, boolean allSheets, List<FileMultipartFile> spooledFiles) {
+        job.markRunning(System.currentTimeMillis());
+        try {
+            ProcessingResult result = orchestrationService.processFiles(dutyRosterFiles, attendanceFile, days, detailLogs, allSheets,
+                    event -> publishProgress(job, event));
+            resultStore.put(job.getJobId(), result);
+            job.markSucceeded(result.getLogs(), System.currentTimeMillis());
+        } catch (Exception e) {
+            logger.error("异步处理任务 {} 失败", job.getJobId(), e);
+            job.markFailed("处理失败: " + e.getMessage(), System.currentTimeMillis());
+        } finally {
+            deleteAll(spooledFiles);
+            publishFinished(job);
+        }
+    }
+
+    /**
+     * 清理超过保留时间的已结束任务，以及它们未被下载的结果。
+     *
+     * @return 清理的任务数
+     */
+    int evictExpiredJobs() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(appProperties.getJobs().getRetentionMinutes());
+        int evicted = 0;
+        for (Iterator<ProcessingJob> it = jobs.values().iterator(); it.hasNext(); ) {
+            ProcessingJob job = it.next();
+            if (job.isFinished() && job.getFinishedAt() < expireBefore) {
+                it.remove();
+                resultStore.remove(job.getJobId());
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private void evictExpiredJobsQuietly() {
+        try {
+            int evicted = evictExpiredJobs();
+            if (evicted > 0) {
+                logger.debug("定期清理删除 {} 个过期的任务", evicted);
+            }
+        } catch (RuntimeException e) {
+            // 异常会取消后续的定期执行
+            logger.warn("清理过期的任务失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private static void deleteAll(List<FileMultipartFile> files) {
+        for (FileMultipartFile file : files) {
+            file.delete();
+        }
+    }
+}
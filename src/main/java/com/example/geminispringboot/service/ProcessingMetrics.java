@@ -0,0 +1,126 @@
+package com.example.geminispringboot.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 考勤处理各阶段的 Micrometer 指标。
+ * <p>
+ * 每个阶段记录耗时 ({@value #STAGE_TIMER}) 和该阶段在当前线程上分配的字节数 ({@value #STAGE_ALLOCATED})，
+ * 以 {@code stage} 标签区分，{@code outcome} 标签区分阶段成功完成 (success) 还是抛出了异常 (failure)；
+ * 写入考勤表时另外记录修改的单元格数 ({@value #CELLS_TOUCHED})。
+ * 指标注册到 {@link Metrics#globalRegistry}，Spring Boot 会把 Actuator 的注册表加入其中，
+ * 手工构造的服务 (测试、基准测试、批处理) 也无需额外注入。
+ */
+final class ProcessingMetrics {
+
+    static final String STAGE_TIMER = "attendance.processing.stage";
+    static final String STAGE_ALLOCATED = "attendance.processing.stage.allocated";
+    static final String CELLS_TOUCHED = "attendance.processing.cells.touched";
+
+    static final String STAGE_LOAD = "load";
+    static final String STAGE_EXTRACT = "extract";
+    static final String STAGE_ROSTER_READ = "roster-read";
+    static final String STAGE_ROSTER_PARSE = "roster-parse";
+    static final String STAGE_REST_FILL = "rest-fill";
+    static final String STAGE_BATCH_UPDATE = "batch-update";
+    static final String STAGE_FORMULA_EVALUATION = "formula-evaluation";
+    static final String STAGE_WRITE = "write";
+
+    static final String OUTCOME_SUCCESS = "success";
+    static final String OUTCOME_FAILURE = "failure";
+
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+
+    private ProcessingMetrics() {
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+            if (allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()) {
+                return allocationBean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 开始计量一个阶段，用 try-with-resources 包住阶段的代码，阶段正常结束前调用 {@link Stage#success()}：
+     * <pre>
+     * try (ProcessingMetrics.Stage stage = ProcessingMetrics.start(STAGE_LOAD)) {
+     *     ...
+     *     stage.success();
+     * }
+     * </pre>
+     * 须在开始的线程上关闭。
+     */
+    static Stage start(String stage) {
+        return new Stage(stage);
+    }
+
+    static void recordCellsTouched(int cells) {
+        DistributionSummary.builder(CELLS_TOUCHED)
+                .description("每次写入考勤表修改的单元格数")
+                .baseUnit("cells")
+                .register(Metrics.globalRegistry)
+                .record(cells);
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        return ALLOCATION_BEAN == null ? -1 : ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static final class Stage implements AutoCloseable {
+        private final String stage;
+        private final long startNanos;
+        private final long startAllocatedBytes;
+        private boolean succeeded;
+        private boolean closed;
+
+        private Stage(String stage) {
+            this.stage = stage;
+            this.startAllocatedBytes = currentThreadAllocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * 标记阶段成功完成；未标记就关闭的阶段 (抛出异常) 以 failure 记录。
+         */
+        void success() {
+            this.succeeded = true;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            long elapsedNanos = System.nanoTime() - startNanos;
+            String outcome = succeeded ? OUTCOME_SUCCESS : OUTCOME_FAILURE;
+            Timer.builder(STAGE_TIMER)
+                    .description("考勤处理各阶段耗时")
+                    .tag("stage", stage)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(Metrics.globalRegistry)
+                    .record(elapsedNanos, TimeUnit.NANOSECONDS);
+            if (startAllocatedBytes >= 0) {
+                DistributionSummary.builder(STAGE_ALLOCATED)
+                        .description("考勤处理各阶段在当前线程上分配的内存")
+                        .baseUnit("bytes")
+                        .tag("stage", stage)
+                        .tag("outcome", outcome)
+                        .register(Metrics.globalRegistry)
+                        .record(currentThreadAllocatedBytes() - startAllocatedBytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.ProcessingResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保存处理完成、等待下载的考勤表。同步接口和异步任务共用，下载地址中的 transactionId 即存储键。
+ * <p>
+ * 结果按最近访问顺序排列，超过 app.results.ttl-minutes 未下载的结果过期删除，
+ * 除访问时顺带清理外，每隔 app.results.sweep-interval-seconds 定期清理一次；
+ * 内存或磁盘占用超过上限时，从最久未访问的结果开始淘汰。
+ * 超过 app.results.spill-threshold-bytes 的文件内容写入临时文件，已经写在文件中的结果直接接管该文件。
+ */
+@Component
+public class ProcessingResultStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingResultStore.class);
+
+    @Autowired
+    private AppProperties appProperties;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long memoryBytes;
+    private long diskBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    // 定期清理过期结果，没有请求时临时文件也按时删除
+    private ScheduledThreadPoolExecutor sweeper;
+
+    @PostConstruct
+    void initSweeper() {
+        long interval = Math.max(1, appProperties.getResults().getSweepIntervalSeconds());
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("result-sweeper-");
+        threadFactory.setDaemon(true);
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+        executor.scheduleWithFixedDelay(this::sweepQuietly, interval, interval, TimeUnit.SECONDS);
+        this.sweeper = executor;
+    }
+
+    private static final class Entry {
+        final List<String> logs;
+        final String originalFilename;
+        final byte[] fileContent;
+        final Path spillFile;
+        final long contentLength;
+        final long memorySize;
+        final long createdAt;
+
+        Entry(List<String> logs, String originalFilename, byte[] fileContent, Path spillFile, long contentLength, long createdAt) {
+            this.logs = logs;
+            this.originalFilename = originalFilename;
+            this.fileContent = fileContent;
+            this.spillFile = spillFile;
+            this.contentLength = contentLength;
+            this.memorySize = estimateLogSize(logs) + (fileContent != null ? fileContent.length : 0);
+            this.createdAt = createdAt;
+        }
+
+        long diskSize() {
+            return spillFile != null ? contentLength : 0;
+        }
+    }
+
+    /**
+     * 以新生成的 transactionId 保存结果。
+     *
+     * @return transactionId
+     */
+    public String put(ProcessingResult result) {
+        String transactionId = UUID.randomUUID().toString();
+        put(transactionId, result);
+        return transactionId;
+    }
+
+    public void put(String transactionId, ProcessingResult result) {
+        AppProperties.Results config = appProperties.getResults();
+        Entry entry;
+        if (result.isFileBacked()) {
+            // 已经写在本地文件中的结果直接接管该文件
+            entry = new Entry(result.getLogs(), result.getOriginalFilename(), null, result.getFile(),
+                    result.getContentLength(), System.currentTimeMillis());
+        } else {
+            byte[] content = result.getFileContent();
+            Path spillFile = null;
+            if (content.length >= config.getSpillThresholdBytes() || content.length > config.getMaxMemoryBytes()) {
+                try {
+                    spillFile = spill(content);
+                } catch (IOException e) {
+                    logger.warn("处理结果写入临时文件失败，保留在内存中: {}", e.getMessage());
+                }
+            }
+            entry = new Entry(result.getLogs(), result.getOriginalFilename(),
+                    spillFile == null ? content : null, spillFile, content.length, System.currentTimeMillis());
+        }
+
+        List<Entry> removed = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(transactionId, entry);
+            if (previous != null) {
+                release(previous);
+                removed.add(previous);
+            }
+            memoryBytes += entry.memorySize;
+            diskBytes += entry.diskSize();
+            expire(removed, System.currentTimeMillis());
+            evictOverBudget(removed, transactionId, config);
+        }
+        deleteSpillFiles(removed);
+    }
+
+    /**
+     * @return 对应的结果，不存在或已过期时返回 null
+     */
+    public ProcessingResult get(String transactionId) {
+        Entry entry;
+        List<Entry> removed = new ArrayList<>();
+        synchronized (this) {
+            expire(removed, System.currentTimeMillis());
+            entry = entries.get(transactionId);
+            if (entry == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+        }
+        deleteSpillFiles(removed);
+        return entry == null ? null : toResult(entry);
+    }
+
+    /**
+     * 取出并删除结果，用于一次性下载。取出后淘汰、过期和并发的下载都不会再访问该结果，
+     * 文件形式的结果由调用方在使用完毕后删除 {@link ProcessingResult#getFile()}。
+     *
+     * @return 对应的结果，不存在、已过期或已被取走时返回 null
+     */
+    public ProcessingResult take(String transactionId) {
+        Entry entry;
+        List<Entry> removed = new ArrayList<>();
+        synchronized (this) {
+            expire(removed, System.currentTimeMillis());
+            entry = entries.remove(transactionId);
+            if (entry == null) {
+                misses++;
+            } else {
+                release(entry);
+                hits++;
+            }
+        }
+        deleteSpillFiles(removed);
+        return entry == null ? null : toResult(entry);
+    }
+
+    private static ProcessingResult toResult(Entry entry) {
+        if (entry.spillFile != null) {
+            return new ProcessingResult(entry.logs, entry.spillFile, entry.contentLength, entry.originalFilename);
+        }
+        return new ProcessingResult(entry.logs, entry.fileContent, entry.originalFilename);
+    }
+
+    /**
+     * @return 结果存在并已删除时返回 true
+     */
+    public boolean remove(String transactionId) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.remove(transactionId);
+            if (entry != null) {
+                release(entry);
+            }
+        }
+        if (entry == null) {
+            return false;
+        }
+        deleteSpillFiles(Collections.singletonList(entry));
+        return true;
+    }
+
+    /**
+     * @return 命中、未命中、淘汰次数以及当前占用的字节数
+     */
+    public Map<String, Object> getStats() {
+        List<Entry> removed = new ArrayList<>();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            expire(removed, System.currentTimeMillis());
+            stats.put("entries", entries.size());
+            stats.put("hits", hits);
+            stats.put("misses", misses);
+            stats.put("evictions", evictions);
+            stats.put("expirations", expirations);
+            stats.put("memoryBytes", memoryBytes);
+            stats.put("diskBytes", diskBytes);
+        }
+        stats.put("maxMemoryBytes", appProperties.getResults().getMaxMemoryBytes());
+        stats.put("maxDiskBytes", appProperties.getResults().getMaxDiskBytes());
+        deleteSpillFiles(removed);
+        return stats;
+    }
+
+    /**
+     * 删除所有过期的结果及其临时文件。
+     *
+     * @return 本次删除的结果数
+     */
+    public int sweep() {
+        List<Entry> removed = new ArrayList<>();
+        synchronized (this) {
+            expire(removed, System.currentTimeMillis());
+        }
+        deleteSpillFiles(removed);
+        if (!removed.isEmpty()) {
+            logger.debug("定期清理删除 {} 个过期的处理结果", removed.size());
+        }
+        return removed.size();
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            // 异常会取消后续的定期执行
+            logger.warn("清理过期的处理结果失败: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    void clear() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        List<Entry> removed;
+        synchronized (this) {
+            removed = new ArrayList<>(entries.values());
+            entries.clear();
+            memoryBytes = 0;
+            diskBytes = 0;
+        }
+        deleteSpillFiles(removed);
+    }
+
+    private void expire(List<Entry> removed, long now) {
+        long ttlMillis = TimeUnit.MINUTES.toMillis(appProperties.getResults().getTtlMinutes());
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (now - entry.createdAt >= ttlMillis) {
+                it.remove();
+                release(entry);
+                removed.add(entry);
+                expirations++;
+            }
+        }
+    }
+
+    private void evictOverBudget(List<Entry> removed, String keep, AppProperties.Results config) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((memoryBytes > config.getMaxMemoryBytes() || diskBytes > config.getMaxDiskBytes()) && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            it.remove();
+            release(eldest.getValue());
+            removed.add(eldest.getValue());
+            evictions++;
+            logger.info("处理结果 {} 因占用超过上限被淘汰", eldest.getKey());
+        }
+    }
+
+    private void release(Entry entry) {
+        memoryBytes -= entry.memorySize;
+        diskBytes -= entry.diskSize();
+    }
+
+    /**
+     * 在 app.results.spill-dir 中创建一个空的结果文件，交给 {@link #put(String, ProcessingResult)} 后由本存储负责删除。
+     */
+    public Path createResultFile() throws IOException {
+        String spillDir = appProperties.getResults().getSpillDir();
+        if (StringUtils.hasText(spillDir)) {
+            Path dir = Paths.get(spillDir);
+            Files.createDirectories(dir);
+            return Files.createTempFile(dir, "result_", ".xlsx");
+        }
+        return Files.createTempFile("result_", ".xlsx");
+    }
+
+    private Path spill(byte[] content) throws IOException {
+        Path file = createResultFile();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(content);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    private static void deleteSpillFiles(List<Entry> removed) {
+        for (Entry entry : removed) {
+            if (entry.spillFile != null) {
+                try {
+                    Files.deleteIfExists(entry.spillFile);
+                } catch (IOException e) {
+                    File file = entry.spillFile.toFile();
+                    file.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    private static long estimateLogSize(List<String> logs) {
+        long size = 0;
+        if (logs != null) {
+            for (String log : logs) {
+                // 字符数组 + String 对象头的粗略估算
+                size += 2L * log.length() + 40;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.model.ProgressEvent;
+
+/**
+ * 接收 {@link OrchestrationService} 处理进度的回调，在处理线程中同步调用，实现应尽快返回。
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    ProgressListener NONE = event -> {
+    };
+
+    void onProgress(ProgressEvent event);
+}
@@ -0,0 +1,29 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.model.ProgressEvent;
+
+/**
+ * 记录各阶段的开始时间，在阶段完成时计算耗时并通知 {@link ProgressListener}。
+ */
+class ProgressTracker {
+
+    private final ProgressListener listener;
+    private final long startedAt;
+    private long stageStartedAt;
+
+    ProgressTracker(ProgressListener listener) {
+        this.listener = listener;
+        this.startedAt = System.currentTimeMillis();
+        this.stageStartedAt = startedAt;
+    }
+
+    /**
+     * 标记当前阶段完成，下一阶段从现在开始计时。
+     */
+    void complete(String stage, String message, int percent) {
+        long now = System.currentTimeMillis();
+        ProgressEvent event = new ProgressEvent(stage, message, percent, now - stageStartedAt, now - startedAt);
+        stageStartedAt = now;
+        listener.onProgress(event);
+    }
+}
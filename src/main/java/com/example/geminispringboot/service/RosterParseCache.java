@@ -0,0 +1,226 @@
+package com.example.geminispringboot.service;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.ShiftDescriptor;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已解析值班表的缓存。
+ * <p>
+ * 键由值班表文件内容的 SHA-256 与解析上下文(解析器版本、员工姓名列表和班次映射表)的 SHA-256 组成，
+ * 内容和上下文都不变的值班表重新上传时直接复用上次的解析结果，不再读取 Excel。
+ * 内存中按最近使用顺序保留 app.roster.cache-max-entries 个结果；
+ * 配置了 app.roster.cache-disk-dir 时结果同时以 JSON 写入磁盘，重启后仍可命中。
+ */
+@Component
+public class RosterParseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RosterParseCache.class);
+
+    /**
+     * 解析器版本。修改 {@link ScheduleParsingService} 的解析规则或 {@link ShiftDescriptor} 的字段时加一，
+     * 使磁盘上按旧规则解析的结果在重启后不再命中。
+     */
+    static final int PARSER_VERSION = 1;
+
+    private static final TypeReference<List<CachedShift>> CACHED_SHIFTS = new TypeReference<List<CachedShift>>() {
+    };
+
+    @Autowired
+    private AppProperties appProperties;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final LinkedHashMap<String, Map<ShiftDescriptor, List<String>>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hits;
+    private long misses;
+
+    /**
+     * 磁盘缓存中的一个班次，按解析结果的迭代顺序保存。
+     */
+    public static class CachedShift {
+        public String key;
+        public String alias;
+        public List<String> names;
+    }
+
+    /**
+     * 计算解析上下文的摘要，同一批值班表只需计算一次。
+     */
+    public String contextKey(List<String> employeeNames, Map<String, String> shiftMappings) {
+        return contextKey(PARSER_VERSION, employeeNames, shiftMappings);
+    }
+
+    String contextKey(int parserVersion, List<String> employeeNames, Map<String, String> shiftMappings) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("parser-v").append(parserVersion).append('\u0000');
+        for (String name : employeeNames) {
+            sb.append(name).append('\n');
+        }
+        sb.append('\u0000');
+        // 映射表的迭代顺序决定关键字的匹配优先级，按原顺序参与摘要
+        for (Map.Entry<String, String> mapping : shiftMappings.entrySet()) {
+            sb.append(mapping.getKey()).append('=').append(mapping.getValue()).append('\n');
+        }
+        return DigestUtil.sha256Hex(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 计算值班表的缓存键: 文件内容摘要 + 上下文摘要。
+     */
+    public String key(MultipartFile dutyRosterFile, String contextKey) throws IOException {
+        try (InputStream in = dutyRosterFile.getInputStream()) {
+            return DigestUtil.sha256Hex(in) + "-" + contextKey;
+        }
+    }
+
+    /**
+     * @return 缓存的解析结果，未命中时返回 null
+     */
+    public Map<ShiftDescriptor, List<String>> get(String key) {
+        Map<ShiftDescriptor, List<String>> cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        if (cached == null) {
+            cached = readFromDisk(key);
+            if (cached != null) {
+                putInMemory(key, cached);
+            }
+        }
+        synchronized (this) {
+            if (cached == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+        }
+        return cached != null ? copy(cached) : null;
+    }
+
+    public void put(String key, Map<ShiftDescriptor, List<String>> parsed) {
+        Map<ShiftDescriptor, List<String>> snapshot = copy(parsed);
+        putInMemory(key, snapshot);
+        writeToDisk(key, snapshot);
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        return stats;
+    }
+
+    private synchronized void putInMemory(String key, Map<ShiftDescriptor, List<String>> parsed) {
+        entries.put(key, parsed);
+        int maxEntries = appProperties.getRoster().getCacheMaxEntries();
+        while (entries.size() > maxEntries) {
+            String eldest = entries.keySet().iterator().next();
+            entries.remove(eldest);
+        }
+    }
+
+    private Map<ShiftDescriptor, List<String>> readFromDisk(String key) {
+        Path file = diskFile(key);
+        if (file == null || !Files.exists(file)) {
+            return null;
+        }
+        try {
+            List<CachedShift> shifts = objectMapper.readValue(file.toFile(), CACHED_SHIFTS);
+            Map<ShiftDescriptor, List<String>> parsed = new LinkedHashMap<>();
+            for (CachedShift shift : shifts) {
+                parsed.put(new ShiftDescriptor(shift.key, shift.alias), shift.names);
+            }
+            return parsed;
+        } catch (IOException e) {
+            logger.warn("读取值班表解析缓存 {} 失败: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Map<ShiftDescriptor, List<String>> parsed) {
+        Path file = diskFile(key);
+        if (file == null) {
+            return;
+        }
+        List<CachedShift> shifts = new ArrayList<>(parsed.size());
+        for (Map.Entry<ShiftDescriptor, List<String>> entry : parsed.entrySet()) {
+            CachedShift shift = new CachedShift();
+            shift.key = entry.getKey().getKey();
+            shift.alias = entry.getKey().getAlias();
+            shift.names = entry.getValue();
+            shifts.add(shift);
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            // 先写临时文件再改名，避免并发读取到写了一半的文件
+            Path tempFile = Files.createTempFile(file.getParent(), "roster_", ".tmp");
+            objectMapper.writeValue(tempFile.toFile(), shifts);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            trimDisk(file.getParent());
+        } catch (IOException e) {
+            logger.warn("写入值班表解析缓存 {} 失败: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 磁盘上的缓存超过 app.roster.cache-disk-max-entries 个时，删除最早写入的文件。
+     */
+    private void trimDisk(Path dir) {
+        File[] files = dir.toFile().listFiles((d, name) -> name.endsWith(".json"));
+        int maxEntries = appProperties.getRoster().getCacheDiskMaxEntries();
+        if (files == null || files.length <= maxEntries) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length - maxEntries; i++) {
+            if (!files[i].delete()) {
+                logger.debug("删除过期的值班表解析缓存 {} 失败", files[i]);
+            }
+        }
+    }
+
+    private Path diskFile(String key) {
+        String diskDir = appProperties.getRoster().getCacheDiskDir();
+        if (!StringUtils.hasText(diskDir)) {
+            return null;
+        }
+        return Paths.get(diskDir).resolve(key + ".json");
+    }
+
+    /**
+     * 缓存中保存和返回的都是副本，调用方修改结果不会影响缓存。迭代顺序与原结果一致。
+     */
+    private static Map<ShiftDescriptor, List<String>> copy(Map<ShiftDescriptor, List<String>> parsed) {
+        Map<ShiftDescriptor, List<String>> copy = new LinkedHashMap<>();
+        for (Map.Entry<ShiftDescriptor, List<String>> entry : parsed.entrySet()) {
+            copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.model.AttendanceMatrix;
+
+import java.util.List;
+
+/**
+ * 接收从一个值班表中收集到的考勤更新。完整处理直接写入 {@link AttendanceMatrix}，
+ * 增量处理则按日期记录下来以便之后重放。
+ */
+interface RosterUpdateSink {
+
+    /**
+     * 该日期有值班表内容，当天未排班的员工参与"休"假补全。
+     */
+    void rosterDay(int day);
+
+    void rostered(int day, String name);
+
+    /**
+     * 一条标准更新，同一单元格以最后一次为准。
+     */
+    void update(String name, int targetDay, String shift);
+
+    /**
+     * 写入一个矩阵，不在该矩阵姓名列表中的员工被忽略。
+     */
+    static RosterUpdateSink into(AttendanceMatrix matrix) {
+        return new RosterUpdateSink() {
+            @Override
+            public void rosterDay(int day) {
+                matrix.markRosterDay(day);
+            }
+
+            @Override
+            public void rostered(int day, String name) {
+                int employeeId = matrix.idOf(name);
+                if (employeeId != -1) {
+                    matrix.markRostered(day, employeeId);
+                }
+            }
+
+            @Override
+            public void update(String name, int targetDay, String shift) {
+                int employeeId = matrix.idOf(name);
+                if (employeeId != -1) {
+                    matrix.setShift(employeeId, targetDay, shift);
+                }
+            }
+        };
+    }
+
+    /**
+     * 同时写入多个矩阵(每个 sheet 页一个)，每条更新只进入包含该员工的矩阵。
+     */
+    static RosterUpdateSink into(List<AttendanceMatrix> matrices) {
+        if (matrices.size() == 1) {
+            return into(matrices.get(0));
+        }
+        RosterUpdateSink[] sinks = matrices.stream().map(RosterUpdateSink::into).toArray(RosterUpdateSink[]::new);
+        return new RosterUpdateSink() {
+            @Override
+            public void rosterDay(int day) {
+                for (RosterUpdateSink sink : sinks) {
+                    sink.rosterDay(day);
+                }
+            }
+
+            @Override
+            public void rostered(int day, String name) {
+                for (RosterUpdateSink sink : sinks) {
+                    sink.rostered(day, name);
+                }
+            }
+
+            @Override
+            public void update(String name, int targetDay, String shift) {
+                for (RosterUpdateSink sink : sinks) {
+                    sink.update(name, targetDay, shift);
+                }
+            }
+        };
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.geminispringboot.service;
 
+import com.example.geminispringboot.model.ShiftDescriptor;
+import com.example.geminispringboot.util.AhoCorasickMatcher;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -7,9 +9,51 @@ import java.util.*;
 @Service
 public class ScheduleParsingService {
 
+    // 最近一次编译的班次字典，映射表不变时直接复用
+    private volatile ShiftDictionary cachedShiftDictionary;
+
     public Map<String, List<String>> parse(List<List<String>> data, List<String> allowedNames, Map<String, String> shiftMappings) {
+        return parse(data, compileNameMatcher(allowedNames), shiftMappings);
+    }
+
+    /**
+     * 将姓名列表编译为多模式匹配器。同一批值班表共用一个姓名列表时，应只编译一次并传给
+     * {@link #parse(List, AhoCorasickMatcher, Map)}。
+     */
+    public AhoCorasickMatcher compileNameMatcher(List<String> allowedNames) {
+        return AhoCorasickMatcher.compile(allowedNames);
+    }
+
+    /**
+     * 将班次映射表编译为前缀树字典。对同一个映射表对象重复调用时返回缓存的字典。
+     */
+    public ShiftDictionary compileShiftDictionary(Map<String, String> shiftMappings) {
+        ShiftDictionary dictionary = cachedShiftDictionary;
+        if (dictionary == null || dictionary.getMappings() != shiftMappings) {
+            dictionary = ShiftDictionary.compile(shiftMappings);
+            cachedShiftDictionary = dictionary;
+        }
+        return dictionary;
+    }
+
+    /**
+     * 解析值班表数据，使用预编译的姓名匹配器在每个单元格中一次扫描找出全部姓名。
+     * 结果以 "关键字(简写)" 为键，供需要原始格式的调用方使用。
+     */
+    public Map<String, List<String>> parse(List<List<String>> data, AhoCorasickMatcher nameMatcher, Map<String, String> shiftMappings) {
+        Map<ShiftDescriptor, List<String>> structured = parseStructured(data, nameMatcher, compileShiftDictionary(shiftMappings));
         Map<String, List<String>> results = new HashMap<>();
-        Set<String> validShiftKeys = shiftMappings.keySet();
+        for (Map.Entry<ShiftDescriptor, List<String>> entry : structured.entrySet()) {
+            results.put(entry.getKey().getResultKey(), entry.getValue());
+        }
+        return results;
+    }
+
+    /**
+     * 解析值班表数据，返回以班次描述为键的结构化结果，调用方可直接读取班次简写，无需再从字符串键中解析。
+     */
+    public Map<ShiftDescriptor, List<String>> parseStructured(List<List<String>> data, AhoCorasickMatcher nameMatcher, ShiftDictionary shiftDictionary) {
+        Map<ShiftDescriptor, List<String>> results = new HashMap<>();
 
         for (List<String> row : data) {
             for (int i = 0; i < row.size(); i++) {
@@ -23,19 +67,10 @@ public class ScheduleParsingService {
                 }
 
                 // 1. 检查单元格是否以任何一个班次关键字开头
-                String detectedShift = null;
-                for (String shiftKey : validShiftKeys) {
-                    if (trimmedCell.startsWith(shiftKey)) {
-                        detectedShift = shiftKey;
-                        break;
-                    }
-                }
+                ShiftDescriptor detectedShift = shiftDictionary.match(trimmedCell);
 
                 if (detectedShift != null) {
-                    String alias = shiftMappings.get(detectedShift);
-                    String newKey = String.format("%s(%s)", detectedShift, alias != null ? alias : "");
-
-                    results.putIfAbsent(newKey, new ArrayList<>());
+                    List<String> shiftNames = results.computeIfAbsent(detectedShift, k -> new ArrayList<>());
 
                     // 2. 如果是班次，则检查该行后续的所有单元格
                     for (int j = i + 1; j < row.size(); j++) {
@@ -49,23 +84,12 @@ public class ScheduleParsingService {
                         }
 
                         // 检查后续单元格是否是另一个班次，如果是则停止收集
-                        boolean isAnotherShift = false;
-                        for (String shiftKey : validShiftKeys) {
-                            if (trimmedSubsequent.startsWith(shiftKey)) {
-                                isAnotherShift = true;
-                                break;
-                            }
-                        }
-                        if (isAnotherShift) {
+                        if (shiftDictionary.match(trimmedSubsequent) != null) {
                             break;
                         }
 
                         // 3. 检查单元格内容是否包含任何允许的人名
-                        for (String name : allowedNames) {
-                            if (trimmedSubsequent.contains(name)) {
-                                results.get(newKey).add(name);
-                            }
-                        }
+                        shiftNames.addAll(nameMatcher.findAll(trimmedSubsequent));
                     }
                 }
             }
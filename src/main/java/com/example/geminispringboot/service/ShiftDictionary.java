@@ -0,0 +1,74 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.model.ShiftDescriptor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 编译后的班次字典：以班次关键字构建的前缀树。
+ * <p>
+ * 判断单元格是否以某个班次关键字开头时，只需沿前缀树走一遍单元格的前几个字符，
+ * 不再对每个关键字逐个调用 {@code startsWith}。
+ * 多个关键字同时是前缀时，返回映射表遍历顺序中靠前的那个，与原逐个比较的结果一致。
+ */
+public final class ShiftDictionary {
+
+    private final Map<String, String> mappings;
+    private final Node root = new Node();
+
+    private ShiftDictionary(Map<String, String> mappings) {
+        this.mappings = mappings;
+        int rank = 0;
+        for (Map.Entry<String, String> entry : mappings.entrySet()) {
+            Node node = root;
+            String key = entry.getKey();
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+            }
+            if (node.descriptor == null) {
+                node.descriptor = new ShiftDescriptor(key, entry.getValue());
+                node.rank = rank;
+            }
+            rank++;
+        }
+    }
+
+    /**
+     * 将班次映射表(关键字 → 简写)编译为字典。
+     */
+    public static ShiftDictionary compile(Map<String, String> mappings) {
+        return new ShiftDictionary(mappings);
+    }
+
+    Map<String, String> getMappings() {
+        return mappings;
+    }
+
+    /**
+     * @param text 已去除首尾空白的单元格内容
+     * @return 单元格开头匹配到的班次，不是班次时返回 null
+     */
+    public ShiftDescriptor match(String text) {
+        ShiftDescriptor best = root.descriptor;
+        int bestRank = root.descriptor != null ? root.rank : Integer.MAX_VALUE;
+        Node node = root;
+        for (int i = 0; i < text.length(); i++) {
+            node = node.children.get(text.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.descriptor != null && node.rank < bestRank) {
+                best = node.descriptor;
+                bestRank = node.rank;
+            }
+        }
+        return best;
+    }
+
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<>(4);
+        ShiftDescriptor descriptor;
+        int rank;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.geminispringboot.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.dao.service.UserDaoService;
+import com.example.geminispringboot.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按用户名缓存的登录用户，登录和登录失败处理共用，避免每次登录都查询数据库。
+ * <p>
+ * 已存在的用户缓存 app.users.cache-ttl-seconds，不存在的用户名也缓存
+ * app.users.cache-negative-ttl-seconds，按最近使用顺序最多保留 app.users.cache-max-entries 个。
+ * 修改密码、注册等写操作须调用 {@link #invalidate(String)} 使缓存立即失效。
+ */
+@Component
+public class UserCache {
+
+    @Autowired
+    private UserDaoService userDaoService;
+
+    @Autowired
+    private AppProperties appProperties;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // 每次失效加一；查询期间发生过失效时不缓存查询结果，避免写回修改前的用户
+    private long generation;
+    private long hits;
+    private long misses;
+
+    private static final class Entry {
+        final User user;
+        final long expiresAtNanos;
+
+        Entry(User user, long expiresAtNanos) {
+            this.user = user;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    /**
+     * @return 用户的副本，用户名不存在时返回 null
+     */
+    public User get(String username) {
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(username);
+            if (entry != null && System.nanoTime() - entry.expiresAtNanos < 0) {
+                hits++;
+                return copy(entry.user);
+            }
+            if (entry != null) {
+                entries.remove(username);
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+
+        User user = userDaoService.getOne(new QueryWrapper<User>().eq("username", username));
+
+        AppProperties.Users config = appProperties.getUsers();
+        long ttlSeconds = user != null ? config.getCacheTtlSeconds() : config.getCacheNegativeTtlSeconds();
+        if (ttlSeconds > 0) {
+            synchronized (this) {
+                if (generation == loadGeneration) {
+                    entries.put(username, new Entry(copy(user), System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds)));
+                    while (entries.size() > config.getCacheMaxEntries()) {
+                        String eldest = entries.keySet().iterator().next();
+                        entries.remove(eldest);
+                    }
+                }
+            }
+        }
+        return user;
+    }
+
+    public synchronized void invalidate(String username) {
+        generation++;
+        entries.remove(username);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        return stats;
+    }
+
+    // 缓存中的用户对调用方不可见，调用方修改返回值不影响缓存
+    private static User copy(User user) {
+        if (user == null) {
+            return null;
+        }
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setPassword(user.getPassword());
+        copy.setRoles(user.getRoles());
+        return copy;
+    }
+}
@@ -1,7 +1,5 @@
 package com.example.geminispringboot.service;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
-import com.example.geminispringboot.dao.service.UserDaoService;
 import com.example.geminispringboot.model.User;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -17,12 +15,13 @@ import java.util.stream.Collectors;
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
 
+    // 登录时按用户名查询的结果走缓存，登录高峰不必每次都访问数据库
     @Autowired
-    private UserDaoService userDaoService;
+    private UserCache userCache;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userDaoService.getOne(new QueryWrapper<User>().eq("username", username));
+        User user = userCache.get(username);
 
         if (user == null) {
             throw new UsernameNotFoundException("User not found with username: " + username);
@@ -0,0 +1,180 @@
+package com.example.geminispringboot.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick 多模式串匹配器。
+ * <p>
+ * 由一组模式串(如员工姓名列表)一次性编译成自动机，之后对任意文本只需扫描一遍，
+ * 即可找出文本中包含的全部模式串，代价与模式串数量无关。
+ * 编译完成后对象不可变，可在多个线程、多个值班表之间共享。
+ */
+public final class AhoCorasickMatcher {
+
+    private static final int ROOT = 0;
+
+    /** 原始模式串列表，结果按此顺序返回(含重复项) */
+    private final List<String> patterns;
+    /** 去重后的模式串编号 → 它在原始列表中出现的全部位置 */
+    private final int[][] positionsByPatternId;
+    private final int[] emptyPatternIds;
+
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private int[] failure;
+    /** 每个状态上结束的模式串编号(含通过失败链接继承的) */
+    private int[][] outputs;
+
+    private AhoCorasickMatcher(List<String> patterns) {
+        this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+
+        Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < patterns.size(); i++) {
+            positions.computeIfAbsent(patterns.get(i), k -> new ArrayList<>()).add(i);
+        }
+        this.positionsByPatternId = new int[positions.size()][];
+
+        transitions.add(new HashMap<>());
+        List<List<Integer>> terminal = new ArrayList<>();
+        terminal.add(new ArrayList<>());
+        List<Integer> emptyIds = new ArrayList<>();
+
+        int patternId = 0;
+        for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+            positionsByPatternId[patternId] = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+            String pattern = entry.getKey();
+            if (pattern.isEmpty()) {
+                // 与 String.contains("") 一致，空串匹配任意文本
+                emptyIds.add(patternId);
+            } else {
+                int state = ROOT;
+                for (int i = 0; i < pattern.length(); i++) {
+                    char c = pattern.charAt(i);
+                    Integer next = transitions.get(state).get(c);
+                    if (next == null) {
+                        next = transitions.size();
+                        transitions.add(new HashMap<>());
+                        terminal.add(new ArrayList<>());
+                        transitions.get(state).put(c, next);
+                    }
+                    state = next;
+                }
+                terminal.get(state).add(patternId);
+            }
+            patternId++;
+        }
+        this.emptyPatternIds = emptyIds.stream().mapToInt(Integer::intValue).toArray();
+        buildFailureLinks(terminal);
+    }
+
+    /**
+     * 将模式串列表编译为匹配器。
+     */
+    public static AhoCorasickMatcher compile(List<String> patterns) {
+        return new AhoCorasickMatcher(patterns);
+    }
+
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * 找出文本中包含的全部模式串。
+     * <p>
+     * 结果与"按原始列表顺序逐个调用 {@code text.contains(pattern)}"完全一致：
+     * 按原始列表顺序排列，每个列表项最多出现一次，列表中的重复项会重复返回。
+     *
+     * @param text 待匹配的文本
+     * @return 文本中包含的模式串
+     */
+    public List<String> findAll(String text) {
+        boolean[] matched = new boolean[positionsByPatternId.length];
+        int matchedCount = 0;
+        for (int id : emptyPatternIds) {
+            matched[id] = true;
+            matchedCount++;
+        }
+
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            Integer next = transitions.get(state).get(c);
+            while (next == null && state != ROOT) {
+                state = failure[state];
+                next = transitions.get(state).get(c);
+            }
+            state = next != null ? next : ROOT;
+            for (int id : outputs[state]) {
+                if (!matched[id]) {
+                    matched[id] = true;
+                    matchedCount++;
+                }
+            }
+        }
+        if (matchedCount == 0) {
+            return Collections.emptyList();
+        }
+
+        List<Integer> matchedPositions = new ArrayList<>();
+        for (int id = 0; id < matched.length; id++) {
+            if (matched[id]) {
+                for (int position : positionsByPatternId[id]) {
+                    matchedPositions.add(position);
+                }
+            }
+        }
+        Collections.sort(matchedPositions);
+        List<String> result = new ArrayList<>(matchedPositions.size());
+        for (int position : matchedPositions) {
+            result.add(patterns.get(position));
+        }
+        return result;
+    }
+
+    private void buildFailureLinks(List<List<Integer>> terminal) {
+        int stateCount = transitions.size();
+        failure = new int[stateCount];
+        outputs = new int[stateCount][];
+        outputs[ROOT] = toArray(terminal.get(ROOT));
+
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : transitions.get(ROOT).values()) {
+            failure[child] = ROOT;
+            queue.add(child);
+        }
+        // 广度优先，保证处理某状态时其失败状态的输出已经计算完成
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = merge(terminal.get(state), outputs[failure[state]]);
+            for (Map.Entry<Character, Integer> edge : transitions.get(state).entrySet()) {
+                char c = edge.getKey();
+                int child = edge.getValue();
+                int fallback = failure[state];
+                Integer target = transitions.get(fallback).get(c);
+                while (target == null && fallback != ROOT) {
+                    fallback = failure[fallback];
+                    target = transitions.get(fallback).get(c);
+                }
+                failure[child] = target != null ? target : ROOT;
+                queue.add(child);
+            }
+        }
+    }
+
+    private static int[] merge(List<Integer> own, int[] inherited) {
+        int[] merged = Arrays.copyOf(toArray(own), own.size() + inherited.length);
+        System.arraycopy(inherited, 0, merged, own.size(), inherited.length);
+        return merged;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
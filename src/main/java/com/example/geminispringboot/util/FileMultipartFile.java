@@ -0,0 +1,99 @@
+package com.example.geminispringboot.util;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 以本地文件为内容的 {@link MultipartFile}。
+ * <p>
+ * 上传请求结束后容器会清理原始的 MultipartFile，需要在请求线程之外继续处理上传内容时，
+ * 先用 {@link #spool(MultipartFile)} 把内容转存到临时文件，处理完成后调用 {@link #delete()} 删除。
+ */
+public class FileMultipartFile implements MultipartFile {
+
+    private final String name;
+    private final String originalFilename;
+    private final String contentType;
+    private final File file;
+
+    public FileMultipartFile(String name, String originalFilename, String contentType, File file) {
+        this.name = name;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.file = file;
+    }
+
+    /**
+     * 把上传文件的内容复制到一个新的临时文件中。
+     */
+    public static FileMultipartFile spool(MultipartFile source) throws IOException {
+        File tempFile = File.createTempFile("spool_", ".tmp");
+        try (InputStream in = source.getInputStream()) {
+            Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile.toPath());
+            throw e;
+        }
+        return new FileMultipartFile(source.getName(), source.getOriginalFilename(), source.getContentType(), tempFile);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 删除底层文件，文件不存在时忽略。
+     */
+    public void delete() {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return file.length() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return file.length();
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(file.toPath());
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(file.toPath());
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(file.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
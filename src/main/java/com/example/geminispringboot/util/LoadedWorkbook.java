@@ -0,0 +1,103 @@
+package com.example.geminispringboot.util;
+
+import org.apache.poi.ooxml.POIXMLDocument;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 从磁盘文件打开的工作簿。
+ * <p>
+ * {@code WorkbookFactory.create(InputStream)} 会先把整个 zip 包解压到内存再解析；这里先把内容复制到
+ * 私有临时文件，再以文件方式打开：.xlsx 通过 {@code OPCPackage} 按需随机读取 zip 条目，
+ * .xls 以只读方式打开，由 POIFS 通过内存映射读取。
+ * <p>
+ * .xlsx 须以读写方式打开才能另存，关闭时放弃修改 ({@code revert}) 而不是写回临时文件；
+ * 临时文件在关闭时删除，原始文件始终不被修改。
+ */
+public final class LoadedWorkbook implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadedWorkbook.class);
+
+    private final Workbook workbook;
+    private final Path backingFile;
+
+    private LoadedWorkbook(Workbook workbook, Path backingFile) {
+        this.workbook = workbook;
+        this.backingFile = backingFile;
+    }
+
+    /**
+     * 打开上传文件、磁盘文件等任意来源的工作簿。
+     */
+    public static LoadedWorkbook open(InputStreamSource source) throws IOException {
+        Path backingFile = Files.createTempFile("workbook_", ".tmp");
+        try {
+            try (InputStream in = source.getInputStream()) {
+                Files.copy(in, backingFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return new LoadedWorkbook(create(backingFile.toFile()), backingFile);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(backingFile);
+            throw e;
+        }
+    }
+
+    /**
+     * 打开磁盘上的工作簿文件。
+     */
+    public static LoadedWorkbook open(File file) throws IOException {
+        Path backingFile = Files.createTempFile("workbook_", ".tmp");
+        try {
+            Files.copy(file.toPath(), backingFile, StandardCopyOption.REPLACE_EXISTING);
+            return new LoadedWorkbook(create(backingFile.toFile()), backingFile);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(backingFile);
+            throw e;
+        }
+    }
+
+    private static Workbook create(File file) throws IOException {
+        boolean ooxml;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            ooxml = FileMagic.valueOf(in) == FileMagic.OOXML;
+        }
+        // .xls 只读打开即可另存；.xlsx 只读打开的包不允许保存
+        return WorkbookFactory.create(file, null, !ooxml);
+    }
+
+    public Workbook getWorkbook() {
+        return workbook;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (workbook instanceof POIXMLDocument) {
+                // 读写方式打开的 OPCPackage 在 close 时会把修改写回临时文件，这里直接放弃
+                ((POIXMLDocument) workbook).getPackage().revert();
+            } else {
+                workbook.close();
+            }
+        } finally {
+            try {
+                Files.deleteIfExists(backingFile);
+            } catch (IOException e) {
+                logger.warn("删除工作簿临时文件失败: {}", backingFile, e);
+                backingFile.toFile().deleteOnExit();
+            }
+        }
+    }
+}
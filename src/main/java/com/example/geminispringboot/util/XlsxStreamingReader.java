@@ -0,0 +1,307 @@
+package com.example.geminispringboot.util;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.util.StrUtil;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * 基于 XSSF 事件模型(SAX)的 .xlsx 流式读取器。
+ * <p>
+ * 只读取第一个 sheet 页，逐行回调，不构建 POI 的 DOM 对象，内存占用与文件大小无关。
+ * 单元格取值规则与 Hutool {@code ExcelReader#readCellValue} 保持一致，以便与原有读取方式产出相同的结果。
+ */
+public final class XlsxStreamingReader {
+
+    /** Hutool 视为日期格式的自定义格式索引(中文"周"、"星期"等) */
+    private static final int[] CUSTOM_DATE_FORMAT_INDEXES = {28, 31};
+
+    private XlsxStreamingReader() {
+    }
+
+    /**
+     * 流式读取 .xlsx 文件的第一个 sheet 页。
+     *
+     * @param file                  磁盘上的 .xlsx 文件
+     * @param consecutiveEmptyLimit 连续空行达到该数量时停止读取
+     * @param rowConsumer           行回调，空行以空集合回调以保持行号对应
+     * @throws IOException 如果文件无法解析
+     */
+    public static void read(File file, int consecutiveEmptyLimit, Consumer<List<String>> rowConsumer) throws IOException {
+        OPCPackage pkg = null;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+            XSSFReader xssfReader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = xssfReader.getStylesTable();
+            boolean date1904 = isDate1904(xssfReader);
+
+            Iterator<InputStream> sheets = xssfReader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheetStream = sheets.next()) {
+                XMLReader xmlReader = XMLHelper.newXMLReader();
+                xmlReader.setContentHandler(new SheetHandler(sharedStrings, styles, date1904, consecutiveEmptyLimit, rowConsumer));
+                xmlReader.parse(new InputSource(sheetStream));
+            } catch (StopReadingException e) {
+                // 连续空行达到上限，正常结束
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("流式读取Excel文件失败: " + e.getMessage(), e);
+        } finally {
+            // 只读打开的包使用 revert() 关闭，避免尝试回写
+            if (pkg != null) {
+                pkg.revert();
+            }
+        }
+    }
+
+    /**
+     * 读取 workbook.xml 中的 workbookPr@date1904：以 1904 日期系统保存的工作簿，日期序号的起点比 1900 日期系统晚 4 年。
+     */
+    private static boolean isDate1904(XSSFReader xssfReader) throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        boolean[] date1904 = {false};
+        try (InputStream workbookStream = xssfReader.getWorkbookData()) {
+            XMLReader xmlReader = XMLHelper.newXMLReader();
+            xmlReader.setContentHandler(new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+                    if ("workbookPr".equals(localName)) {
+                        String value = attributes.getValue("date1904");
+                        date1904[0] = "1".equals(value) || "true".equals(value);
+                        throw new StopReadingException();
+                    }
+                    if ("sheets".equals(localName)) {
+                        // workbookPr 位于 sheets 之前，之后的内容无需解析
+                        throw new StopReadingException();
+                    }
+                }
+            });
+            xmlReader.parse(new InputSource(workbookStream));
+        } catch (StopReadingException e) {
+            // 已读到需要的属性
+        }
+        return date1904[0];
+    }
+
+    /**
+     * 用于提前终止 SAX 解析的内部异常。
+     */
+    private static class StopReadingException extends SAXException {
+        StopReadingException() {
+            super("consecutive empty row limit reached");
+        }
+    }
+
+    private static class SheetHandler extends DefaultHandler {
+
+        private final ReadOnlySharedStringsTable sharedStrings;
+        private final StylesTable styles;
+        private final boolean date1904;
+        private final int consecutiveEmptyLimit;
+        private final Consumer<List<String>> rowConsumer;
+
+        private int lastEmittedRow = -1;
+        private int consecutiveEmptyRowCount = 0;
+
+        // 当前行状态
+        private int currentRow = -1;
+        private TreeMap<Integer, String> currentCells;
+        private boolean currentRowHasValue;
+        private int lastCellNum;
+
+        // 当前单元格状态
+        private int currentColumn = -1;
+        private String cellType;
+        private String cellStyle;
+        private boolean cellHasFormula;
+        private boolean inValue;
+        private boolean inInlineText;
+        private final StringBuilder valueBuffer = new StringBuilder();
+
+        SheetHandler(ReadOnlySharedStringsTable sharedStrings, StylesTable styles, boolean date1904, int consecutiveEmptyLimit,
+                     Consumer<List<String>> rowConsumer) {
+            this.sharedStrings = sharedStrings;
+            this.styles = styles;
+            this.date1904 = date1904;
+            this.consecutiveEmptyLimit = consecutiveEmptyLimit;
+            this.rowConsumer = rowConsumer;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    String rowRef = attributes.getValue("r");
+                    currentRow = rowRef != null ? Integer.parseInt(rowRef) - 1 : currentRow + 1;
+                    currentCells = new TreeMap<>();
+                    currentRowHasValue = false;
+                    lastCellNum = 0;
+                    currentColumn = -1;
+                    break;
+                case "c":
+                    String cellRef = attributes.getValue("r");
+                    currentColumn = cellRef != null ? new CellReference(cellRef).getCol() : currentColumn + 1;
+                    cellType = attributes.getValue("t");
+                    cellStyle = attributes.getValue("s");
+                    cellHasFormula = false;
+                    valueBuffer.setLength(0);
+                    break;
+                case "f":
+                    cellHasFormula = true;
+                    break;
+                case "v":
+                    inValue = true;
+                    break;
+                case "t":
+                    // 内联字符串(<is><t>...</t></is>)，富文本时会出现多段
+                    inInlineText = "inlineStr".equals(cellType);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue || inInlineText) {
+                valueBuffer.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "v":
+                    inValue = false;
+                    break;
+                case "t":
+                    inInlineText = false;
+                    break;
+                case "c":
+                    endCell();
+                    break;
+                case "row":
+                    endRow();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void endCell() {
+            lastCellNum = Math.max(lastCellNum, currentColumn + 1);
+            boolean blank = !cellHasFormula && valueBuffer.length() == 0 && !"inlineStr".equals(cellType);
+            if (blank) {
+                return;
+            }
+            currentRowHasValue = true;
+            currentCells.put(currentColumn, toCellText(valueBuffer.toString()));
+        }
+
+        private void endRow() throws SAXException {
+            // 补齐缺失的行号，保持与 DOM 读取时一致的空行
+            for (int i = lastEmittedRow + 1; i < currentRow; i++) {
+                emitEmptyRow();
+            }
+            if (!currentRowHasValue) {
+                emitEmptyRow();
+                return;
+            }
+            consecutiveEmptyRowCount = 0;
+            List<String> rowData = new ArrayList<>(lastCellNum);
+            for (int j = 0; j < lastCellNum; j++) {
+                String value = currentCells.get(j);
+                rowData.add(value != null ? value : "");
+            }
+            lastEmittedRow = currentRow;
+            rowConsumer.accept(rowData);
+        }
+
+        private void emitEmptyRow() throws SAXException {
+            consecutiveEmptyRowCount++;
+            if (consecutiveEmptyRowCount >= consecutiveEmptyLimit) {
+                throw new StopReadingException();
+            }
+            lastEmittedRow++;
+            rowConsumer.accept(new ArrayList<>());
+        }
+
+        private String toCellText(String raw) {
+            if (cellType == null) {
+                return numericText(raw);
+            }
+            switch (cellType) {
+                case "s":
+                    return sharedStrings.getItemAt(Integer.parseInt(raw.trim())).getString();
+                case "b":
+                    return Boolean.toString("1".equals(raw.trim()));
+                case "n":
+                    return numericText(raw);
+                default:
+                    // inlineStr、str(公式字符串结果)、e(错误值)、d(ISO日期)按原文返回
+                    return raw;
+            }
+        }
+
+        private String numericText(String raw) {
+            if (raw.isEmpty()) {
+                return "";
+            }
+            double value = Double.parseDouble(raw);
+            XSSFCellStyle style = cellStyle != null ? styles.getStyleAt(Integer.parseInt(cellStyle)) : styles.getStyleAt(0);
+            if (style != null) {
+                int formatIndex = style.getDataFormat();
+                String formatString = style.getDataFormatString();
+                if (isDateFormat(formatIndex, formatString)) {
+                    LocalDateTime date = org.apache.poi.ss.usermodel.DateUtil.getLocalDateTime(value, date1904);
+                    if (date.getYear() == 1899) {
+                        return date.toLocalTime().toString();
+                    }
+                    return DateUtil.date(date).toString();
+                }
+                if (formatString != null && formatString.indexOf('.') < 0) {
+                    long longPart = (long) value;
+                    if ((double) longPart == value) {
+                        return Long.toString(longPart);
+                    }
+                }
+            }
+            return Double.toString(Double.parseDouble(NumberToTextConverter.toText(value)));
+        }
+
+        private boolean isDateFormat(int formatIndex, String formatString) {
+            for (int customIndex : CUSTOM_DATE_FORMAT_INDEXES) {
+                if (formatIndex == customIndex && StrUtil.containsAny(formatString, "周", "星期", "aa")) {
+                    return true;
+                }
+            }
+            return org.apache.poi.ss.usermodel.DateUtil.isADateFormat(formatIndex, formatString);
+        }
+    }
+}
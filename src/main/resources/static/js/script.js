@@ -5,6 +5,7 @@ document.addEventListener('DOMContentLoaded', () => {
     const addRosterBtn = document.getElementById('add-roster-btn');
 
     const loadingSpinner = document.getElementById('loading-spinner');
+    const loadingProgress = document.getElementById('loading-progress');
     const errorAlert = document.getElementById('error-alert');
     const errorMessage = document.getElementById('error-message');
     const successAlert = document.getElementById('success-alert');
@@ -146,41 +147,26 @@ document.addEventListener('DOMContentLoaded', () => {
             return;
         }
 
+        loadingProgress.textContent = '正在上传文件...';
+
         try {
-            const response = await fetch('process-roster', {
+            // 异步提交，立即拿到任务ID，再通过 SSE 接收处理进度
+            const response = await fetch('process-roster/async', {
                 method: 'POST',
                 body: formData,
             });
 
+            if (response.status === 429) {
+                throw new Error('当前处理任务过多，请稍后再试。');
+            }
             if (!response.ok) {
                 const errorText = await response.text();
                 throw new Error(errorText || `服务器错误: ${response.statusText}`);
             }
 
-            const result = await response.json();
-
-            // 显示成功消息
-            successAlert.classList.remove('d-none');
-
-            // 分析日志并显示统计信息
-            const logs = result.logs;
-            const stats = analyzeLogs(logs);
-            displayStats(stats);
-
-            // 显示日志
-            logContent.textContent = logs.join('\n');
-            logCard.classList.remove('d-none');
-
-            // 创建下载按钮
-            const downloadBtn = document.createElement('a');
-            downloadBtn.href = `download/${result.transactionId}`;
-            downloadBtn.className = 'btn btn-success btn-lg';
-            downloadBtn.innerHTML = '<i class="bi bi-download"></i> 下载更新后的考勤表';
-            downloadBtn.setAttribute('role', 'button');
-            downloadContainer.appendChild(downloadBtn);
-
-            // 滚动到结果区域
-            logCard.scrollIntoView({ behavior: 'smooth', block: 'start' });
+            const { jobId } = await response.json();
+            const result = await waitForJob(jobId);
+            renderResult(result);
 
         } catch (error) {
             console.error('处理失败:', error);
@@ -192,6 +178,72 @@ document.addEventListener('DOMContentLoaded', () => {
         }
     });
 
+    // 订阅任务进度，任务结束后返回任务状态 (含日志和 transactionId)
+    const waitForJob = (jobId) => new Promise((resolve, reject) => {
+        const finish = async () => {
+            try {
+                const response = await fetch(`jobs/${jobId}`);
+                if (!response.ok) {
+                    throw new Error(`查询任务状态失败: ${response.statusText}`);
+                }
+                const job = await response.json();
+                if (job.status === 'SUCCEEDED') {
+                    resolve(job);
+                } else if (job.status === 'FAILED') {
+                    reject(new Error(job.error));
+                } else {
+                    // SSE 连接中断且任务仍在执行时，退回到定时查询
+                    setTimeout(finish, 2000);
+                }
+            } catch (error) {
+                reject(error);
+            }
+        };
+
+        const events = new EventSource(`jobs/${jobId}/events`);
+        events.addEventListener('progress', (e) => {
+            const progress = JSON.parse(e.data);
+            loadingProgress.textContent = `${progress.percent}% - ${progress.message} (${(progress.elapsedMillis / 1000).toFixed(1)} 秒)`;
+        });
+        events.addEventListener('completed', () => {
+            events.close();
+            finish();
+        });
+        events.addEventListener('failed', () => {
+            events.close();
+            finish();
+        });
+        events.onerror = () => {
+            events.close();
+            finish();
+        };
+    });
+
+    const renderResult = (result) => {
+        // 显示成功消息
+        successAlert.classList.remove('d-none');
+
+        // 分析日志并显示统计信息
+        const logs = result.logs;
+        const stats = analyzeLogs(logs);
+        displayStats(stats);
+
+        // 显示日志
+        logContent.textContent = logs.join('\n');
+        logCard.classList.remove('d-none');
+
+        // 创建下载按钮
+        const downloadBtn = document.createElement('a');
+        downloadBtn.href = `download/${result.transactionId}`;
+        downloadBtn.className = 'btn btn-success btn-lg';
+        downloadBtn.innerHTML = '<i class="bi bi-download"></i> 下载更新后的考勤表';
+        downloadBtn.setAttribute('role', 'button');
+        downloadContainer.appendChild(downloadBtn);
+
+        // 滚动到结果区域
+        logCard.scrollIntoView({ behavior: 'smooth', block: 'start' });
+    };
+
     // 分析日志并提取统计信息
     const analyzeLogs = (logs) => {
         const stats = {
@@ -206,7 +258,11 @@ document.addEventListener('DOMContentLoaded', () => {
             if (log.includes('正在处理:')) {
                 stats.totalFiles++;
             }
-            // 统计更新的数量
+            // 统计更新的数量: 优先使用摘要中的总数，开启明细日志时也可逐条统计
+            const totalMatch = log.match(/共收集 (\d+) 条排班更新/);
+            if (totalMatch) {
+                stats.summaryUpdates = parseInt(totalMatch[1]);
+            }
             if (log.includes('[收集] 更新')) {
                 stats.totalUpdates++;
             }
@@ -224,7 +280,7 @@ document.addEventListener('DOMContentLoaded', () => {
 
         return {
             totalFiles: stats.totalFiles,
-            totalUpdates: stats.totalUpdates,
+            totalUpdates: stats.summaryUpdates !== undefined ? stats.summaryUpdates : stats.totalUpdates,
             processedDays: stats.processedDays.size,
             uniqueEmployees: stats.uniqueEmployees.size,
         };
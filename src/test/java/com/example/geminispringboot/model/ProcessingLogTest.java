@@ -0,0 +1,35 @@
+package com.example.geminispringboot.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessingLogTest {
+
+    @Test
+    void toLines_OmitsDetailsByDefault() {
+        ProcessingLog log = new ProcessingLog(false, 10);
+        log.info("步骤 {}/5", 1);
+        log.debug("[收集] 更新 {} 第 {} 天为: {}", "张三", 1, "白");
+        log.count("standardUpdates");
+        log.warn("未找到员工 '{}'", "赵六");
+
+        assertEquals(Arrays.asList("步骤 1/5", "警告: 未找到员工 '赵六'"), log.toLines());
+        assertEquals(1L, log.getCount("standardUpdates"));
+    }
+
+    @Test
+    void toLines_KeepsMostRecentDetailsInOrder() {
+        ProcessingLog log = new ProcessingLog(true, 2);
+        log.info("开始");
+        log.debug("明细 {}", 1);
+        log.debug("明细 {}", 2);
+        log.info("中间");
+        log.debug("明细 {}", 3);
+        log.info("结束");
+
+        assertEquals(Arrays.asList("开始", "    ... 已省略较早的 1 条明细日志", "明细 2", "中间", "明细 3", "结束"), log.toLines());
+    }
+}
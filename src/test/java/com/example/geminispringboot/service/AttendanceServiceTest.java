@@ -0,0 +1,251 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.config.RecalculationMode;
+import com.example.geminispringboot.model.AttendanceMatrix;
+import com.example.geminispringboot.model.UpdateAttendanceRequest;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttendanceServiceTest {
+
+    private static final int FIRST_DAY_COLUMN = 3;
+
+    private final AttendanceService attendanceService = new AttendanceService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(attendanceService, "appProperties", new AppProperties());
+    }
+
+    /**
+     * 构造一个最小的考勤表：第2行为"姓名"/"日     期"表头，第3行为日期，第4行起为员工，最后一行为备注。
+     */
+    static Workbook createAttendanceWorkbook(int lastDay, String... names) {
+        Workbook workbook = new XSSFWorkbook();
+        createAttendanceSheet(workbook, "考勤", lastDay, names);
+        return workbook;
+    }
+
+    static void createAttendanceSheet(Workbook workbook, String sheetName, int lastDay, String... names) {
+        Sheet sheet = workbook.createSheet(sheetName);
+        sheet.createRow(0).createCell(0).setCellValue("考勤记工表");
+        Row header = sheet.createRow(1);
+        header.createCell(1).setCellValue("姓名");
+        header.createCell(FIRST_DAY_COLUMN).setCellValue("日     期");
+        Row dayRow = sheet.createRow(2);
+        for (int day = 1; day <= lastDay; day++) {
+            dayRow.createCell(FIRST_DAY_COLUMN + day - 1).setCellValue(day);
+        }
+        int summaryColumn = FIRST_DAY_COLUMN + lastDay;
+        for (int i = 0; i < names.length; i++) {
+            int rowIndex = 3 + i;
+            Row row = sheet.createRow(rowIndex);
+            row.createCell(1).setCellValue(names[i]);
+            String range = "D" + (rowIndex + 1) + ":" + columnName(summaryColumn - 1) + (rowIndex + 1);
+            row.createCell(summaryColumn).setCellFormula("COUNTIF(" + range + ",\"白\")");
+            row.createCell(summaryColumn + 1).setCellFormula("COUNTIF(" + range + ",\"休\")");
+        }
+        int remarkRowIndex = 3 + names.length;
+        Row remarkRow = sheet.createRow(remarkRowIndex);
+        remarkRow.createCell(1).setCellValue("备注");
+        // 按日合计的跨行公式，以及引用汇总列的二级公式
+        Row totalRow = sheet.createRow(remarkRowIndex + 1);
+        for (int day = 1; day <= lastDay; day++) {
+            String column = columnName(FIRST_DAY_COLUMN + day - 1);
+            totalRow.createCell(FIRST_DAY_COLUMN + day - 1).setCellFormula("COUNTIF(" + column + "4:" + column + remarkRowIndex + ",\"休\")");
+        }
+        String summaryColumnName = columnName(summaryColumn);
+        totalRow.createCell(summaryColumn).setCellFormula("SUM(" + summaryColumnName + "4:" + summaryColumnName + remarkRowIndex + ")");
+    }
+
+    static String columnName(int columnIndex) {
+        return org.apache.poi.ss.util.CellReference.convertNumToColString(columnIndex);
+    }
+
+    static String cellText(Sheet sheet, int rowIndex, int columnIndex) {
+        Row row = sheet.getRow(rowIndex);
+        if (row == null || row.getCell(columnIndex) == null) {
+            return "";
+        }
+        return row.getCell(columnIndex).toString();
+    }
+
+    static UpdateAttendanceRequest request(String name, int day, String shift) {
+        UpdateAttendanceRequest request = new UpdateAttendanceRequest();
+        request.setName(name);
+        request.setDay(day);
+        request.setShift(shift);
+        return request;
+    }
+
+    @Test
+    void buildIndex_RecordsLayoutInOnePass() throws IOException {
+        try (Workbook workbook = createAttendanceWorkbook(30, "张三", "李四", "王五")) {
+            AttendanceSheetIndex index = attendanceService.buildIndex(workbook);
+
+            assertEquals(Arrays.asList("张三", "李四", "王五"), attendanceService.extractEmployeeNames(index));
+            assertEquals(30, attendanceService.getLastDayOfMonth(index));
+            assertEquals(4, index.findRow("李四"));
+            assertEquals(-1, index.findRow("赵六"));
+            assertEquals(FIRST_DAY_COLUMN + 9, index.findColumn(10));
+            assertEquals(-1, index.findColumn(31));
+        }
+    }
+
+    @Test
+    void buildIndex_MissingDateHeaderFailsOnlyForDateLookups() throws IOException {
+        try (Workbook workbook = createAttendanceWorkbook(30, "张三")) {
+            workbook.getSheetAt(0).getRow(1).getCell(FIRST_DAY_COLUMN).setCellValue("日期");
+            AttendanceSheetIndex index = attendanceService.buildIndex(workbook);
+
+            assertEquals(Collections.singletonList("张三"), attendanceService.extractEmployeeNames(index));
+            IOException e = assertThrows(IOException.class, () -> attendanceService.getLastDayOfMonth(index));
+            assertEquals("文件中找不到日期表头行(含'日     期')", e.getMessage());
+        }
+    }
+
+    @Test
+    void batchUpdateAttendance_UsesSharedIndex() throws IOException {
+        try (Workbook workbook = createAttendanceWorkbook(30, "张三", "李四")) {
+            AttendanceSheetIndex index = attendanceService.buildIndex(workbook);
+            List<UpdateAttendanceRequest> standard = Collections.singletonList(request("张三", 1, "白"));
+            List<UpdateAttendanceRequest> ifEmpty = Arrays.asList(request("张三", 1, "休"), request("李四", 1, "休"));
+
+            assertTrue(attendanceService.batchUpdateAttendance(workbook, index, standard, ifEmpty));
+
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals("白", cellText(sheet, 3, FIRST_DAY_COLUMN));
+            assertEquals("休", cellText(sheet, 4, FIRST_DAY_COLUMN));
+        }
+    }
+
+    @Test
+    void applyAttendanceMatrix_MatchesBatchUpdate() throws IOException {
+        try (Workbook viaMatrix = createAttendanceWorkbook(30, "张三", "李四", "王五");
+             Workbook viaRequests = createAttendanceWorkbook(30, "张三", "李四", "王五")) {
+            // 王五第2天已有内容，"休"不应覆盖
+            viaMatrix.getSheetAt(0).getRow(5).createCell(FIRST_DAY_COLUMN + 1).setCellValue("事");
+            viaRequests.getSheetAt(0).getRow(5).createCell(FIRST_DAY_COLUMN + 1).setCellValue("事");
+
+            AttendanceSheetIndex index = attendanceService.buildIndex(viaMatrix);
+            AttendanceMatrix matrix = new AttendanceMatrix(attendanceService.extractEmployeeNames(index), 30);
+            matrix.markRostered(1, matrix.idOf("张三"));
+            matrix.setShift(matrix.idOf("张三"), 1, "乘");
+            matrix.setShift(matrix.idOf("张三"), 2, "乘");
+            matrix.markRostered(2, matrix.idOf("李四"));
+            matrix.setShift(matrix.idOf("李四"), 3, "下");
+            assertEquals(4, matrix.fillRest("休"));
+            assertTrue(attendanceService.applyAttendanceMatrix(viaMatrix, index, matrix));
+
+            List<UpdateAttendanceRequest> standard = Arrays.asList(
+                    request("张三", 1, "乘"), request("张三", 2, "乘"), request("李四", 3, "下"));
+            List<UpdateAttendanceRequest> ifEmpty = Arrays.asList(
+                    request("李四", 1, "休"), request("王五", 1, "休"), request("张三", 2, "休"), request("王五", 2, "休"));
+            assertTrue(attendanceService.batchUpdateAttendance(viaRequests, standard, ifEmpty));
+
+            for (int rowIndex = 3; rowIndex <= 5; rowIndex++) {
+                for (int day = 1; day <= 30; day++) {
+                    int column = FIRST_DAY_COLUMN + day - 1;
+                    assertEquals(cellText(viaRequests.getSheetAt(0), rowIndex, column), cellText(viaMatrix.getSheetAt(0), rowIndex, column));
+                }
+            }
+            assertEquals("事", cellText(viaMatrix.getSheetAt(0), 5, FIRST_DAY_COLUMN + 1));
+            assertEquals("乘", cellText(viaMatrix.getSheetAt(0), 3, FIRST_DAY_COLUMN + 1));
+        }
+    }
+
+    @Test
+    void recalculateFormulas_IncrementalMatchesFull() throws IOException {
+        String[] names = new String[120];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "员工" + i;
+        }
+        try (Workbook incremental = createAttendanceWorkbook(31, names);
+             Workbook full = createAttendanceWorkbook(31, names)) {
+            incremental.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            full.getCreationHelper().createFormulaEvaluator().evaluateAll();
+
+            assertTrue(FormulaDependencyGraph.build(incremental).isResolvable());
+            List<Cell> incrementalChanges = applyUpdates(incremental);
+            List<Cell> fullChanges = applyUpdates(full);
+            attendanceService.recalculateFormulas(incremental, incrementalChanges, RecalculationMode.INCREMENTAL);
+            attendanceService.recalculateFormulas(full, fullChanges, RecalculationMode.FULL);
+
+            Sheet incrementalSheet = incremental.getSheetAt(0);
+            Sheet fullSheet = full.getSheetAt(0);
+            for (int rowIndex = 0; rowIndex <= fullSheet.getLastRowNum(); rowIndex++) {
+                Row row = fullSheet.getRow(rowIndex);
+                for (Cell cell : row) {
+                    if (cell.getCellType() == org.apache.poi.ss.usermodel.CellType.FORMULA) {
+                        Cell other = incrementalSheet.getRow(rowIndex).getCell(cell.getColumnIndex());
+                        assertEquals(cell.getNumericCellValue(), other.getNumericCellValue(), 0.0, cell.getAddress().formatAsString());
+                    }
+                }
+            }
+            int summaryColumn = FIRST_DAY_COLUMN + 31;
+            assertEquals(3.0, incrementalSheet.getRow(3 + 7).getCell(summaryColumn).getNumericCellValue());
+            assertEquals(3.0, incrementalSheet.getRow(3 + names.length + 1).getCell(FIRST_DAY_COLUMN + 4).getNumericCellValue());
+            assertEquals(21.0, incrementalSheet.getRow(3 + names.length + 1).getCell(summaryColumn).getNumericCellValue());
+        }
+    }
+
+    private List<Cell> applyUpdates(Workbook workbook) {
+        Sheet sheet = workbook.getSheetAt(0);
+        List<Cell> changed = new ArrayList<>();
+        for (int i = 0; i < 21; i++) {
+            Cell cell = sheet.getRow(3 + i / 3 + 1).getCell(FIRST_DAY_COLUMN + i % 3);
+            if (cell == null) {
+                cell = sheet.getRow(3 + i / 3 + 1).createCell(FIRST_DAY_COLUMN + i % 3);
+            }
+            cell.setCellValue("白");
+            changed.add(cell);
+        }
+        for (int i = 0; i < 3; i++) {
+            Cell cell = sheet.getRow(3 + i).createCell(FIRST_DAY_COLUMN + 4);
+            cell.setCellValue("休");
+            changed.add(cell);
+        }
+        return changed;
+    }
+
+    @Test
+    void updateCellIfEmpty_WritesBackToSameFile(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("attendance.xlsx");
+        try (Workbook workbook = createAttendanceWorkbook(30, "张三", "李四"); OutputStream out = Files.newOutputStream(file)) {
+            workbook.write(out);
+        }
+
+        assertEquals(30, attendanceService.getLastDayOfMonth(file.toString()));
+        assertTrue(attendanceService.updateCellIfEmpty(request("李四", 2, "白"), file.toString()));
+        assertFalse(attendanceService.updateCellIfEmpty(request("李四", 2, "休"), file.toString()));
+
+        try (InputStream in = Files.newInputStream(file); Workbook workbook = new XSSFWorkbook(in)) {
+            assertEquals("白", cellText(workbook.getSheetAt(0), 4, FIRST_DAY_COLUMN + 1));
+        }
+        // 临时副本已删除，目录中只剩原文件
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.ProcessingResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+class BatchProcessingServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private OrchestrationService orchestrationService;
+
+    @Spy
+    private AppProperties appProperties = new AppProperties();
+
+    @InjectMocks
+    private BatchProcessingService batchProcessingService;
+
+    // 每次处理收到的考勤表内容
+    private final List<byte[]> attendanceContents = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        appProperties.getBatch().setInputDir(tempDir.resolve("in").toString());
+        appProperties.getBatch().setWorkers(2);
+        // 使用 ASCII 文件名，避免依赖运行环境的文件名编码
+        appProperties.getBatch().setAttendanceFileKeyword("attendance");
+        appProperties.getRoster().setZipDayPattern("day(\\d{1,2})");
+
+        // 结果内容为 "日期列表@考勤表文件名"，便于核对每个任务收到的输入
+        when(orchestrationService.processFiles(anyList(), any(MultipartFile.class), anyList(), eq(false), anyBoolean(), any(ProgressListener.class)))
+                .thenAnswer(invocation -> {
+                    List<Integer> days = invocation.getArgument(2);
+                    MultipartFile attendanceFile = invocation.getArgument(1);
+                    attendanceContents.add(attendanceFile.getBytes());
+                    Path resultFile = Files.createTempFile(tempDir, "result_", ".xlsx");
+                    Files.write(resultFile, (days + "@" + attendanceFile.getOriginalFilename()).getBytes(StandardCharsets.UTF_8));
+                    return new ProcessingResult(Collections.emptyList(), resultFile, Files.size(resultFile), attendanceFile.getOriginalFilename());
+                });
+    }
+
+    private void createFiles(String directory, String... fileNames) throws IOException {
+        Path dir = Files.createDirectories(tempDir.resolve("in").resolve(directory));
+        for (String fileName : fileNames) {
+            Files.write(dir.resolve(fileName), new byte[]{1});
+        }
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void run_ProcessesEachDepartmentMonthIntoOutputDir() throws IOException {
+        createFiles("dept-a/2024-05", "attendance-05.xlsx", "roster-day12.xlsx", "roster-day1.xlsx", "readme.docx");
+        createFiles("dept-b/2024-05", "attendance.xlsx", "day3.xls", "undated.xlsx");
+        createFiles("dept-c/2024-05", "roster-day1.xlsx");
+        appProperties.getBatch().setOutputDir(tempDir.resolve("out").toString());
+
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        List<BatchProcessingService.JobResult> results = batchProcessingService.run(new PrintStream(summary, true, "UTF-8"));
+
+        assertEquals(2, results.size());
+        assertTrue(results.stream().allMatch(BatchProcessingService.JobResult::isSucceeded));
+        assertEquals("[1, 12]@attendance-05.xlsx", read(tempDir.resolve("out/dept-a/2024-05/attendance-05.xlsx")));
+        assertEquals("[3]@attendance.xlsx", read(tempDir.resolve("out/dept-b/2024-05/attendance.xlsx")));
+        // 原考勤表保持不变
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(tempDir.resolve("in/dept-a/2024-05/attendance-05.xlsx")));
+        assertTrue(summary.toString("UTF-8").contains("共 2 个任务，成功 2 个，失败 0 个"));
+    }
+
+    @Test
+    void run_RequiresOutputDirUnlessInPlace() throws IOException {
+        createFiles("dept-a/2024-05", "attendance.xlsx", "roster-day2.xlsx");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> batchProcessingService.run(new PrintStream(new ByteArrayOutputStream(), true, "UTF-8")));
+        assertEquals("未配置批处理输出目录 app.batch.output-dir；要直接替换原考勤表请设置 app.batch.in-place=true", e.getMessage());
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(tempDir.resolve("in/dept-a/2024-05/attendance.xlsx")));
+    }
+
+    @Test
+    void run_ReplacesAttendanceInPlaceAndReportsFailures() throws IOException {
+        createFiles("dept-a/2024-05", "attendance.xlsx", "roster-day2.xlsx");
+        createFiles("dept-b/2024-05", "attendance.xlsx", "attendance-old.xlsx", "roster-day2.xlsx");
+        appProperties.getBatch().setInPlace(true);
+
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        List<BatchProcessingService.JobResult> results = batchProcessingService.run(new PrintStream(summary, true, "UTF-8"));
+
+        assertEquals(Arrays.asList("dept-a/2024-05", "dept-b/2024-05"), Arrays.asList(results.get(0).getJob(), results.get(1).getJob()));
+        assertEquals("[2]@attendance.xlsx", read(tempDir.resolve("in/dept-a/2024-05/attendance.xlsx")));
+        assertFalse(results.get(1).isSucceeded());
+        assertEquals("目录中有多个考勤表: attendance-old.xlsx, attendance.xlsx", results.get(1).getError());
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(tempDir.resolve("in/dept-b/2024-05/attendance.xlsx")));
+        assertTrue(summary.toString("UTF-8").contains("共 2 个任务，成功 1 个，失败 1 个"));
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(tempDir.resolve("in/dept-a/2024-05/attendance.xlsx.orig")));
+
+        // 再次运行时从原件处理，不在上次的结果上叠加
+        batchProcessingService.run(new PrintStream(new ByteArrayOutputStream(), true, "UTF-8"));
+        assertEquals(2, attendanceContents.size());
+        for (byte[] content : attendanceContents) {
+            assertArrayEquals(new byte[]{1}, content);
+        }
+        assertEquals("[2]@attendance.xlsx", read(tempDir.resolve("in/dept-a/2024-05/attendance.xlsx")));
+    }
+}
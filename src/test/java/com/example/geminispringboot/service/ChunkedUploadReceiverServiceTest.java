@@ -0,0 +1,101 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedUploadReceiverServiceTest {
+
+    @TempDir
+    Path receiverDir;
+
+    private final AppProperties appProperties = new AppProperties();
+    private final ChunkedUploadReceiverService receiverService = new ChunkedUploadReceiverService();
+
+    @BeforeEach
+    void setUp() {
+        AppProperties.Upload upload = appProperties.getUpload();
+        upload.setReceiverDir(receiverDir.toString());
+        upload.setReceiverMaxFileBytes(4096);
+        upload.setReceiverMaxSessions(2);
+        ReflectionTestUtils.setField(receiverService, "appProperties", appProperties);
+    }
+
+    @Test
+    void init_RejectsOversizedFilesAndTooManySessions() throws IOException {
+        IllegalArgumentException tooLarge = assertThrows(IllegalArgumentException.class,
+                () -> receiverService.init("a.xlsx", 4097, 1024));
+        assertEquals("文件过大: 4097 字节，上限为 4096 字节", tooLarge.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> receiverService.init("a.xlsx", 4096, 0));
+
+        receiverService.init("a.xlsx", 4096, 1024);
+        receiverService.init("b.xlsx", 4096, 1024);
+        RejectedExecutionException busy = assertThrows(RejectedExecutionException.class,
+                () -> receiverService.init("c.xlsx", 4096, 1024));
+        assertEquals("同时进行的上传数已达上限 2", busy.getMessage());
+    }
+
+    @Test
+    void sweep_DeletesIdleSessionsAndTheirChunks() throws IOException {
+        String idle = (String) receiverService.init("a.xlsx", 2048, 1024).get("uploadId");
+        receiverService.receiveChunk(idle, 0, new ByteArrayInputStream(new byte[1024]));
+        assertTrue(Files.exists(receiverDir.resolve(idle).resolve("0.part")));
+
+        // 未超时的上传保留
+        assertEquals(0, receiverService.sweep());
+        assertTrue(receiverService.exists(idle));
+
+        appProperties.getUpload().setReceiverSessionIdleMinutes(0);
+        assertEquals(1, receiverService.sweep());
+        assertFalse(receiverService.exists(idle));
+        assertFalse(Files.exists(receiverDir.resolve(idle)));
+
+        // 删除后腾出上传名额
+        receiverService.init("b.xlsx", 1024, 1024);
+        receiverService.init("c.xlsx", 1024, 1024);
+    }
+
+    @Test
+    void sweep_DeletesCompletedUploadsAfterIdleTime() throws IOException {
+        String uploadId = (String) receiverService.init("a.xlsx", 1024, 1024).get("uploadId");
+        receiverService.receiveChunk(uploadId, 0, new ByteArrayInputStream(new byte[1024]));
+        receiverService.complete(uploadId);
+        assertTrue(Files.exists(receiverDir.resolve(uploadId).resolve("a.xlsx")));
+        Files.createDirectories(receiverDir.resolve("not-an-upload"));
+
+        assertEquals(0, receiverService.sweep());
+        assertTrue(Files.exists(receiverDir.resolve(uploadId).resolve("a.xlsx")));
+
+        appProperties.getUpload().setReceiverSessionIdleMinutes(0);
+        assertEquals(1, receiverService.sweep());
+        assertFalse(Files.exists(receiverDir.resolve(uploadId)));
+        // 不是接收端创建的目录保持不变
+        assertTrue(Files.exists(receiverDir.resolve("not-an-upload")));
+    }
+
+    @Test
+    void receiveChunk_StopsReadingOversizedChunk() throws IOException {
+        String uploadId = (String) receiverService.init("a.xlsx", 2048, 1024).get("uploadId");
+        // 请求体远大于分片大小，只读取分片大小加一个字节
+        ByteArrayInputStream body = new ByteArrayInputStream(new byte[1024 * 1024]);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> receiverService.receiveChunk(uploadId, 0, body));
+        assertEquals("分片 0 的长度超过 1024", e.getMessage());
+        assertEquals(1024 * 1024 - 1025, body.available());
+        try (Stream<Path> files = Files.list(receiverDir.resolve(uploadId))) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.geminispringboot.service;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.config.HttpClientConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedUploadServiceTest {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    @TempDir
+    Path receiverDir;
+
+    private final AppProperties appProperties = new AppProperties();
+    private final ChunkedUploadService chunkedUploadService = new ChunkedUploadService();
+    private final ChunkedUploadReceiverService receiverService = new ChunkedUploadReceiverService();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    // 按分片序号注入故障：返回 true 时该次请求以 faultStatus 失败
+    private final Map<Integer, AtomicInteger> chunkRequests = new ConcurrentHashMap<>();
+    private final List<Integer> receivedChunks = new CopyOnWriteArrayList<>();
+    private volatile IntPredicate fault = index -> false;
+    private volatile int faultStatus = 503;
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private String receiverUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        AppProperties.Upload upload = appProperties.getUpload();
+        upload.setChunkSizeBytes(CHUNK_SIZE);
+        upload.setChunkParallelism(2);
+        upload.setChunkMaxAttempts(3);
+        upload.setChunkRetryBaseDelayMillis(1);
+        upload.setChunkRetryMaxDelayMillis(5);
+        upload.setReceiverDir(receiverDir.toString());
+        ReflectionTestUtils.setField(receiverService, "appProperties", appProperties);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/receiver", this::handle);
+        server.start();
+        receiverUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/receiver";
+
+        httpClient = new HttpClientConfig().uploadHttpClient(appProperties);
+        ReflectionTestUtils.setField(chunkedUploadService, "httpClient", httpClient);
+        ReflectionTestUtils.setField(chunkedUploadService, "appProperties", appProperties);
+        chunkedUploadService.initChunkExecutor();
+        Metrics.addRegistry(registry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Metrics.removeRegistry(registry);
+        chunkedUploadService.shutdownChunkExecutor();
+        httpClient.close();
+        server.stop(0);
+    }
+
+    /**
+     * 把接收端协议适配到 {@link ChunkedUploadReceiverService}，与 ChunkedUploadReceiverController 的行为一致。
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String[] path = exchange.getRequestURI().getPath().substring("/receiver/".length()).split("/");
+        int status = 200;
+        Object body;
+        try {
+            if (path[0].equals("init")) {
+                Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+                body = receiverService.init(query.get("fileName"), Long.parseLong(query.get("fileSize")),
+                        Integer.parseInt(query.get("chunkSize")));
+            } else if (!receiverService.exists(path[0])) {
+                status = 404;
+                body = "not found";
+            } else if (path[1].equals("status")) {
+                body = receiverService.status(path[0]);
+            } else if (path[1].equals("chunks")) {
+                int index = Integer.parseInt(path[2]);
+                chunkRequests.computeIfAbsent(index, key -> new AtomicInteger()).incrementAndGet();
+                if (fault.test(index)) {
+                    status = faultStatus;
+                    body = "injected";
+                } else {
+                    body = receiverService.receiveChunk(path[0], index, exchange.getRequestBody());
+                    receivedChunks.add(index);
+                }
+            } else {
+                body = receiverService.complete(path[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = e.getMessage();
+        }
+        byte[] response = (body instanceof Map ? JSONUtil.toJsonStr(body) : String.valueOf(body)).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        for (String pair : rawQuery.split("&")) {
+            String[] parts = pair.split("=", 2);
+            query.put(parts[0], URLDecoder.decode(parts[1], "UTF-8"));
+        }
+        return query;
+    }
+
+    private static MockMultipartFile file(int size) {
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        return new MockMultipartFile("file", "large-report.xlsx", null, content);
+    }
+
+    @Test
+    void uploadFile_RetriesTransientFailures() throws IOException {
+        MockMultipartFile file = file(CHUNK_SIZE * 5 + 100);
+        AtomicInteger failures = new AtomicInteger();
+        // 分片 2 的前两次请求返回 503
+        fault = index -> index == 2 && failures.getAndIncrement() < 2;
+
+        Map<String, Object> result = chunkedUploadService.uploadFile(receiverUrl, file, null);
+
+        assertEquals(200, result.get("code"), String.valueOf(result));
+        assertEquals(2, result.get("retries"));
+        assertEquals(3, chunkRequests.get(2).get());
+        assertEquals(6, receivedChunks.size());
+        JSONObject completed = JSONUtil.parseObj(result.get("data"));
+        assertEquals(file.getSize(), completed.getLong("size"));
+        assertEquals(DigestUtil.sha256Hex(file.getBytes()), completed.getStr("sha256"));
+        assertEquals(2.0, registry.get(ChunkedUploadService.CHUNK_RETRIES).counter().count());
+    }
+
+    @Test
+    void uploadFile_ResumesFromAcknowledgedChunks() throws IOException {
+        MockMultipartFile file = file(CHUNK_SIZE * 8);
+        // 分片 3 一直失败，超过重试次数后放弃
+        fault = index -> index == 3;
+
+        Map<String, Object> failed = chunkedUploadService.uploadFile(receiverUrl, file, null);
+
+        assertEquals(503, failed.get("code"));
+        assertEquals(3, chunkRequests.get(3).get());
+        String uploadId = (String) failed.get("uploadId");
+        assertNotNull(uploadId);
+        assertEquals((long) CHUNK_SIZE * 3, failed.get("acknowledgedBytes"));
+
+        fault = index -> false;
+        List<Integer> sentBeforeResume = new CopyOnWriteArrayList<>(receivedChunks);
+        receivedChunks.clear();
+        Map<String, Object> resumed = chunkedUploadService.uploadFile(receiverUrl, file, uploadId);
+
+        assertEquals(200, resumed.get("code"), String.valueOf(resumed));
+        assertEquals(uploadId, resumed.get("uploadId"));
+        // 只补传上次没有确认的分片
+        for (Integer index : receivedChunks) {
+            assertFalse(sentBeforeResume.contains(index), "重复上传分片 " + index);
+        }
+        assertEquals(8, sentBeforeResume.size() + receivedChunks.size());
+        assertEquals(DigestUtil.sha256Hex(file.getBytes()), JSONUtil.parseObj(resumed.get("data")).getStr("sha256"));
+    }
+
+    @Test
+    void uploadFile_DoesNotRetryClientErrors() {
+        fault = index -> index == 0;
+        faultStatus = 400;
+
+        Map<String, Object> result = chunkedUploadService.uploadFile(receiverUrl, file(CHUNK_SIZE * 2), null);
+
+        assertEquals(400, result.get("code"));
+        assertEquals(1, chunkRequests.get(0).get());
+        assertEquals(0, result.get("retries"));
+    }
+
+    @Test
+    void uploadFile_StartsOverWhenUploadIsUnknown() {
+        Map<String, Object> result = chunkedUploadService.uploadFile(receiverUrl, file(CHUNK_SIZE + 1), "missing");
+
+        assertEquals(200, result.get("code"), String.valueOf(result));
+        assertNotEquals("missing", result.get("uploadId"));
+    }
+
+    @Test
+    void uploadFile_RestoresInterruptFlag() {
+        Thread.currentThread().interrupt();
+        Map<String, Object> result;
+        try {
+            result = chunkedUploadService.uploadFile(receiverUrl, file(CHUNK_SIZE * 2), null);
+        } finally {
+            // 清除中断标志，避免影响后续测试
+            assertTrue(Thread.interrupted());
+        }
+        assertEquals(500, result.get("code"));
+        assertEquals("上传被中断", result.get("message"));
+    }
+
+    @Test
+    void backoffMillis_GrowsExponentiallyUpToMax() {
+        AppProperties.Upload upload = new AppProperties.Upload();
+        upload.setChunkRetryBaseDelayMillis(100);
+        upload.setChunkRetryMaxDelayMillis(1000);
+        for (int i = 0; i < 20; i++) {
+            long first = ChunkedUploadService.backoffMillis(1, upload);
+            long third = ChunkedUploadService.backoffMillis(3, upload);
+            long tenth = ChunkedUploadService.backoffMillis(10, upload);
+            assertTrue(first >= 50 && first <= 100, String.valueOf(first));
+            assertTrue(third >= 200 && third <= 400, String.valueOf(third));
+            assertTrue(tenth >= 500 && tenth <= 1000, String.valueOf(tenth));
+        }
+    }
+}
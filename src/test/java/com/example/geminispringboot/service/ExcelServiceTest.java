@@ -0,0 +1,105 @@
+package com.example.geminispringboot.service;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExcelServiceTest {
+
+    private final ExcelService excelService = new ExcelService();
+
+    @Test
+    void readExcelData_StreamingMatchesInMemory() throws IOException {
+        byte[] content;
+        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("值班表");
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-MM-dd"));
+            CellStyle decimalStyle = workbook.createCellStyle();
+            decimalStyle.setDataFormat(workbook.createDataFormat().getFormat("0.00"));
+
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("白班");
+            header.createCell(2).setCellValue("张三、李四");
+            header.createCell(3).setCellValue(42054);
+            header.createCell(4).setCellValue(1.5);
+            header.getCell(4).setCellStyle(decimalStyle);
+            header.createCell(5).setCellValue(new Date(0));
+            header.getCell(5).setCellStyle(dateStyle);
+            header.createCell(6).setCellValue(true);
+            header.createCell(7).setCellFormula("D1+1");
+            header.createCell(8).setCellFormula("A1&\"-\"");
+            header.createCell(10); // 空白单元格，仍会计入行宽
+
+            sheet.createRow(1).createCell(3); // 仅含空白单元格的行
+            Row afterGap = sheet.createRow(4);
+            afterGap.createCell(1).setCellValue(" 大夜 ");
+            afterGap.createCell(2).setCellValue(3.25);
+
+            workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            workbook.write(out);
+            content = out.toByteArray();
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "roster.xlsx", null, content);
+
+        List<List<String>> streaming = excelService.readExcelDataStreaming(file);
+        List<List<String>> inMemory = excelService.readExcelDataInMemory(new ByteArrayInputStream(content));
+
+        assertEquals(inMemory, streaming);
+        assertEquals(5, streaming.size());
+        assertEquals("42054", streaming.get(0).get(3));
+        assertEquals("42055", streaming.get(0).get(7));
+        assertEquals(11, streaming.get(0).size());
+    }
+
+    @Test
+    void readExcelData_StopsAfterConsecutiveEmptyRows() throws IOException {
+        byte[] content;
+        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("夜班");
+            sheet.createRow(500).createCell(0).setCellValue("不应被读取");
+            workbook.write(out);
+            content = out.toByteArray();
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "roster.xlsx", null, content);
+
+        List<List<String>> streaming = excelService.readExcelData(file);
+
+        assertEquals(excelService.readExcelDataInMemory(new ByteArrayInputStream(content)), streaming);
+        assertEquals(100, streaming.size());
+    }
+
+    @Test
+    void readExcelData_StreamingHonoursDate1904() throws IOException {
+        byte[] content;
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            workbook.getCTWorkbook().getWorkbookPr().setDate1904(true);
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-MM-dd"));
+            Row row = workbook.createSheet("值班表").createRow(0);
+            row.createCell(0).setCellValue(44000);
+            row.getCell(0).setCellStyle(dateStyle);
+            workbook.write(out);
+            content = out.toByteArray();
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "roster.xlsx", null, content);
+
+        List<List<String>> streaming = excelService.readExcelDataStreaming(file);
+
+        assertEquals(excelService.readExcelDataInMemory(new ByteArrayInputStream(content)), streaming);
+        assertEquals("2024-06-19 00:00:00", streaming.get(0).get(0));
+    }
+}
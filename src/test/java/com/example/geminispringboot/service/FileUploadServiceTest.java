@@ -0,0 +1,156 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.config.HttpClientConfig;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileUploadServiceTest {
+
+    private final AppProperties appProperties = new AppProperties();
+    private final FileUploadService fileUploadService = new FileUploadService();
+    private final Set<Integer> clientPorts = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private volatile Headers lastHeaders;
+    private volatile String lastBody;
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private String uploadUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // 请求体中包含 "bad" 的上传返回 500，其余返回 200
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/upload", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            String body = StreamUtils.copyToString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            lastHeaders = exchange.getRequestHeaders();
+            lastBody = body;
+            byte[] response = (body.contains("bad") ? "rejected" : "ok").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(body.contains("bad") ? 500 : 200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        uploadUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/upload";
+
+        appProperties.getUpload().setConcurrency(2);
+        httpClient = new HttpClientConfig().uploadHttpClient(appProperties);
+        ReflectionTestUtils.setField(fileUploadService, "httpClient", httpClient);
+        ReflectionTestUtils.setField(fileUploadService, "appProperties", appProperties);
+        fileUploadService.initUploadExecutor();
+        Metrics.addRegistry(registry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Metrics.removeRegistry(registry);
+        fileUploadService.shutdownUploadExecutor();
+        httpClient.close();
+        server.stop(0);
+    }
+
+    private static MultipartFile file(String name, String content) {
+        return new MockMultipartFile("file", name, null, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void uploadFile_ReusesPooledConnection() {
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> result = fileUploadService.uploadFile(uploadUrl, file("a.txt", "content " + i), "E001", null, null);
+            assertEquals(200, result.get("code"));
+            assertEquals("ok", result.get("data"));
+        }
+        // 依次上传复用同一个连接
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    void uploadFiles_ReturnsPerFileResultsInOrder() {
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            files.add(file("file" + i + ".txt", i == 3 ? "bad content" : "content " + i));
+        }
+
+        List<Map<String, Object>> results = fileUploadService.uploadFiles(uploadUrl, files, "E001", "sig", "20240501");
+
+        assertEquals(5, results.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("file" + i + ".txt", results.get(i).get("fileName"));
+            assertEquals(i == 3 ? 500 : 200, results.get(i).get("code"));
+            assertNotNull(results.get(i).get("elapsedMillis"));
+        }
+        assertEquals("rejected", results.get(3).get("errorDetail"));
+        assertEquals(4, registry.get(FileUploadService.UPLOAD_TIMER).tag("outcome", "success").timer().count());
+        assertEquals(1, registry.get(FileUploadService.UPLOAD_TIMER).tag("outcome", "failure").timer().count());
+        // 并行上传的连接数不超过线程数
+        assertTrue(clientPorts.size() <= 2, clientPorts.toString());
+    }
+
+    @Test
+    void uploadFile_RequiresUrl() {
+        Map<String, Object> result = fileUploadService.uploadFile("", file("a.txt", "x"), null, null, null);
+        assertEquals(Arrays.asList(400, "上传地址不能为空"), Arrays.asList(result.get("code"), result.get("message")));
+    }
+
+    @Test
+    void uploadFile_StreamsContentWithoutTempFile() throws IOException {
+        Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"));
+        long before = countUploadTempFiles(tempDir);
+
+        Map<String, Object> result = fileUploadService.uploadFile(uploadUrl, file("report-05.xlsx", "streamed content"), null, null, null);
+
+        assertEquals(200, result.get("code"));
+        assertEquals("chunked", lastHeaders.getFirst("Transfer-encoding"));
+        assertTrue(lastBody.contains("filename=\"report-05.xlsx\""));
+        assertTrue(lastBody.contains("streamed content"));
+        assertEquals(before, countUploadTempFiles(tempDir));
+    }
+
+    @Test
+    void uploadFile_SendsContentLengthWhenNotChunked() {
+        appProperties.getUpload().setChunked(false);
+
+        Map<String, Object> result = fileUploadService.uploadFile(uploadUrl, file("a.txt", "sized content"), null, null, null);
+
+        assertEquals(200, result.get("code"));
+        assertNull(lastHeaders.getFirst("Transfer-encoding"));
+        assertEquals(String.valueOf(lastBody.getBytes(StandardCharsets.UTF_8).length), lastHeaders.getFirst("Content-length"));
+    }
+
+    private static long countUploadTempFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("upload_")).count();
+        }
+    }
+}
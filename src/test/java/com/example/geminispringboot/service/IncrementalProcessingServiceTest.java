@@ -0,0 +1,177 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.ProcessingResult;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalProcessingServiceTest {
+
+    private static final String[] NAMES = {"张三", "李四", "王五", "赵六", "孙七"};
+
+    @TempDir
+    Path tempDir;
+
+    private final AppProperties appProperties = new AppProperties();
+    private final OrchestrationService orchestrationService = new OrchestrationService();
+    private final IncrementalProcessingService incrementalService = new IncrementalProcessingService();
+    private final ProcessingResultStore resultStore = new ProcessingResultStore();
+
+    @BeforeEach
+    void setUp() {
+        appProperties.getIncremental().setStateDir(tempDir.resolve("state").toString());
+        appProperties.getResults().setSpillDir(tempDir.resolve("results").toString());
+
+        AttendanceService attendanceService = new AttendanceService();
+        ReflectionTestUtils.setField(attendanceService, "appProperties", appProperties);
+        RosterParseCache rosterParseCache = new RosterParseCache();
+        ReflectionTestUtils.setField(rosterParseCache, "appProperties", appProperties);
+        ReflectionTestUtils.setField(resultStore, "appProperties", appProperties);
+        ScheduleParsingService scheduleParsingService = new ScheduleParsingService();
+
+        ReflectionTestUtils.setField(orchestrationService, "excelService", new ExcelService());
+        ReflectionTestUtils.setField(orchestrationService, "scheduleParsingService", scheduleParsingService);
+        ReflectionTestUtils.setField(orchestrationService, "attendanceService", attendanceService);
+        ReflectionTestUtils.setField(orchestrationService, "appProperties", appProperties);
+        ReflectionTestUtils.setField(orchestrationService, "resultStore", resultStore);
+        MemoryAdmissionService memoryAdmissionService = new MemoryAdmissionService();
+        ReflectionTestUtils.setField(memoryAdmissionService, "appProperties", appProperties);
+        memoryAdmissionService.init();
+        ReflectionTestUtils.setField(orchestrationService, "rosterParseCache", rosterParseCache);
+        ReflectionTestUtils.setField(orchestrationService, "memoryAdmissionService", memoryAdmissionService);
+        orchestrationService.initRosterParsingExecutor();
+
+        ReflectionTestUtils.setField(incrementalService, "orchestrationService", orchestrationService);
+        ReflectionTestUtils.setField(incrementalService, "attendanceService", attendanceService);
+        ReflectionTestUtils.setField(incrementalService, "scheduleParsingService", scheduleParsingService);
+        ReflectionTestUtils.setField(incrementalService, "rosterParseCache", rosterParseCache);
+        ReflectionTestUtils.setField(incrementalService, "resultStore", resultStore);
+        ReflectionTestUtils.setField(incrementalService, "appProperties", appProperties);
+        ReflectionTestUtils.setField(incrementalService, "memoryAdmissionService", memoryAdmissionService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        orchestrationService.shutdownRosterParsingExecutor();
+        resultStore.clear();
+    }
+
+    private static MultipartFile attendanceFile() throws IOException {
+        try (Workbook workbook = AttendanceServiceTest.createAttendanceWorkbook(30, NAMES)) {
+            // 预先填写的内容不应被"休"覆盖
+            workbook.getSheetAt(0).getRow(3 + 4).createCell(3 + 2).setCellValue("事");
+            return new MockMultipartFile("attendanceFile", "考勤.xlsx", null, toBytes(workbook));
+        }
+    }
+
+    static MultipartFile roster(String fileName, String[]... rows) throws IOException {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet();
+            for (int i = 0; i < rows.length; i++) {
+                Row row = sheet.createRow(i);
+                for (int j = 0; j < rows[i].length; j++) {
+                    row.createCell(j).setCellValue(rows[i][j]);
+                }
+            }
+            return new MockMultipartFile("dutyRosterFiles", fileName, null, toBytes(workbook));
+        }
+    }
+
+    static byte[] toBytes(Workbook workbook) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workbook.write(out);
+        return out.toByteArray();
+    }
+
+    private static List<String> dayCells(ProcessingResult result) throws IOException {
+        List<String> cells = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(result.getFile()); Workbook workbook = WorkbookFactory.create(in)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            for (int i = 0; i < NAMES.length; i++) {
+                for (int day = 1; day <= 30; day++) {
+                    cells.add(AttendanceServiceTest.cellText(sheet, 3 + i, 3 + day - 1));
+                }
+            }
+        }
+        return cells;
+    }
+
+    @Test
+    void processFiles_ChangedDayMatchesFullProcessing() throws IOException {
+        MultipartFile day1 = roster("1日.xlsx", new String[]{"白班", "张三、李四"}, new String[]{"大夜", "王五"});
+        MultipartFile day2 = roster("2日.xlsx", new String[]{"42054", "张三"}, new String[]{"42051", "张三"});
+        MultipartFile day3 = roster("3日.xlsx", new String[]{"白班", "李四"}, new String[]{"夜班", "赵六"});
+        MultipartFile day2Corrected = roster("2日.xlsx", new String[]{"白班", "孙七"});
+
+        incrementalService.processFiles("2024-05", Arrays.asList(day1, day2, day3), Arrays.asList(1, 2, 3), attendanceFile(), false);
+        ProcessingResult incremental = incrementalService.processFiles("2024-05",
+                Arrays.asList(day3, day1, day2Corrected), Arrays.asList(3, 1, 2), null, false);
+        ProcessingResult full = orchestrationService.processFiles(
+                Arrays.asList(day1, day2Corrected, day3), attendanceFile(), Arrays.asList(1, 2, 3));
+
+        assertEquals(dayCells(full), dayCells(incremental));
+        assertTrue(incremental.getLogs().contains("共 3 个值班日期，其中 1 个需要重新计算: [2]"));
+    }
+
+    @Test
+    void processFiles_RemovedDayRestoresOriginalCells() throws IOException {
+        MultipartFile day1 = roster("1日.xlsx", new String[]{"白班", "张三"});
+        MultipartFile day3 = roster("3日.xlsx", new String[]{"大夜", "赵六"});
+
+        incrementalService.processFiles("2024-06", Arrays.asList(day1, day3), Arrays.asList(1, 3), attendanceFile(), false);
+        ProcessingResult incremental = incrementalService.processFiles("2024-06",
+                Arrays.asList(day1), Arrays.asList(1), null, false);
+        ProcessingResult full = orchestrationService.processFiles(Arrays.asList(day1), attendanceFile(), Arrays.asList(1));
+
+        assertEquals(dayCells(full), dayCells(incremental));
+    }
+
+    @Test
+    void processFiles_RequiresAttendanceFileForNewState() {
+        assertThrows(IllegalArgumentException.class,
+                () -> incrementalService.processFiles("2024-07", new ArrayList<>(), new ArrayList<>(), null, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> incrementalService.processFiles("../etc", new ArrayList<>(), new ArrayList<>(), null, false));
+    }
+
+    @Test
+    void processFiles_DiscardsStateThatDoesNotMatchSavedWorkbook() throws IOException {
+        MultipartFile day1 = roster("1日.xlsx", new String[]{"白班", "张三"});
+        MultipartFile day3 = roster("3日.xlsx", new String[]{"大夜", "赵六"});
+        incrementalService.processFiles("2024-08", Arrays.asList(day1), Arrays.asList(1), attendanceFile(), false);
+
+        // 模拟替换了考勤表、但状态没有写入的中断保存
+        Path stateDir = tempDir.resolve("state").resolve("2024-08");
+        Files.write(stateDir.resolve("workbook.xlsx"), attendanceFile().getBytes());
+
+        assertThrows(IllegalArgumentException.class, () -> incrementalService.processFiles("2024-08",
+                Arrays.asList(day1, day3), Arrays.asList(1, 3), null, false));
+        ProcessingResult rerun = incrementalService.processFiles("2024-08",
+                Arrays.asList(day1, day3), Arrays.asList(1, 3), attendanceFile(), false);
+        ProcessingResult full = orchestrationService.processFiles(Arrays.asList(day1, day3), attendanceFile(), Arrays.asList(1, 3));
+
+        assertTrue(rerun.getLogs().contains("使用上传的考勤表重新开始: 考勤.xlsx"), String.valueOf(rerun.getLogs()));
+        assertEquals(dayCells(full), dayCells(rerun));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryAdmissionServiceTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final AppProperties appProperties = new AppProperties();
+    private final MemoryAdmissionService admissionService = new MemoryAdmissionService();
+
+    @BeforeEach
+    void setUp() {
+        appProperties.getMemory().setBudgetBytes(10 * MB);
+        appProperties.getMemory().setMaxWaitMillis(200);
+        ReflectionTestUtils.setField(admissionService, "appProperties", appProperties);
+        admissionService.init();
+    }
+
+    private static MockMultipartFile attendanceFile(int employees) throws IOException {
+        String[] names = new String[employees];
+        for (int i = 0; i < employees; i++) {
+            names[i] = "员工" + i;
+        }
+        try (Workbook workbook = AttendanceServiceTest.createAttendanceWorkbook(31, names)) {
+            return new MockMultipartFile("attendanceFile", "考勤.xlsx", null, IncrementalProcessingServiceTest.toBytes(workbook));
+        }
+    }
+
+    @Test
+    void estimate_GrowsWithUncompressedContent() throws IOException {
+        MemoryAdmissionService.Footprint small = admissionService.estimate(attendanceFile(10));
+        MemoryAdmissionService.Footprint large = admissionService.estimate(attendanceFile(1000));
+
+        assertTrue(small.isOoxml());
+        assertTrue(large.getInMemoryBytes() > small.getInMemoryBytes());
+        // 流式读取只需要共享字符串表
+        assertTrue(large.getStreamingBytes() < large.getInMemoryBytes());
+    }
+
+    @Test
+    void reserve_RejectsMoreThanBudget() {
+        RejectedExecutionException e = assertThrows(RejectedExecutionException.class,
+                () -> admissionService.reserve("考勤表 巨大.xlsx", 11 * MB));
+        assertEquals("文件过大，预计需要 11 MB 内存，超过预算 10 MB: 考勤表 巨大.xlsx", e.getMessage());
+        assertEquals(1L, admissionService.getStats().get("rejected"));
+    }
+
+    @Test
+    void reserve_QueuesUntilReleasedOrTimesOut() throws Exception {
+        MemoryAdmissionService.Reservation first = admissionService.reserve("a", 6 * MB);
+
+        // 预算不足时排队，等待超时后拒绝
+        assertThrows(RejectedExecutionException.class, () -> admissionService.reserve("b", 6 * MB));
+
+        appProperties.getMemory().setMaxWaitMillis(5000);
+        CompletableFuture<MemoryAdmissionService.Reservation> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return admissionService.reserve("c", 6 * MB);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (admissionService.getWaitingCount() == 0) {
+            Thread.sleep(5);
+        }
+        assertFalse(second.isDone());
+        first.close();
+
+        MemoryAdmissionService.Reservation admitted = second.get(5, TimeUnit.SECONDS);
+        Map<String, Object> stats = admissionService.getStats();
+        assertEquals(6 * MB, stats.get("reservedBytes"));
+        assertEquals("c", ((List<?>) stats.get("reservations")).stream()
+                .map(item -> ((Map<?, ?>) item).get("subject")).findFirst().orElse(null));
+        admitted.close();
+        assertEquals(0L, admissionService.getReservedBytes());
+    }
+
+    @Test
+    void topUp_SkipsQueueAndOnlyWaitsForOtherTopUps() throws Exception {
+        appProperties.getMemory().setMaxWaitMillis(5000);
+        MemoryAdmissionService.Reservation holder = admissionService.reserve("a", 6 * MB);
+        CompletableFuture<MemoryAdmissionService.Reservation> queued = CompletableFuture.supplyAsync(() -> {
+            try {
+                return admissionService.reserve("b", 6 * MB);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (admissionService.getWaitingCount() == 0) {
+            Thread.sleep(5);
+        }
+
+        // 不排在 b 后面；没有其他追加预留时立即放行，暂时超出预算
+        MemoryAdmissionService.Reservation firstRoster = admissionService.topUp(holder, "a 值班表 1", 5 * MB);
+        assertEquals(11 * MB, admissionService.getReservedBytes());
+        CompletableFuture<MemoryAdmissionService.Reservation> secondRoster = CompletableFuture.supplyAsync(() -> {
+            try {
+                return admissionService.topUp(holder, "a 值班表 2", 3 * MB);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        // 超出预算时等待另一个追加预留归还
+        Thread.sleep(50);
+        assertFalse(secondRoster.isDone());
+        firstRoster.close();
+
+        MemoryAdmissionService.Reservation admittedRoster = secondRoster.get(5, TimeUnit.SECONDS);
+        assertEquals(9 * MB, admissionService.getReservedBytes());
+        assertEquals("a", ((List<?>) admissionService.getStats().get("reservations")).stream()
+                .map(item -> ((Map<?, ?>) item).get("holder")).filter(Objects::nonNull).findFirst().orElse(null));
+        admittedRoster.close();
+        assertFalse(queued.isDone());
+        holder.close();
+
+        queued.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0L, admissionService.getReservedBytes());
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.ProcessingResult;
+import com.example.geminispringboot.model.ProgressEvent;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrchestrationServiceTest {
+
+    private static final int FIRST_DAY_COLUMN = 3;
+
+    @TempDir
+    Path tempDir;
+
+    private final AppProperties appProperties = new AppProperties();
+    private final OrchestrationService orchestrationService = new OrchestrationService();
+    private final ProcessingResultStore resultStore = new ProcessingResultStore();
+    private final MemoryAdmissionService memoryAdmissionService = new MemoryAdmissionService();
+
+    @BeforeEach
+    void setUp() {
+        appProperties.getResults().setSpillDir(tempDir.toString());
+
+        AttendanceService attendanceService = new AttendanceService();
+        ReflectionTestUtils.setField(attendanceService, "appProperties", appProperties);
+        RosterParseCache rosterParseCache = new RosterParseCache();
+        ReflectionTestUtils.setField(rosterParseCache, "appProperties", appProperties);
+        ReflectionTestUtils.setField(resultStore, "appProperties", appProperties);
+
+        ReflectionTestUtils.setField(orchestrationService, "excelService", new ExcelService());
+        ReflectionTestUtils.setField(orchestrationService, "scheduleParsingService", new ScheduleParsingService());
+        ReflectionTestUtils.setField(orchestrationService, "attendanceService", attendanceService);
+        ReflectionTestUtils.setField(orchestrationService, "appProperties", appProperties);
+        ReflectionTestUtils.setField(orchestrationService, "resultStore", resultStore);
+        ReflectionTestUtils.setField(memoryAdmissionService, "appProperties", appProperties);
+        memoryAdmissionService.init();
+        ReflectionTestUtils.setField(orchestrationService, "rosterParseCache", rosterParseCache);
+        ReflectionTestUtils.setField(orchestrationService, "memoryAdmissionService", memoryAdmissionService);
+        orchestrationService.initRosterParsingExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        orchestrationService.shutdownRosterParsingExecutor();
+        resultStore.clear();
+    }
+
+    /**
+     * 两个班组各占一个 sheet 页，中间夹着一个不是考勤表版式的说明页。
+     */
+    private static MultipartFile teamAttendanceFile() throws IOException {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            AttendanceServiceTest.createAttendanceSheet(workbook, "一组", 30, "张三", "李四");
+            workbook.createSheet("说明").createRow(0).createCell(0).setCellValue("各班组考勤");
+            AttendanceServiceTest.createAttendanceSheet(workbook, "二组", 30, "王五", "赵六");
+            return new MockMultipartFile("attendanceFile", "考勤.xlsx", null, IncrementalProcessingServiceTest.toBytes(workbook));
+        }
+    }
+
+    private static Workbook open(ProcessingResult result) throws IOException {
+        try (InputStream in = Files.newInputStream(result.getFile())) {
+            return WorkbookFactory.create(in);
+        }
+    }
+
+    @Test
+    void processFiles_AllSheetsUpdatesEveryTeamSheet() throws IOException {
+        MultipartFile day1 = IncrementalProcessingServiceTest.roster("1日.xlsx", new String[]{"白班", "张三、王五"});
+
+        ProcessingResult result = orchestrationService.processFiles(Collections.singletonList(day1), teamAttendanceFile(),
+                Collections.singletonList(1), false, true, ProgressListener.NONE);
+
+        try (Workbook workbook = open(result)) {
+            Sheet first = workbook.getSheet("一组");
+            assertEquals("白", AttendanceServiceTest.cellText(first, 3, FIRST_DAY_COLUMN));
+            assertEquals("休", AttendanceServiceTest.cellText(first, 4, FIRST_DAY_COLUMN));
+            Sheet second = workbook.getSheet("二组");
+            assertEquals("白", AttendanceServiceTest.cellText(second, 3, FIRST_DAY_COLUMN));
+            assertEquals("休", AttendanceServiceTest.cellText(second, 4, FIRST_DAY_COLUMN));
+            assertEquals("各班组考勤", AttendanceServiceTest.cellText(workbook.getSheet("说明"), 0, 0));
+        }
+        assertTrue(result.getLogs().contains("  -> 跳过 sheet 页 '说明'：不是考勤表版式"));
+        assertTrue(result.getLogs().contains("共 2 个 sheet 页需要更新。"));
+    }
+
+    @Test
+    void processFiles_DefaultUpdatesFirstSheetOnly() throws IOException {
+        MultipartFile day1 = IncrementalProcessingServiceTest.roster("1日.xlsx", new String[]{"白班", "张三、王五"});
+
+        ProcessingResult result = orchestrationService.processFiles(Collections.singletonList(day1), teamAttendanceFile(),
+                Collections.singletonList(1));
+
+        try (Workbook workbook = open(result)) {
+            assertEquals("白", AttendanceServiceTest.cellText(workbook.getSheet("一组"), 3, FIRST_DAY_COLUMN));
+            assertEquals("", AttendanceServiceTest.cellText(workbook.getSheet("二组"), 3, FIRST_DAY_COLUMN));
+        }
+    }
+
+    @Test
+    void processFiles_AllSheetsRejectsDifferentMonthLengths() throws IOException {
+        byte[] attendance;
+        try (Workbook workbook = new XSSFWorkbook()) {
+            AttendanceServiceTest.createAttendanceSheet(workbook, "一组", 30, "张三");
+            AttendanceServiceTest.createAttendanceSheet(workbook, "二组", 31, "王五");
+            attendance = IncrementalProcessingServiceTest.toBytes(workbook);
+        }
+        MultipartFile day1 = IncrementalProcessingServiceTest.roster("1日.xlsx", new String[]{"白班", "张三"});
+
+        IOException e = assertThrows(IOException.class, () -> orchestrationService.processFiles(Collections.singletonList(day1),
+                new MockMultipartFile("attendanceFile", "考勤.xlsx", null, attendance), Arrays.asList(1), false, true, ProgressListener.NONE));
+        assertEquals("各 sheet 页的月份天数不一致: '一组' 为 30 天，'二组' 为 31 天", e.getMessage());
+    }
+
+    private static MultipartFile archive(MultipartFile... entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("五月/"));
+            for (MultipartFile entry : entries) {
+                zip.putNextEntry(new ZipEntry("五月/" + entry.getOriginalFilename()));
+                zip.write(entry.getBytes());
+            }
+            zip.putNextEntry(new ZipEntry("五月/说明.txt"));
+            zip.write("值班表说明".getBytes(StandardCharsets.UTF_8));
+        }
+        return new MockMultipartFile("rosterArchive", "值班表.zip", null, out.toByteArray());
+    }
+
+    private static MultipartFile singleSheetAttendanceFile() throws IOException {
+        try (Workbook workbook = AttendanceServiceTest.createAttendanceWorkbook(30, "张三", "李四", "王五")) {
+            return new MockMultipartFile("attendanceFile", "考勤.xlsx", null, IncrementalProcessingServiceTest.toBytes(workbook));
+        }
+    }
+
+    @Test
+    void processArchive_MatchesSeparateUploads() throws IOException {
+        MultipartFile day1 = IncrementalProcessingServiceTest.roster("1日值班表.xlsx", new String[]{"白班", "张三"}, new String[]{"大夜", "王五"});
+        MultipartFile day2 = IncrementalProcessingServiceTest.roster("2日值班表.xlsx", new String[]{"42054", "李四"}, new String[]{"42051", "李四"});
+        MultipartFile day12 = IncrementalProcessingServiceTest.roster("12日值班表.xlsx", new String[]{"白班", "王五"});
+
+        ProcessingResult fromArchive = orchestrationService.processArchive(archive(day12, day2, day1), singleSheetAttendanceFile(),
+                false, false, ProgressListener.NONE);
+        ProcessingResult fromUploads = orchestrationService.processFiles(Arrays.asList(day1, day2, day12), singleSheetAttendanceFile(),
+                Arrays.asList(1, 2, 12));
+
+        try (Workbook archived = open(fromArchive); Workbook uploaded = open(fromUploads)) {
+            for (int rowIndex = 3; rowIndex <= 5; rowIndex++) {
+                for (int day = 1; day <= 30; day++) {
+                    int column = FIRST_DAY_COLUMN + day - 1;
+                    assertEquals(AttendanceServiceTest.cellText(uploaded.getSheetAt(0), rowIndex, column),
+                            AttendanceServiceTest.cellText(archived.getSheetAt(0), rowIndex, column));
+                }
+            }
+            assertEquals("白", AttendanceServiceTest.cellText(archived.getSheetAt(0), 5, FIRST_DAY_COLUMN + 11));
+        }
+        assertTrue(fromArchive.getLogs().contains("  -> 跳过压缩包中的非值班表文件: 五月/说明.txt"));
+        assertTrue(fromArchive.getLogs().contains("压缩包解压完成，共 3 个值班表。"));
+    }
+
+    @Test
+    void processArchive_RejectsEntryWithoutDay() throws IOException {
+        MultipartFile undated = IncrementalProcessingServiceTest.roster("值班表.xlsx", new String[]{"白班", "张三"});
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> orchestrationService.processArchive(
+                archive(undated), singleSheetAttendanceFile(), false, false, ProgressListener.NONE));
+        assertEquals("无法从文件名中识别日期: 五月/值班表.xlsx", e.getMessage());
+    }
+
+    @Test
+    void processArchive_RejectsTooManyEntries() throws IOException {
+        appProperties.getRoster().setZipMaxEntries(2);
+        MultipartFile day1 = IncrementalProcessingServiceTest.roster("1日值班表.xlsx", new String[]{"白班", "张三"});
+        MultipartFile day2 = IncrementalProcessingServiceTest.roster("2日值班表.xlsx", new String[]{"白班", "李四"});
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> orchestrationService.processArchive(
+                archive(day1, day2), singleSheetAttendanceFile(), false, false, ProgressListener.NONE));
+        assertEquals("压缩包中的文件过多 (超过 2 个)", e.getMessage());
+    }
+
+    @Test
+    void processArchive_RejectsOversizedTotalAndDeletesExtractedFiles() throws IOException {
+        MultipartFile day1 = IncrementalProcessingServiceTest.roster("1日值班表.xlsx", new String[]{"白班", "张三"});
+        MultipartFile day2 = IncrementalProcessingServiceTest.roster("2日值班表.xlsx", new String[]{"白班", "李四"});
+        appProperties.getRoster().setZipMaxTotalBytes(day1.getSize() + day2.getSize() - 1);
+        Set<String> before = extractedFileNames();
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> orchestrationService.processArchive(
+                archive(day1, day2), singleSheetAttendanceFile(), false, false, ProgressListener.NONE));
+        assertEquals("压缩包解压后的总大小超过 " + (day1.getSize() + day2.getSize() - 1) + " 字节", e.getMessage());
+        assertEquals(before, extractedFileNames());
+    }
+
+    private static Set<String> extractedFileNames() {
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list((dir, name) -> name.startsWith("zip_entry_"));
+        return names == null ? Collections.emptySet() : new HashSet<>(Arrays.asList(names));
+    }
+
+    @Test
+    void processFiles_RecordsStageMetrics() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        try {
+            MultipartFile day1 = IncrementalProcessingServiceTest.roster("1日.xlsx", new String[]{"白班", "张三"});
+
+            orchestrationService.processFiles(Collections.singletonList(day1), singleSheetAttendanceFile(), Collections.singletonList(1));
+
+            for (String stage : Arrays.asList(ProcessingMetrics.STAGE_LOAD, ProcessingMetrics.STAGE_EXTRACT, ProcessingMetrics.STAGE_ROSTER_READ,
+                    ProcessingMetrics.STAGE_ROSTER_PARSE, ProcessingMetrics.STAGE_REST_FILL, ProcessingMetrics.STAGE_BATCH_UPDATE,
+                    ProcessingMetrics.STAGE_FORMULA_EVALUATION, ProcessingMetrics.STAGE_WRITE)) {
+                assertEquals(1, registry.get(ProcessingMetrics.STAGE_TIMER).tag("stage", stage)
+                        .tag("outcome", ProcessingMetrics.OUTCOME_SUCCESS).timer().count(), stage);
+            }
+            // 张三当天白班，李四、王五补"休"
+            assertEquals(3.0, registry.get(ProcessingMetrics.CELLS_TOUCHED).summary().totalAmount());
+            assertTrue(registry.get(ProcessingMetrics.STAGE_ALLOCATED).tag("stage", ProcessingMetrics.STAGE_LOAD).summary().totalAmount() > 0);
+        } finally {
+            Metrics.removeRegistry(registry);
+        }
+    }
+
+    @Test
+    void processFiles_RecordsFailedStages() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        try {
+            MultipartFile broken = new MockMultipartFile("dutyRosterFiles", "1日.xlsx", null,
+                    "not a workbook".getBytes(StandardCharsets.UTF_8));
+
+            assertThrows(Exception.class, () -> orchestrationService.processFiles(Collections.singletonList(broken),
+                    singleSheetAttendanceFile(), Collections.singletonList(1)));
+
+            // 读取失败的值班表也记录耗时，以 failure 区分
+            assertEquals(1, registry.get(ProcessingMetrics.STAGE_TIMER).tag("stage", ProcessingMetrics.STAGE_ROSTER_READ)
+                    .tag("outcome", ProcessingMetrics.OUTCOME_FAILURE).timer().count());
+            // 全局注册表会把其他测试创建的计时器同步到新注册表，只能按计数判断
+            assertEquals(0, registry.find(ProcessingMetrics.STAGE_TIMER).tag("stage", ProcessingMetrics.STAGE_ROSTER_PARSE).timers()
+                    .stream().mapToLong(Timer::count).sum());
+        } finally {
+            Metrics.removeRegistry(registry);
+        }
+    }
+
+    @Test
+    void processFiles_RosterAdmissionDoesNotQueueBehindWaitingRequest() throws Exception {
+        MultipartFile attendance = singleSheetAttendanceFile();
+        MultipartFile day1 = IncrementalProcessingServiceTest.roster("1日.xlsx", new String[]{"白班", "张三"});
+        // 预算只够一个请求的考勤表和值班表，两个请求的考勤表放不下
+        long attendanceBytes = memoryAdmissionService.estimate(attendance).getInMemoryBytes();
+        long budget = attendanceBytes + memoryAdmissionService.estimate(day1).getStreamingBytes();
+        assertTrue(2 * attendanceBytes > budget);
+        ReflectionTestUtils.setField(memoryAdmissionService, "budgetBytes", budget);
+        appProperties.getMemory().setMaxWaitMillis(3000);
+
+        // 第一个请求持有考勤表预留、尚未读取值班表时，第二个请求排到队首
+        CompletableFuture<ProcessingResult> second = new CompletableFuture<>();
+        ProgressListener startSecond = event -> {
+            if (!"extract".equals(event.getStage())) {
+                return;
+            }
+            CompletableFuture.runAsync(() -> {
+                try {
+                    second.complete(orchestrationService.processFiles(Collections.singletonList(day1), attendance,
+                            Collections.singletonList(1), false, false, ProgressListener.NONE));
+                } catch (Exception e) {
+                    second.completeExceptionally(e);
+                }
+            });
+            while (memoryAdmissionService.getWaitingCount() == 0) {
+                Thread.yield();
+            }
+        };
+
+        long startedAt = System.nanoTime();
+        ProcessingResult first = orchestrationService.processFiles(Collections.singletonList(day1), attendance,
+                Collections.singletonList(1), false, false, startSecond);
+
+        // 第一个请求的值班表不排在第二个请求后面，两个请求都不必等到超时
+        assertNotNull(first.getFile());
+        assertNotNull(second.get(10, TimeUnit.SECONDS).getFile());
+        assertTrue(System.nanoTime() - startedAt < TimeUnit.MILLISECONDS.toNanos(3000));
+        assertEquals(0L, memoryAdmissionService.getReservedBytes());
+    }
+}
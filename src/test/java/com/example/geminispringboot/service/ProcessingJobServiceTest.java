@@ -0,0 +1,160 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.ProcessingJob;
+import com.example.geminispringboot.model.ProcessingResult;
+import com.example.geminispringboot.model.ProgressEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+class ProcessingJobServiceTest {
+
+    @Mock
+    private OrchestrationService orchestrationService;
+
+    @Spy
+    private ProcessingResultStore resultStore = new ProcessingResultStore();
+
+    @Spy
+    private AppProperties appProperties = new AppProperties();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    // 模拟停止读取的浏览器：发送事件一直阻塞到 unblock
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private final AtomicInteger sentEvents = new AtomicInteger();
+
+    @InjectMocks
+    private ProcessingJobService processingJobService = new ProcessingJobService() {
+        @Override
+        SseEmitter newEmitter(long timeoutMillis) {
+            return new SseEmitter(timeoutMillis) {
+                @Override
+                public void send(SseEventBuilder builder) throws IOException {
+                    try {
+                        unblock.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    sentEvents.incrementAndGet();
+                }
+            };
+        }
+    };
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(resultStore, "appProperties", appProperties);
+        appProperties.getJobs().setConcurrency(1);
+        appProperties.getJobs().setQueueCapacity(1);
+        processingJobService.initJobExecutor();
+
+        when(orchestrationService.processFiles(anyList(), any(MultipartFile.class), anyList(), anyBoolean(), anyBoolean(), any(ProgressListener.class))).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            ProgressListener listener = invocation.getArgument(5);
+            listener.onProgress(new ProgressEvent("write", "结果文件生成完成", 100, 5, 20));
+            return new ProcessingResult(Collections.singletonList("--- 文件处理成功结束 ---"), new byte[]{1, 2, 3}, "考勤.xlsx");
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        unblock.countDown();
+        processingJobService.shutdownJobExecutor();
+    }
+
+    private ProcessingJob submit() throws IOException {
+        List<MultipartFile> rosters = Collections.singletonList(new MockMultipartFile("dutyRosterFiles", "1日.xlsx", null, new byte[]{1}));
+        MultipartFile attendance = new MockMultipartFile("attendanceFile", "考勤.xlsx", null, new byte[]{2});
+        return processingJobService.submit(rosters, attendance, Collections.singletonList(1), false);
+    }
+
+    @Test
+    void submit_RejectsWhenQueueIsFull() throws IOException {
+        submit();
+        submit();
+        assertThrows(RejectedExecutionException.class, this::submit);
+    }
+
+    @Test
+    void submit_StoresResultUnderJobId() throws Exception {
+        ProcessingJob job = submit();
+        assertNotNull(processingJobService.getJob(job.getJobId()));
+        release.countDown();
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(ProcessingJob.Status.SUCCEEDED, job.getStatus());
+        assertEquals(Collections.singletonList("--- 文件处理成功结束 ---"), job.getLogs());
+        assertEquals("考勤.xlsx", resultStore.get(job.getJobId()).getOriginalFilename());
+        assertEquals(100, job.getProgress().getPercent());
+        assertNotNull(processingJobService.subscribe(job.getJobId()));
+        assertNull(processingJobService.subscribe("unknown"));
+    }
+
+    @Test
+    void evictExpiredJobs_RemovesFinishedJobsWithoutNewSubmissions() throws Exception {
+        appProperties.getJobs().setRetentionMinutes(0);
+        ProcessingJob job = submit();
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(5);
+
+        assertEquals(1, processingJobService.evictExpiredJobs());
+        assertNull(processingJobService.getJob(job.getJobId()));
+        assertNull(resultStore.get(job.getJobId()));
+    }
+
+    @Test
+    void subscribe_SlowSubscriberDoesNotBlockJob() throws Exception {
+        ProcessingJob job = submit();
+        assertNotNull(processingJobService.subscribe(job.getJobId()));
+        release.countDown();
+
+        // 订阅者一直不接收事件，任务仍然完成
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(ProcessingJob.Status.SUCCEEDED, job.getStatus());
+        assertEquals(0, sentEvents.get());
+
+        // 恢复接收后依次收到进度和结束事件
+        unblock.countDown();
+        deadline = System.currentTimeMillis() + 5_000;
+        while (sentEvents.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, sentEvents.get());
+    }
+}
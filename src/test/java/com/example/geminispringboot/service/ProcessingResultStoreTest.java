@@ -0,0 +1,127 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.ProcessingResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessingResultStoreTest {
+
+    private final AppProperties appProperties = new AppProperties();
+    private final ProcessingResultStore store = new ProcessingResultStore();
+
+    @BeforeEach
+    void setUp() {
+        appProperties.getResults().setMaxMemoryBytes(1000);
+        appProperties.getResults().setSpillThresholdBytes(600);
+        ReflectionTestUtils.setField(store, "appProperties", appProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.clear();
+    }
+
+    private static ProcessingResult result(int size, byte fill) {
+        byte[] content = new byte[size];
+        Arrays.fill(content, fill);
+        return new ProcessingResult(Collections.emptyList(), content, "考勤.xlsx");
+    }
+
+    @Test
+    void put_EvictsLeastRecentlyUsedOverBudget() {
+        store.put("a", result(400, (byte) 1));
+        store.put("b", result(400, (byte) 2));
+        assertNotNull(store.get("a"));
+        store.put("c", result(400, (byte) 3));
+
+        assertNull(store.get("b"));
+        assertEquals(1, store.get("a").getFileContent()[0]);
+        assertEquals(3, store.get("c").getFileContent()[0]);
+        Map<String, Object> stats = store.getStats();
+        assertEquals(1L, stats.get("evictions"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(800L, stats.get("memoryBytes"));
+    }
+
+    @Test
+    void put_SpillsLargeResultsToDisk() {
+        store.put("big", result(5000, (byte) 7));
+
+        Map<String, Object> stats = store.getStats();
+        assertEquals(0L, stats.get("memoryBytes"));
+        assertEquals(5000L, stats.get("diskBytes"));
+        byte[] content = store.get("big").getFileContent();
+        assertEquals(5000, content.length);
+        assertEquals(7, content[4999]);
+
+        assertTrue(store.remove("big"));
+        assertEquals(0L, store.getStats().get("diskBytes"));
+    }
+
+    @Test
+    void put_AdoptsFileBackedResultWithoutCopy() throws IOException {
+        Path file = store.createResultFile();
+        Files.write(file, new byte[]{1, 2, 3});
+        store.put("file", new ProcessingResult(Collections.emptyList(), file, 3, "考勤.xlsx"));
+
+        ProcessingResult result = store.get("file");
+        assertTrue(result.isFileBacked());
+        assertEquals(file, result.getFile());
+        assertArrayEquals(new byte[]{1, 2, 3}, result.getFileContent());
+        assertEquals(3L, store.getStats().get("diskBytes"));
+
+        assertTrue(store.remove("file"));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void get_ExpiresAfterTtl() {
+        appProperties.getResults().setTtlMinutes(0);
+        store.put("a", result(10, (byte) 1));
+
+        assertNull(store.get("a"));
+        assertEquals(1L, store.getStats().get("expirations"));
+    }
+
+    @Test
+    void sweep_DeletesExpiredSpillFilesWithoutAccess() {
+        store.put("big", result(5000, (byte) 7));
+        Path spillFile = store.get("big").getFile();
+        assertTrue(Files.exists(spillFile));
+
+        appProperties.getResults().setTtlMinutes(0);
+        assertEquals(1, store.sweep());
+
+        assertFalse(Files.exists(spillFile));
+        assertEquals(0, store.sweep());
+    }
+
+    @Test
+    void take_RemovesResultAndHandsOverFile() throws IOException {
+        store.put("big", result(5000, (byte) 7));
+
+        ProcessingResult taken = store.take("big");
+
+        assertNotNull(taken);
+        assertTrue(taken.isFileBacked());
+        // 取出后不再计入占用，文件交给调用方删除
+        assertEquals(0L, store.getStats().get("diskBytes"));
+        assertNull(store.take("big"));
+        assertNull(store.get("big"));
+        store.clear();
+        assertTrue(Files.exists(taken.getFile()));
+        Files.delete(taken.getFile());
+    }
+}
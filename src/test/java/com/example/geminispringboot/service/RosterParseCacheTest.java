@@ -0,0 +1,89 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.ShiftDescriptor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RosterParseCacheTest {
+
+    private final AppProperties appProperties = new AppProperties();
+    private final RosterParseCache cache = newCache();
+
+    @TempDir
+    Path diskDir;
+
+    private RosterParseCache newCache() {
+        RosterParseCache newCache = new RosterParseCache();
+        ReflectionTestUtils.setField(newCache, "appProperties", appProperties);
+        return newCache;
+    }
+
+    private static Map<ShiftDescriptor, List<String>> parsed() {
+        Map<ShiftDescriptor, List<String>> parsed = new LinkedHashMap<>();
+        parsed.put(new ShiftDescriptor("白班", "白"), Arrays.asList("张三", "李四"));
+        parsed.put(new ShiftDescriptor("42054", "乘"), Collections.singletonList("王五"));
+        return parsed;
+    }
+
+    @BeforeEach
+    void setUp() {
+        appProperties.getRoster().setCacheMaxEntries(2);
+    }
+
+    @Test
+    void key_DependsOnContentAndContext() throws IOException {
+        String context = cache.contextKey(Arrays.asList("张三", "李四"), appProperties.getMappings());
+        String otherContext = cache.contextKey(Arrays.asList("张三", "李四", "王五"), appProperties.getMappings());
+        MockMultipartFile file = new MockMultipartFile("dutyRosterFiles", "1日.xlsx", null, new byte[]{1, 2, 3});
+        MockMultipartFile renamed = new MockMultipartFile("dutyRosterFiles", "副本.xlsx", null, new byte[]{1, 2, 3});
+        MockMultipartFile changed = new MockMultipartFile("dutyRosterFiles", "1日.xlsx", null, new byte[]{1, 2, 4});
+
+        assertEquals(cache.key(file, context), cache.key(renamed, context));
+        assertNotEquals(cache.key(file, context), cache.key(changed, context));
+        assertNotEquals(cache.key(file, context), cache.key(file, otherContext));
+        // 解析器升级后不再命中旧的解析结果
+        assertNotEquals(context, cache.contextKey(RosterParseCache.PARSER_VERSION + 1, Arrays.asList("张三", "李四"),
+                appProperties.getMappings()));
+    }
+
+    @Test
+    void get_EvictsLeastRecentlyUsedAndReturnsCopies() {
+        cache.put("a", parsed());
+        cache.put("b", parsed());
+        assertNotNull(cache.get("a"));
+        cache.put("c", parsed());
+
+        assertNull(cache.get("b"));
+        Map<ShiftDescriptor, List<String>> cached = cache.get("a");
+        assertEquals(new ArrayList<>(parsed().keySet()), new ArrayList<>(cached.keySet()));
+        cached.get(new ShiftDescriptor("白班", "白")).clear();
+        assertEquals(2, cache.get("a").get(new ShiftDescriptor("白班", "白")).size());
+    }
+
+    @Test
+    void get_ReadsDiskTierAfterRestart() {
+        appProperties.getRoster().setCacheDiskDir(diskDir.toString());
+        cache.put("a", parsed());
+
+        RosterParseCache restarted = newCache();
+        Map<ShiftDescriptor, List<String>> cached = restarted.get("a");
+        assertEquals(parsed(), cached);
+        assertEquals("乘", new ArrayList<>(cached.keySet()).get(1).getAlias());
+        assertEquals(1L, restarted.getStats().get("hits"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.geminispringboot.service;
+
+import com.example.geminispringboot.config.AppProperties;
+import com.example.geminispringboot.model.ShiftDescriptor;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduleParsingServiceTest {
+
+    private final ScheduleParsingService parsingService = new ScheduleParsingService();
+
+    @Test
+    void parse_CollectsNamesUntilNextShift() {
+        List<List<String>> data = Arrays.asList(
+                Arrays.asList("", "白班 8:00", "张鹏、李勇", " ", "夜班", "于鹏飞"),
+                Arrays.asList("42054次", "王宁", "备注"),
+                Collections.singletonList("张鹏"));
+        List<String> names = Arrays.asList("张鹏", "李勇", "于鹏飞", "王宁");
+
+        Map<String, List<String>> result = parsingService.parse(data, names, new AppProperties().getMappings());
+
+        assertEquals(3, result.size());
+        assertEquals(Arrays.asList("张鹏", "李勇"), result.get("白班(白)"));
+        assertEquals(Collections.singletonList("于鹏飞"), result.get("夜班(夜)"));
+        assertEquals(Collections.singletonList("王宁"), result.get("42054(乘)"));
+    }
+
+    @Test
+    void shiftDictionary_PrefersEarlierMappingWhenKeysOverlap() {
+        Map<String, String> mappings = new LinkedHashMap<>();
+        mappings.put("夜班", "夜");
+        mappings.put("夜", "短");
+        mappings.put("小夜", "上");
+        ShiftDictionary dictionary = parsingService.compileShiftDictionary(mappings);
+
+        ShiftDescriptor nightShift = dictionary.match("夜班 20:00");
+        assertEquals("夜", nightShift.getAlias());
+        assertEquals("夜班(夜)", nightShift.getResultKey());
+        assertEquals("短", dictionary.match("夜间").getAlias());
+        assertEquals("上", dictionary.match("小夜").getAlias());
+        assertNull(dictionary.match("白班"));
+        assertSame(dictionary, parsingService.compileShiftDictionary(mappings));
+    }
+}
@@ -1,18 +1,21 @@
 package com.example.geminispringboot.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.geminispringboot.config.AppProperties;
 import com.example.geminispringboot.dao.service.UserDaoService;
 import com.example.geminispringboot.model.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class UserDetailsServiceImplTest {
@@ -20,22 +23,29 @@ class UserDetailsServiceImplTest {
     @Mock
     private UserDaoService userDaoService;
 
-    @InjectMocks
-    private UserDetailsServiceImpl userDetailsService;
+    private final AppProperties appProperties = new AppProperties();
+    private final UserCache userCache = new UserCache();
+    private final UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl();
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(userCache, "userDaoService", userDaoService);
+        ReflectionTestUtils.setField(userCache, "appProperties", appProperties);
+        ReflectionTestUtils.setField(userDetailsService, "userCache", userCache);
     }
 
-    @Test
-    void loadUserByUsername_UserFound() {
+    private static User user(String username, String password) {
         User user = new User();
-        user.setUsername("testuser");
-        user.setPassword("password");
+        user.setUsername(username);
+        user.setPassword(password);
         user.setRoles("ROLE_USER");
+        return user;
+    }
 
-        when(userDaoService.getOne(any(QueryWrapper.class))).thenReturn(user);
+    @Test
+    void loadUserByUsername_UserFound() {
+        when(userDaoService.getOne(any(QueryWrapper.class))).thenReturn(user("testuser", "password"));
 
         UserDetails userDetails = userDetailsService.loadUserByUsername("testuser");
 
@@ -52,4 +62,54 @@ class UserDetailsServiceImplTest {
             userDetailsService.loadUserByUsername("nonexistentuser");
         });
     }
+
+    @Test
+    void loadUserByUsername_CachesFoundAndUnknownUsers() {
+        when(userDaoService.getOne(any(QueryWrapper.class))).thenReturn(user("testuser", "password"));
+        userDetailsService.loadUserByUsername("testuser");
+        userDetailsService.loadUserByUsername("testuser");
+        verify(userDaoService, times(1)).getOne(any(QueryWrapper.class));
+
+        when(userDaoService.getOne(any(QueryWrapper.class))).thenReturn(null);
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("ghost"));
+        // 登录失败处理再次查询同一用户名时命中"不存在"的缓存
+        assertNull(userCache.get("ghost"));
+        verify(userDaoService, times(2)).getOne(any(QueryWrapper.class));
+        assertEquals(2L, userCache.getStats().get("hits"));
+    }
+
+    @Test
+    void invalidate_ReloadsChangedPassword() {
+        when(userDaoService.getOne(any(QueryWrapper.class))).thenReturn(user("testuser", "old"));
+        assertEquals("old", userDetailsService.loadUserByUsername("testuser").getPassword());
+
+        when(userDaoService.getOne(any(QueryWrapper.class))).thenReturn(user("testuser", "new"));
+        assertEquals("old", userDetailsService.loadUserByUsername("testuser").getPassword());
+
+        userCache.invalidate("testuser");
+        assertEquals("new", userDetailsService.loadUserByUsername("testuser").getPassword());
+    }
+
+    @Test
+    void get_HonoursZeroTtlAndEvictsLeastRecentlyUsed() {
+        appProperties.getUsers().setCacheNegativeTtlSeconds(0);
+        appProperties.getUsers().setCacheMaxEntries(2);
+        when(userDaoService.getOne(any(QueryWrapper.class))).thenReturn(null);
+
+        // 不缓存不存在的用户名时每次都查询
+        userCache.get("ghost");
+        userCache.get("ghost");
+        verify(userDaoService, times(2)).getOne(any(QueryWrapper.class));
+
+        when(userDaoService.getOne(any(QueryWrapper.class))).thenReturn(user("a", "p"));
+        userCache.get("a");
+        userCache.get("b");
+        userCache.get("a");
+        userCache.get("c");
+        assertEquals(2, userCache.getStats().get("entries"));
+        // b 最久未使用，已被淘汰
+        userCache.get("a");
+        userCache.get("b");
+        verify(userDaoService, times(6)).getOne(any(QueryWrapper.class));
+    }
 }
@@ -0,0 +1,58 @@
+package com.example.geminispringboot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AhoCorasickMatcherTest {
+
+    private static List<String> naiveFindAll(List<String> patterns, String text) {
+        List<String> result = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (text.contains(pattern)) {
+                result.add(pattern);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void findAll_OverlappingNamesKeepListOrder() {
+        List<String> names = Arrays.asList("李勇", "张鹏", "于鹏飞", "鹏飞", "张鹏");
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(names);
+
+        assertEquals(Arrays.asList("张鹏", "于鹏飞", "鹏飞", "张鹏"), matcher.findAll("张鹏、于鹏飞"));
+        assertEquals(Collections.singletonList("李勇"), matcher.findAll("司机:李勇"));
+        assertEquals(Collections.emptyList(), matcher.findAll("王宁"));
+    }
+
+    @Test
+    void findAll_MatchesNaiveContains() {
+        Random random = new Random(42);
+        String alphabet = "李张王刘陈杨于鹏飞勇军";
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            names.add(randomText(random, alphabet, 2 + random.nextInt(2)));
+        }
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(names);
+
+        for (int i = 0; i < 500; i++) {
+            String cell = randomText(random, alphabet + "、 ", 1 + random.nextInt(20));
+            assertEquals(naiveFindAll(names, cell), matcher.findAll(cell), cell);
+        }
+    }
+
+    private static String randomText(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.geminispringboot.util;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadedWorkbookTest {
+
+    private static byte[] workbook(Workbook workbook, String value) throws IOException {
+        try (Workbook w = workbook) {
+            w.createSheet("考勤").createRow(0).createCell(0).setCellValue(value);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            w.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static void assertEditableAndCleanedUp(byte[] content) throws IOException {
+        byte[] edited;
+        Path backingFile;
+        try (LoadedWorkbook loaded = LoadedWorkbook.open(new MockMultipartFile("attendanceFile", content))) {
+            backingFile = (Path) ReflectionTestUtils.getField(loaded, "backingFile");
+            assertTrue(Files.exists(backingFile));
+            loaded.getWorkbook().getSheetAt(0).getRow(0).getCell(0).setCellValue("改");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            loaded.getWorkbook().write(out);
+            edited = out.toByteArray();
+        }
+        assertFalse(Files.exists(backingFile));
+        try (Workbook reopened = WorkbookFactory.create(new ByteArrayInputStream(edited))) {
+            assertEquals("改", reopened.getSheetAt(0).getRow(0).getCell(0).getStringCellValue());
+        }
+    }
+
+    @Test
+    void open_Xlsx() throws IOException {
+        assertEditableAndCleanedUp(workbook(new XSSFWorkbook(), "原"));
+    }
+
+    @Test
+    void open_Xls() throws IOException {
+        assertEditableAndCleanedUp(workbook(new HSSFWorkbook(), "原"));
+    }
+
+    @Test
+    void open_InvalidContentDeletesTempFile() throws IOException {
+        Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"));
+        long before = countBackingFiles(tempDir);
+
+        assertThrows(IOException.class, () -> LoadedWorkbook.open(new MockMultipartFile("attendanceFile", "not a workbook".getBytes())));
+
+        assertEquals(before, countBackingFiles(tempDir));
+    }
+
+    private static long countBackingFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("workbook_")).count();
+        }
+    }
+}